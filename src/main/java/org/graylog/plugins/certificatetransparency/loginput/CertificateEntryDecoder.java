@@ -0,0 +1,243 @@
+package org.graylog.plugins.certificatetransparency.loginput;
+
+import com.codahale.metrics.Timer;
+import com.google.common.base.CharMatcher;
+import com.google.common.base.Splitter;
+import com.google.common.collect.Maps;
+import org.certificatetransparency.ctlog.ParsedLogEntry;
+import org.certificatetransparency.ctlog.serialization.Deserializer;
+import org.elasticsearch.common.Strings;
+import org.graylog.plugins.certificatetransparency.loginput.ct.logs.CertificateLogEntry;
+import org.graylog.plugins.certificatetransparency.loginput.ct.logs.DecodedMessage;
+import org.graylog.plugins.certificatetransparency.loginput.ct.util.DomainSplitter;
+import org.graylog.plugins.certificatetransparency.loginput.ct.watch.WatchMatch;
+import org.graylog.plugins.certificatetransparency.loginput.ct.watch.WatchlistMatcher;
+import org.graylog.plugins.certificatetransparency.loginput.ct.x509.DistinguishedName;
+import org.graylog.plugins.certificatetransparency.loginput.ct.x509.IssuerCache;
+import org.graylog.plugins.certificatetransparency.loginput.ct.x509.JcaCertificateParser;
+import org.graylog.plugins.certificatetransparency.loginput.ct.x509.TbsCertificate;
+import org.graylog.plugins.certificatetransparency.loginput.ct.x509.TbsCertificateParser;
+import org.graylog2.plugin.configuration.Configuration;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import javax.annotation.Nullable;
+import java.io.ByteArrayInputStream;
+import java.security.cert.CertificateException;
+import java.security.cert.CertificateParsingException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ExecutionException;
+
+/**
+ * Turns a log entry into the text and fields of its messages. Used by the codec, or by the transport when it decodes
+ * entries ahead of the input. Thread safe.
+ */
+public class CertificateEntryDecoder {
+
+    private static final Logger LOG = LoggerFactory.getLogger(CertificateEntryDecoder.class);
+
+    static final String CK_WATCH_DOMAINS = "watch_domains";
+    static final String CK_WATCH_KEYWORDS = "watch_keywords";
+    static final String CK_WATCH_MAX_DISTANCE = "watch_max_distance";
+
+    static final String CK_SAN_MODE = "san_mode";
+
+    static final int DEFAULT_WATCH_MAX_DISTANCE = 2;
+
+    static final String SAN_MODE_LIST = "list";
+    static final String SAN_MODE_FANOUT = "fanout";
+
+    private static final String ENTRY_TYPE_X509 = "x509";
+    private static final String ENTRY_TYPE_PRECERT = "precert";
+
+    private final IssuerCache issuerCache;
+    private final WatchlistMatcher watchlist;
+    private final boolean fanOut;
+
+    public CertificateEntryDecoder(Configuration configuration, IssuerCache issuerCache) {
+        this.issuerCache = issuerCache;
+        this.watchlist = new WatchlistMatcher(
+                splitList(configuration.getString(CK_WATCH_DOMAINS)),
+                splitList(configuration.getString(CK_WATCH_KEYWORDS)),
+                configuration.getInt(CK_WATCH_MAX_DISTANCE, DEFAULT_WATCH_MAX_DISTANCE)
+        );
+        this.fanOut = SAN_MODE_FANOUT.equals(configuration.getString(CK_SAN_MODE, SAN_MODE_LIST));
+    }
+
+    /**
+     * Returns the messages of the entry or null if it can't be decoded. Entries that can't be decoded are counted in
+     * the metrics of the input they were read by.
+     */
+    @Nullable
+    public List<DecodedMessage> decode(CertificateLogEntry log, DecoderMetrics metrics) {
+        try (Timer.Context ignored = metrics.decodeTime.time()) {
+            ParsedLogEntry parsedLogEntry = Deserializer.parseLogEntry(
+                    new ByteArrayInputStream(log.getLeafInput()),
+                    new ByteArrayInputStream(log.getExtraData())
+            );
+
+            // The entry is either a pre-cert or an already issued X509 cert.
+            if (parsedLogEntry.getLogEntry().x509Entry != null) {
+                TbsCertificate certificate = parseCertificate(parsedLogEntry.getLogEntry().x509Entry.leafCertificate);
+                return buildMessages(log, certificate, ENTRY_TYPE_X509, metrics);
+            } else if(parsedLogEntry.getLogEntry().precertEntry != null) {
+                TbsCertificate certificate = TbsCertificateParser.parseTbsCertificate(parsedLogEntry.getLogEntry().precertEntry.preCert.tbsCertificate);
+                return buildMessages(log, certificate, ENTRY_TYPE_PRECERT, metrics);
+            } else {
+                LOG.error("Certificate Transparency entry is not a pre-cert or an issued X509. Skipping.");
+                metrics.unknownEntryType.inc();
+                return null;
+            }
+        } catch(Exception e) {
+            LOG.error("Could not decode Certificate Transparency entry.", e);
+            metrics.parseErrors.inc();
+            return null;
+        }
+    }
+
+    @Nullable
+    private List<DecodedMessage> buildMessages(CertificateLogEntry log, TbsCertificate certificate, String entryType,
+                                              DecoderMetrics metrics) throws ExecutionException {
+        List<String> names = domainNames(certificate);
+        if (names.isEmpty()) {
+            LOG.error("Certificate Transparency entry is missing subject name (domain name). Skipping.");
+            metrics.missingDomainName.inc();
+            return null;
+        }
+
+        // Everything but the name fields is the same for all names, so it is only collected once.
+        Map<String, Object> fields = Maps.newHashMap();
+        fields.putAll(issuerCache.get(
+                certificate,
+                () -> Collections.unmodifiableMap(parseX500DataToFields(certificate.getIssuer(), "issuer"))
+        ));
+        fields.putAll(parseX500DataToFields(certificate.getSubject(), "subject"));
+        fields.put("ct_entry_type", entryType);
+        fields.put("ct_log", log.getLogUrl());
+        fields.put("ct_log_index", log.getIndex());
+
+        if (fanOut) {
+            List<DecodedMessage> messages = new ArrayList<>(names.size());
+            for (String name : names) {
+                DecodedMessage message = createMessage(name, entryType, fields);
+                addWatchMatch(message, watchlist.match(name), name);
+                messages.add(message);
+            }
+            return messages;
+        }
+
+        DecodedMessage message = createMessage(names.get(0), entryType, fields);
+
+        Set<String> registeredDomains = new LinkedHashSet<>();
+        WatchMatch bestMatch = null;
+        String bestMatchName = null;
+        for (String name : names) {
+            String registeredDomain = DomainSplitter.registeredDomain(name);
+            if (registeredDomain != null) {
+                registeredDomains.add(registeredDomain);
+            }
+
+            WatchMatch match = watchlist.match(name);
+            if (match != null && match.isStrongerThan(bestMatch)) {
+                bestMatch = match;
+                bestMatchName = name;
+            }
+        }
+        message.getFields().put("ct_subject_alt_names", names);
+        message.getFields().put("ct_subject_alt_names_l12", new ArrayList<>(registeredDomains));
+        addWatchMatch(message, bestMatch, bestMatchName);
+
+        return Collections.singletonList(message);
+    }
+
+    private DecodedMessage createMessage(String name, String entryType, Map<String, Object> fields) {
+        String text = ENTRY_TYPE_PRECERT.equals(entryType)
+                ? "[CT] Precertificate for [" + name + "] logged"
+                : "[CT] Certificate for [" + name + "] issued";
+
+        Map<String, Object> messageFields = Maps.newHashMap(fields);
+        DomainSplitter.split(name, "subject", messageFields::put);
+        return new DecodedMessage(text, messageFields);
+    }
+
+    private void addWatchMatch(DecodedMessage message, @Nullable WatchMatch match, String name) {
+        if (match != null) {
+            message.getFields().put("ct_watch_match", match.getEntry());
+            message.getFields().put("ct_watch_match_type", match.getType().toString().toLowerCase(Locale.ENGLISH));
+            message.getFields().put("ct_watch_distance", match.getDistance());
+            message.getFields().put("ct_watch_matched_name", name);
+        }
+    }
+
+    /**
+     * All domain names of the certificate, lower case and without duplicates. The subject CN comes first if it is a
+     * domain name at all, followed by the subjectAltName DNS names.
+     */
+    private static List<String> domainNames(TbsCertificate certificate) {
+        Set<String> names = new LinkedHashSet<>();
+
+        String commonName = certificate.getSubject().getCommonName();
+        if (isDomainName(commonName)) {
+            names.add(commonName.toLowerCase(Locale.ENGLISH));
+        }
+
+        for (String dnsName : certificate.getDnsNames()) {
+            if (isDomainName(dnsName)) {
+                names.add(dnsName.toLowerCase(Locale.ENGLISH));
+            }
+        }
+
+        return new ArrayList<>(names);
+    }
+
+    private static boolean isDomainName(@Nullable String name) {
+        // Common names like "Acme Corp", "localhost" or "*.com" are not something we can split.
+        return !Strings.isNullOrEmpty(name) && name.indexOf(' ') < 0 && !name.endsWith(".") && DomainSplitter.isValid(name);
+    }
+
+    private TbsCertificate parseCertificate(byte[] certificate) throws CertificateException {
+        try {
+            return TbsCertificateParser.parseCertificate(certificate);
+        } catch (CertificateParsingException e) {
+            LOG.debug("Could not read certificate directly. Falling back to JCA.", e);
+            return JcaCertificateParser.parseCertificate(certificate);
+        }
+    }
+
+    private Map<String, Object> parseX500DataToFields(DistinguishedName dn, String prefix) {
+        Map<String, Object> fields = Maps.newHashMap();
+
+        // The subject common name is written with the other domain names of the certificate.
+        if (dn.getCommonName() != null && !prefix.equals("subject")) {
+            fields.put("ct_" + prefix + "_common_name", dn.getCommonName());
+        }
+
+        if (dn.getCountry() != null) {
+            fields.put("ct_" + prefix + "_country", dn.getCountry());
+        }
+
+        if (dn.getOrganization() != null) {
+            fields.put("ct_" + prefix + "_organization", dn.getOrganization());
+        }
+
+        if (dn.getOrganizationalUnit() != null) {
+            fields.put("ct_" + prefix + "_organizational_unit", dn.getOrganizationalUnit());
+        }
+
+        return fields;
+    }
+
+    private static List<String> splitList(@Nullable String list) {
+        if (Strings.isNullOrEmpty(list)) {
+            return Collections.emptyList();
+        }
+        return Splitter.on(CharMatcher.anyOf(",\n")).trimResults().omitEmptyStrings().splitToList(list);
+    }
+
+}
@@ -1,21 +1,24 @@
 package org.graylog.plugins.certificatetransparency.loginput;
 
-import com.fasterxml.jackson.databind.ObjectMapper;
-import com.google.common.collect.Maps;
-import com.google.common.io.BaseEncoding;
+import com.google.common.collect.ImmutableMap;
+import com.google.common.collect.Iterables;
 import com.google.inject.assistedinject.Assisted;
-import info.debatty.java.stringsimilarity.Levenshtein;
-import org.certificatetransparency.ctlog.ParsedLogEntry;
-import org.certificatetransparency.ctlog.serialization.Deserializer;
-import org.elasticsearch.common.Strings;
-import org.graylog.plugins.certificatetransparency.loginput.ct.logs.json.CertificateTransparencyEntryResponse;
-import org.graylog.plugins.certificatetransparency.loginput.ct.util.DomainSplitter;
+import org.graylog.plugins.certificatetransparency.loginput.ct.logs.CertificateLogEntry;
+import org.graylog.plugins.certificatetransparency.loginput.ct.logs.DecodedLogEntry;
+import org.graylog.plugins.certificatetransparency.loginput.ct.logs.DecodedMessage;
+import org.graylog.plugins.certificatetransparency.loginput.ct.x509.IssuerCache;
 import org.graylog2.plugin.Message;
 import org.graylog2.plugin.configuration.Configuration;
+import org.graylog2.plugin.configuration.ConfigurationRequest;
+import org.graylog2.plugin.configuration.fields.ConfigurationField;
+import org.graylog2.plugin.configuration.fields.DropdownField;
+import org.graylog2.plugin.configuration.fields.NumberField;
+import org.graylog2.plugin.configuration.fields.TextField;
 import org.graylog2.plugin.inputs.annotations.ConfigClass;
 import org.graylog2.plugin.inputs.annotations.FactoryClass;
 import org.graylog2.plugin.inputs.codecs.AbstractCodec;
 import org.graylog2.plugin.inputs.codecs.Codec;
+import org.graylog2.plugin.inputs.codecs.MultiMessageCodec;
 import org.graylog2.plugin.journal.RawMessage;
 import org.joda.time.DateTime;
 import org.slf4j.Logger;
@@ -24,105 +27,75 @@ import org.slf4j.LoggerFactory;
 import javax.annotation.Nonnull;
 import javax.annotation.Nullable;
 import javax.inject.Inject;
-import javax.naming.ldap.LdapName;
-import javax.naming.ldap.Rdn;
-import java.io.ByteArrayInputStream;
-import java.security.cert.CertificateFactory;
-import java.security.cert.X509Certificate;
-import java.util.Map;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
 
-public class CertificateLogCodec extends AbstractCodec {
+import static org.graylog.plugins.certificatetransparency.loginput.CertificateEntryDecoder.CK_SAN_MODE;
+import static org.graylog.plugins.certificatetransparency.loginput.CertificateEntryDecoder.CK_WATCH_DOMAINS;
+import static org.graylog.plugins.certificatetransparency.loginput.CertificateEntryDecoder.CK_WATCH_KEYWORDS;
+import static org.graylog.plugins.certificatetransparency.loginput.CertificateEntryDecoder.CK_WATCH_MAX_DISTANCE;
+import static org.graylog.plugins.certificatetransparency.loginput.CertificateEntryDecoder.DEFAULT_WATCH_MAX_DISTANCE;
+import static org.graylog.plugins.certificatetransparency.loginput.CertificateEntryDecoder.SAN_MODE_FANOUT;
+import static org.graylog.plugins.certificatetransparency.loginput.CertificateEntryDecoder.SAN_MODE_LIST;
+
+public class CertificateLogCodec extends AbstractCodec implements MultiMessageCodec {
 
     private static final Logger LOG = LoggerFactory.getLogger(CertificateLogCodec.class);
 
     public static final String NAME = "CertificateLog";
 
-    private final ObjectMapper om;
-    private final Levenshtein levenshtein;
+    private final CertificateEntryDecoder decoder;
+    private final InputDecoderMetrics decoderMetrics;
 
     @Inject
-    public CertificateLogCodec(@Assisted Configuration configuration, ObjectMapper om) {
+    public CertificateLogCodec(@Assisted Configuration configuration,
+                               IssuerCache issuerCache,
+                               InputDecoderMetrics decoderMetrics) {
         super(configuration);
 
-        this.om = om;
-        this.levenshtein = new Levenshtein();
+        this.decoder = new CertificateEntryDecoder(configuration, issuerCache);
+        this.decoderMetrics = decoderMetrics;
     }
 
     @Nullable
     @Override
     public Message decode(@Nonnull RawMessage rawMessage) {
+        Collection<Message> messages = decodeMessages(rawMessage);
+        return messages == null || messages.isEmpty() ? null : messages.iterator().next();
+    }
+
+    @Nullable
+    @Override
+    public Collection<Message> decodeMessages(@Nonnull RawMessage rawMessage) {
         try {
             LOG.debug("Received Certificate Transparency log.");
-            CertificateTransparencyEntryResponse log = om.readValue(rawMessage.getPayload(), CertificateTransparencyEntryResponse.class);
-
-            try {
-                ParsedLogEntry parsedLogEntry = Deserializer.parseLogEntry(
-                        new ByteArrayInputStream(BaseEncoding.base64().decode(log.leafInput)),
-                        new ByteArrayInputStream(BaseEncoding.base64().decode(log.extraData))
-                );
-
-                // The entry is either a pre-cert or an already issued X509 cert.
-                if (parsedLogEntry.getLogEntry().x509Entry != null) {
-                    X509Certificate certificate = (X509Certificate) CertificateFactory.getInstance("X.509").generateCertificate(new ByteArrayInputStream(parsedLogEntry.getLogEntry().x509Entry.leafCertificate));
-
-                    Map<String, Object> issuerFields = parseX500DataToFields(new LdapName(certificate.getIssuerX500Principal().toString()), "issuer");
-                    Map<String, Object> subjectFields = parseX500DataToFields(new LdapName(certificate.getSubjectX500Principal().toString()), "subject");
-                    String subjectCommonName = (String) subjectFields.get("ct_subject_common_name");
-
-                    if (Strings.isNullOrEmpty(subjectCommonName)) {
-                        LOG.error("Certificate Transparency entry is missing subject name (domain name). Skipping.");
-                        return null;
-                    }
-
-                    Message message = new Message("[CT] Certificate for [" + subjectCommonName +"] issued", "certificate-transparency", DateTime.now());
-                    message.addFields(issuerFields);
-                    message.addFields(subjectFields);
-                    message.addField("levenshtein_distance", levenshtein.distance("graylog.org", subjectCommonName));
-
-                    return message;
-                } else if(parsedLogEntry.getLogEntry().precertEntry != null) {
-                    LOG.warn("UNSUPPORTED PRECERT RECEIVED."); // TODO
-                } else {
-                    LOG.error("Certificate Transparency entry is not a pre-cert or an issued X509. Skipping.");
-                    return null;
-                }
-            } catch(Exception e) {
-                LOG.error("Could not decode Certificate Transparency entry.", e);
+            byte[] payload = rawMessage.getPayload();
+
+            // The transport may have decoded the entry already.
+            List<DecodedMessage> decoded = DecodedLogEntry.isDecoded(payload)
+                    ? DecodedLogEntry.fromBytes(payload).getMessages()
+                    : decoder.decode(CertificateLogEntry.fromBytes(payload), decoderMetrics.get(inputId(rawMessage)));
+            if (decoded == null) {
                 return null;
             }
 
-            return null;
+            List<Message> messages = new ArrayList<>(decoded.size());
+            for (DecodedMessage message : decoded) {
+                Message result = new Message(message.getMessage(), "certificate-transparency", DateTime.now());
+                result.addFields(message.getFields());
+                messages.add(result);
+            }
+            return messages;
         } catch (Exception e) {
             throw new RuntimeException("Could not deserialize Certificate Transparency log.", e);
         }
     }
 
-    private Map<String, Object> parseX500DataToFields(LdapName dn, String prefix) {
-        Map<String, Object> fields = Maps.newHashMap();
-        for (Rdn issuer : dn.getRdns()) {
-            switch(issuer.getType()) {
-                case "CN": // common_name
-                    String cn = issuer.getValue().toString();
-
-                    if (prefix.equals("subject")) { // TODO use enum etc, add tests
-                        fields.putAll(DomainSplitter.split(cn, "subject"));
-                    } else {
-                        fields.put("ct_" + prefix + "_common_name", cn);
-                    }
-                    break;
-                case "C": // country
-                    fields.put("ct_" + prefix + "_country", issuer.getValue().toString());
-                    break;
-                case "O": // organization
-                    fields.put("ct_" + prefix + "_organization", issuer.getValue().toString());
-                    break;
-                case "OU": // organizational_unit
-                    fields.put("ct_" + prefix + "_organizational_unit", issuer.getValue().toString());
-                    break;
-            }
-        }
-
-        return fields;
+    @Nullable
+    private static String inputId(RawMessage rawMessage) {
+        // The input that read the entry on this node comes last.
+        return rawMessage.getSourceNodes().isEmpty() ? null : Iterables.getLast(rawMessage.getSourceNodes()).inputId;
     }
 
     @Override
@@ -141,6 +114,53 @@ public class CertificateLogCodec extends AbstractCodec {
 
     @ConfigClass
     public static class Config extends AbstractCodec.Config {
+
+        @Override
+        public ConfigurationRequest getRequestedConfiguration() {
+            final ConfigurationRequest r = super.getRequestedConfiguration();
+
+            r.addField(new DropdownField(
+                    CK_SAN_MODE,
+                    "Multiple domain names",
+                    SAN_MODE_LIST,
+                    ImmutableMap.of(
+                            SAN_MODE_LIST, "One message with a list of all names",
+                            SAN_MODE_FANOUT, "One message per name"
+                    ),
+                    "How to write certificates that are issued for several domain names (subjectAltName).",
+                    ConfigurationField.Optional.OPTIONAL
+            ));
+
+            r.addField(new TextField(
+                    CK_WATCH_DOMAINS,
+                    "Watched domains",
+                    "",
+                    "Comma separated list of domains to look out for, like \"graylog.org\". Certificates for look-alike names are marked.",
+                    ConfigurationField.Optional.OPTIONAL,
+                    TextField.Attribute.TEXTAREA
+            ));
+
+            r.addField(new TextField(
+                    CK_WATCH_KEYWORDS,
+                    "Watched keywords",
+                    "",
+                    "Comma separated list of keywords. Certificates for names that contain one of them are marked.",
+                    ConfigurationField.Optional.OPTIONAL,
+                    TextField.Attribute.TEXTAREA
+            ));
+
+            r.addField(new NumberField(
+                    CK_WATCH_MAX_DISTANCE,
+                    "Maximum edit distance",
+                    DEFAULT_WATCH_MAX_DISTANCE,
+                    "Names within this Levenshtein distance of a watched domain are marked. 0 disables fuzzy matching.",
+                    ConfigurationField.Optional.OPTIONAL,
+                    NumberField.Attribute.ONLY_POSITIVE
+            ));
+
+            return r;
+        }
+
     }
 
 }
@@ -2,21 +2,48 @@
 package org.graylog.plugins.certificatetransparency.loginput;
 
 import com.codahale.metrics.MetricSet;
+import com.fasterxml.jackson.core.type.TypeReference;
 import com.fasterxml.jackson.databind.DeserializationFeature;
 import com.fasterxml.jackson.databind.ObjectMapper;
+import com.google.common.base.CharMatcher;
+import com.google.common.base.Splitter;
+import com.google.common.base.Strings;
 import com.google.common.collect.ImmutableList;
+import com.google.common.collect.ImmutableSet;
 import com.google.common.eventbus.EventBus;
 import com.google.common.util.concurrent.ThreadFactoryBuilder;
 import com.google.inject.assistedinject.Assisted;
 import okhttp3.OkHttpClient;
+import org.graylog.plugins.certificatetransparency.loginput.ct.backfill.Backfill;
+import org.graylog.plugins.certificatetransparency.loginput.ct.backfill.BackfillCheckpoints;
+import org.graylog.plugins.certificatetransparency.loginput.ct.backfill.BackfillRange;
+import org.graylog.plugins.certificatetransparency.loginput.ct.cluster.LogPartitioner;
+import org.graylog.plugins.certificatetransparency.loginput.ct.cluster.MongoNodeLeases;
+import org.graylog.plugins.certificatetransparency.loginput.ct.dedup.EntryDeduplicator;
+import org.graylog.plugins.certificatetransparency.loginput.ct.http.CtHttpClient;
+import org.graylog.plugins.certificatetransparency.loginput.ct.http.OperatorRateLimiters;
+import org.graylog.plugins.certificatetransparency.loginput.ct.logs.CertificateLogEntry;
+import org.graylog.plugins.certificatetransparency.loginput.ct.logs.DecodedLogEntry;
+import org.graylog.plugins.certificatetransparency.loginput.ct.logs.DecodedMessage;
+import org.graylog.plugins.certificatetransparency.loginput.ct.logs.EntryEmitter;
 import org.graylog.plugins.certificatetransparency.loginput.ct.logs.LogReader;
+import org.graylog.plugins.certificatetransparency.loginput.ct.logs.LogReaderScheduler;
+import org.graylog.plugins.certificatetransparency.loginput.ct.logs.checkpoints.CheckpointStore;
+import org.graylog.plugins.certificatetransparency.loginput.ct.logs.checkpoints.LogCheckpoints;
+import org.graylog.plugins.certificatetransparency.loginput.ct.logs.checkpoints.MongoCheckpointStorage;
 import org.graylog.plugins.certificatetransparency.loginput.ct.logservers.LogServer;
 import org.graylog.plugins.certificatetransparency.loginput.ct.logservers.LogServers;
+import org.graylog.plugins.certificatetransparency.loginput.ct.x509.IssuerCache;
+import org.graylog2.database.MongoConnection;
 import org.graylog2.plugin.LocalMetricRegistry;
 import org.graylog2.plugin.ServerStatus;
 import org.graylog2.plugin.cluster.ClusterConfigService;
 import org.graylog2.plugin.configuration.Configuration;
 import org.graylog2.plugin.configuration.ConfigurationRequest;
+import org.graylog2.plugin.configuration.fields.BooleanField;
+import org.graylog2.plugin.configuration.fields.ConfigurationField;
+import org.graylog2.plugin.configuration.fields.NumberField;
+import org.graylog2.plugin.configuration.fields.TextField;
 import org.graylog2.plugin.inputs.MessageInput;
 import org.graylog2.plugin.inputs.MisfireException;
 import org.graylog2.plugin.inputs.annotations.ConfigClass;
@@ -32,85 +59,232 @@ import javax.inject.Inject;
 import javax.inject.Named;
 import java.io.IOException;
 import java.net.URI;
+import java.time.Instant;
+import java.time.LocalDate;
+import java.time.ZoneOffset;
+import java.time.format.DateTimeParseException;
+import java.util.List;
+import java.util.Set;
 import java.util.concurrent.Executors;
 import java.util.concurrent.ScheduledExecutorService;
 import java.util.concurrent.TimeUnit;
+import java.util.stream.Collectors;
 
-public class CertificateLogTransport implements Transport {
+public class CertificateLogTransport extends ThrottleableTransport {
 
     public static final String NAME = "CertificateTransparency";
 
     private static final Logger LOG = LoggerFactory.getLogger(CertificateLogTransport.class);
 
+    private static final String LOG_POSITIONS_COLLECTION = "ct_log_positions";
+    private static final String BACKFILL_RANGES_COLLECTION = "ct_backfill_ranges";
+    private static final String NODE_LEASES_COLLECTION = "ct_node_leases";
+
+    private static final String CK_LOG_LIST_URL = "log_list_url";
+    private static final String CK_READER_THREADS = "reader_threads";
+    private static final String CK_POLL_INTERVAL = "poll_interval";
+    private static final String CK_MAX_POLL_INTERVAL = "max_poll_interval";
+    private static final String CK_FRESHNESS_TARGET = "freshness_target";
+    private static final String CK_MAX_BACKOFF = "max_backoff";
+    private static final String CK_REQUESTS_IN_FLIGHT = "requests_in_flight";
+    private static final String CK_MAX_REQUESTS_PER_HOST = "max_requests_per_host";
+    private static final String CK_OPERATOR_RATE = "operator_rate";
+    private static final String CK_TREE_HEAD_TIMEOUT = "tree_head_timeout";
+    private static final String CK_ENTRIES_TIMEOUT = "entries_timeout";
+    private static final String CK_CHECKPOINT_INTERVAL = "checkpoint_interval";
+    private static final String CK_PARTITION_LOGS = "partition_logs";
+    private static final String CK_LEASE_TIMEOUT = "lease_timeout";
+    private static final String CK_CHECKPOINT_ENTRIES = "checkpoint_entries";
+    private static final String CK_MAX_CATCHUP_ENTRIES = "max_catchup_entries";
+    private static final String CK_READ_PRECERTIFICATES = "read_precertificates";
+    private static final String CK_DEDUP_ENABLED = "dedup_enabled";
+    private static final String CK_DEDUP_CAPACITY = "dedup_capacity";
+    private static final String CK_DEDUP_FALSE_POSITIVES = "dedup_false_positives";
+    private static final String CK_DEDUP_WINDOW = "dedup_window";
+    private static final String CK_DEDUP_COUNT_PER_LOG = "dedup_count_per_log";
+    private static final String CK_QUEUE_SIZE = "queue_size";
+    private static final String CK_DECODER_THREADS = "decoder_threads";
+    private static final String CK_BACKFILL_ENABLED = "backfill_enabled";
+    private static final String CK_BACKFILL_LOGS = "backfill_logs";
+    private static final String CK_BACKFILL_START_INDEX = "backfill_start_index";
+    private static final String CK_BACKFILL_START_DATE = "backfill_start_date";
+    private static final String CK_BACKFILL_WORKERS = "backfill_workers";
+    private static final String CK_BACKFILL_RANGE_SIZE = "backfill_range_size";
+    private static final String CK_BACKFILL_RATE = "backfill_rate";
+
+    private static final int DEFAULT_READER_THREADS = 10;
+    private static final int DEFAULT_POLL_INTERVAL = 5;
+    private static final int DEFAULT_MAX_POLL_INTERVAL = 600;
+    private static final int DEFAULT_FRESHNESS_TARGET = 30;
+    private static final int DEFAULT_MAX_BACKOFF = 300;
+    private static final int DEFAULT_REQUESTS_IN_FLIGHT = 4;
+    private static final int DEFAULT_MAX_REQUESTS_PER_HOST = 16;
+    private static final int DEFAULT_OPERATOR_RATE = 20;
+    private static final int DEFAULT_TREE_HEAD_TIMEOUT = 5;
+    private static final int DEFAULT_ENTRIES_TIMEOUT = 30;
+    private static final int DEFAULT_CHECKPOINT_INTERVAL = 30;
+    private static final int DEFAULT_LEASE_TIMEOUT = 30;
+    private static final int DEFAULT_CHECKPOINT_ENTRIES = 10000;
+    private static final int DEFAULT_MAX_CATCHUP_ENTRIES = 500000;
+    private static final int DEFAULT_DEDUP_CAPACITY = 2000000;
+    private static final int DEFAULT_DEDUP_FALSE_POSITIVES = 100000;
+    private static final int DEFAULT_DEDUP_WINDOW = 60;
+    private static final int DEFAULT_QUEUE_SIZE = 5000;
+    private static final int DEFAULT_BACKFILL_WORKERS = 4;
+    private static final int DEFAULT_BACKFILL_RANGE_SIZE = 100000;
+    private static final int DEFAULT_BACKFILL_RATE = 1000;
+
     private final ServerStatus serverStatus;
     private final URI httpProxyUri;
     private final LocalMetricRegistry localRegistry;
     private final ClusterConfigService clusterConfigService;
+    private final MongoConnection mongoConnection;
     private final ObjectMapper objectMapper;
-    private final OkHttpClient httpClient;
+    private final CtHttpClient httpClient;
+    private final OperatorRateLimiters operatorLimiters;
+    private final int requestsInFlight;
+    private final int checkpointInterval;
+    private final int checkpointEntries;
+    private final int maxCatchUpEntries;
+    private final boolean readPrecertificates;
+    private final int queueSize;
+    private final int decoderThreads;
+    private final CertificateEntryDecoder decoder;
+    private final DecoderMetrics decoderMetrics;
+    private final InputDecoderMetrics inputDecoderMetrics;
+    private final Configuration configuration;
+    private final EntryDeduplicator deduplicator;
 
+    private final LogServers logServersFetcher;
     private final ScheduledExecutorService logServerRefreshService;
+    private final ScheduledExecutorService heartbeatService;
+    private final ScheduledExecutorService checkpointService;
     private final ScheduledExecutorService logReaderService;
+    private final LogReaderScheduler logReaderScheduler;
 
-    private ImmutableList<LogServer> logServers = null;
-
-    // A list of known broken servers that would just throw tons of exceptions.
-    public static final ImmutableList<String> BAD_SERVERS = new ImmutableList.Builder<String>()
-            .add("log.certly.io/") // NXDOMAIN
-            .add("ct.izenpe.com/") // timeout
-            .add("ct.izenpe.eus/") // timeout
-            .add("ct.wosign.com/") // connection refused
-            .add("ctlog.wosign.com/") // ssl handshake errors
-            .add("ctlog2.wosign.com/") // NXDOMAIN
-            .add("ct.gdca.com.cn/") // ssl handshake error
-            .add("ctlog.gdca.com.cn/") // ssl handshake error
-            .add("ctlog.api.venafi.com/") // NXDOMAIN
-            .add("ct.startssl.com/") // ssl handshake error
-            .add("www.certificatetransparency.cn/ct/") // timeout
-            .add("flimsy.ct.nordu.net:8080/") // connection refused
-            .add("ctlog.sheca.com/") // NXDOMAIN
-            .add("ct.sheca.com/") // ssl handshake error
-            .add("ct.akamai.com/") // ssl unverified peer
-            .add("alpha.ctlogs.org/") // NXDOMAIN
-            .add("clicky.ct.letsencrypt.org/") // NXDOMAIN
-            .add("ct.filippo.io/behindthesofa/") // no route
-            .build();
+    private MessageInput input = null;
+    private LogCheckpoints checkpoints = null;
+    private EntryEmitter emitter = null;
+    private Backfill backfill = null;
+    private LogPartitioner partitioner = null;
+    private long heartbeatMillis = 0;
+    private volatile List<LogServer> logServers = ImmutableList.of();
 
     @Inject
     public CertificateLogTransport(@Assisted final Configuration configuration,
                                    final ClusterConfigService clusterConfigService,
+                                   final MongoConnection mongoConnection,
                                    final EventBus serverEventBus, final ObjectMapper objectMapper,
                                    final ServerStatus serverStatus,
                                    final OkHttpClient httpClient,
                                    @Named("http_proxy_uri") @Nullable URI httpProxyUri,
-                                   LocalMetricRegistry localRegistry) {
+                                   LocalMetricRegistry localRegistry,
+                                   IssuerCache issuerCache,
+                                   InputDecoderMetrics inputDecoderMetrics) {
+        super(serverEventBus, configuration);
+
         this.clusterConfigService = clusterConfigService;
+        this.mongoConnection = mongoConnection;
         this.serverStatus = serverStatus;
         this.httpProxyUri = httpProxyUri;
         this.localRegistry = localRegistry;
 
-        this.httpClient = httpClient.newBuilder()
-                .followRedirects(true)
-                .followSslRedirects(true)
-                .connectTimeout(10, TimeUnit.SECONDS)
-                .readTimeout(10, TimeUnit.SECONDS)
-                .writeTimeout(10, TimeUnit.SECONDS)
-                .build();
+        // All requests to the logs share connections, and the logs of an operator often share a host.
+        this.httpClient = new CtHttpClient(
+                httpClient,
+                configuration.getInt(CK_MAX_REQUESTS_PER_HOST, DEFAULT_MAX_REQUESTS_PER_HOST),
+                configuration.getInt(CK_READER_THREADS, DEFAULT_READER_THREADS),
+                configuration.getInt(CK_TREE_HEAD_TIMEOUT, DEFAULT_TREE_HEAD_TIMEOUT),
+                configuration.getInt(CK_ENTRIES_TIMEOUT, DEFAULT_ENTRIES_TIMEOUT),
+                TimeUnit.SECONDS,
+                localRegistry
+        );
+
+        this.requestsInFlight = configuration.getInt(CK_REQUESTS_IN_FLIGHT, DEFAULT_REQUESTS_IN_FLIGHT);
+
+        // Operators limit requests over all their logs, so that's where we slow down when they push back.
+        this.operatorLimiters = new OperatorRateLimiters(
+                Math.max(1, configuration.getInt(CK_OPERATOR_RATE, DEFAULT_OPERATOR_RATE)),
+                requestsInFlight,
+                localRegistry
+        );
+        this.checkpointInterval = configuration.getInt(CK_CHECKPOINT_INTERVAL, DEFAULT_CHECKPOINT_INTERVAL);
+        this.checkpointEntries = configuration.getInt(CK_CHECKPOINT_ENTRIES, DEFAULT_CHECKPOINT_ENTRIES);
+        this.maxCatchUpEntries = configuration.getInt(CK_MAX_CATCHUP_ENTRIES, DEFAULT_MAX_CATCHUP_ENTRIES);
+        this.readPrecertificates = configuration.getBoolean(CK_READ_PRECERTIFICATES, true);
+        this.queueSize = configuration.getInt(CK_QUEUE_SIZE, DEFAULT_QUEUE_SIZE);
+
+        // The input's configuration has the codec fields too, so entries decoded here end up the same as in the codec.
+        this.decoderThreads = configuration.getInt(CK_DECODER_THREADS, 0);
+        this.decoder = new CertificateEntryDecoder(configuration, issuerCache);
+        this.decoderMetrics = new DecoderMetrics(localRegistry);
+        this.inputDecoderMetrics = inputDecoderMetrics;
+        this.configuration = configuration;
+
+        // Shared by all log readers of this input, so only the first copy of a certificate is passed on.
+        if (configuration.getBoolean(CK_DEDUP_ENABLED, true)) {
+            this.deduplicator = new EntryDeduplicator(
+                    localRegistry,
+                    configuration.getInt(CK_DEDUP_CAPACITY, DEFAULT_DEDUP_CAPACITY),
+                    1.0 / Math.max(2, configuration.getInt(CK_DEDUP_FALSE_POSITIVES, DEFAULT_DEDUP_FALSE_POSITIVES)),
+                    configuration.getInt(CK_DEDUP_WINDOW, DEFAULT_DEDUP_WINDOW),
+                    TimeUnit.MINUTES,
+                    configuration.getBoolean(CK_DEDUP_COUNT_PER_LOG, false)
+            );
+        } else {
+            this.deduplicator = null;
+        }
 
         this.objectMapper = objectMapper;
         objectMapper.configure(DeserializationFeature.FAIL_ON_UNKNOWN_PROPERTIES, false);
 
+        // The last log list is kept in the cluster configuration and only downloaded again when it changed.
+        this.logServersFetcher = new LogServers(
+                objectMapper,
+                this.httpClient.logList(),
+                Strings.isNullOrEmpty(configuration.getString(CK_LOG_LIST_URL))
+                        ? LogServers.ALL_LOGS_LIST
+                        : configuration.getString(CK_LOG_LIST_URL).trim(),
+                clusterConfigService
+        );
+
         this.logServerRefreshService = Executors.newScheduledThreadPool(1,
                 new ThreadFactoryBuilder()
                         .setDaemon(true)
                         .setNameFormat("ct-log-server-refresh-%d")
                         .build());
 
-        this.logReaderService = Executors.newScheduledThreadPool(10,
+        // Logs are assigned to the readers and the lease renewed on their own thread, never behind a slow download of
+        // the log list, so the lease doesn't expire while this node still reads its logs.
+        this.heartbeatService = Executors.newSingleThreadScheduledExecutor(
+                new ThreadFactoryBuilder()
+                        .setDaemon(true)
+                        .setNameFormat("ct-heartbeat-%d")
+                        .build());
+
+        // Checkpoints are written on their own thread, so neither reading nor passing on entries waits for MongoDB.
+        this.checkpointService = Executors.newSingleThreadScheduledExecutor(
+                new ThreadFactoryBuilder()
+                        .setDaemon(true)
+                        .setNameFormat("ct-checkpoint-%d")
+                        .build());
+
+        this.logReaderService = Executors.newScheduledThreadPool(
+                configuration.getInt(CK_READER_THREADS, DEFAULT_READER_THREADS),
                 new ThreadFactoryBuilder()
                         .setDaemon(true)
                         .setNameFormat("ct-log-reader-%d")
                         .build());
+
+        this.logReaderScheduler = new LogReaderScheduler(
+                logReaderService,
+                localRegistry,
+                configuration.getInt(CK_POLL_INTERVAL, DEFAULT_POLL_INTERVAL),
+                configuration.getInt(CK_MAX_POLL_INTERVAL, DEFAULT_MAX_POLL_INTERVAL),
+                configuration.getInt(CK_FRESHNESS_TARGET, DEFAULT_FRESHNESS_TARGET),
+                configuration.getInt(CK_MAX_BACKOFF, DEFAULT_MAX_BACKOFF),
+                TimeUnit.SECONDS
+        );
     }
 
     @Override
@@ -119,33 +293,221 @@ public class CertificateLogTransport implements Transport {
     }
 
     @Override
-    public void launch(MessageInput input) throws MisfireException {
-        // Load log servers and start background job to keep updating.
-        updateLogServers();
-        this.logServerRefreshService.scheduleWithFixedDelay(this::updateLogServers, 1, 1, TimeUnit.HOURS);
-
-        // Read latest logs every 5 seconds. // TODO make configurable
-        final LogReader reader = new LogReader(input, httpClient, objectMapper, logServers);
-        this.logReaderService.scheduleWithFixedDelay(reader::read, 0, 5, TimeUnit.SECONDS);
+    public void doLaunch(MessageInput input) throws MisfireException {
+        this.input = input;
+
+        // The codec finds the metrics of this input here, for the entries that are left to it.
+        this.inputDecoderMetrics.register(input.getId(), decoderMetrics);
+
+        // Resume from the positions this input reached before it was stopped. Write them back regularly.
+        this.checkpoints = new LogCheckpoints(new CheckpointStore<>(
+                new MongoCheckpointStorage<>(mongoConnection, LOG_POSITIONS_COLLECTION, objectMapper, new TypeReference<Long>() {}),
+                input.getId(),
+                checkpointEntries,
+                checkpointService
+        ));
+        this.checkpoints.load();
+        this.checkpointService.scheduleWithFixedDelay(checkpoints::flush, checkpointInterval, checkpointInterval, TimeUnit.SECONDS);
+
+        // Readers hand their entries over to the input through a bounded queue and wait while it is full.
+        this.emitter = new EntryEmitter(input, queueSize, this::decode, decoderThreads, localRegistry);
+        this.emitter.start();
+
+        if (configuration.getBoolean(CK_BACKFILL_ENABLED, false)) {
+            this.backfill = createBackfill(input);
+            this.backfill.registerMetrics(localRegistry);
+            this.checkpointService.scheduleWithFixedDelay(backfill::flush, checkpointInterval, checkpointInterval, TimeUnit.SECONDS);
+        }
+
+        // A global input runs on every node. Split the logs between the nodes instead of reading all of them everywhere.
+        if (input.isGlobal() && configuration.getBoolean(CK_PARTITION_LOGS, true)) {
+            long leaseMillis = TimeUnit.SECONDS.toMillis(configuration.getInt(CK_LEASE_TIMEOUT, DEFAULT_LEASE_TIMEOUT));
+            this.heartbeatMillis = Math.max(1000, leaseMillis / 3);
+            this.partitioner = new LogPartitioner(
+                    new MongoNodeLeases(mongoConnection, NODE_LEASES_COLLECTION),
+                    input.getId(),
+                    serverStatus.getNodeId().toString(),
+                    leaseMillis
+            );
+            this.partitioner.registerMetrics(localRegistry);
+            this.heartbeatService.scheduleWithFixedDelay(this::rebalance, heartbeatMillis, heartbeatMillis, TimeUnit.MILLISECONDS);
+        }
+
+        // Start reading the logs of the cached log list right away, without waiting for the download.
+        ImmutableList<LogServer> cached = logServersFetcher.cached();
+        if (!cached.isEmpty()) {
+            LOG.info("Starting with {} cached Certificate Transparency log servers.", cached.size());
+            this.logServers = cached;
+            this.heartbeatService.execute(this::rebalance);
+        }
+
+        // Refresh log servers in the background and keep the readers in line with the log list.
+        this.logServerRefreshService.scheduleWithFixedDelay(this::updateLogServers, 0, 1, TimeUnit.HOURS);
     }
 
     private void updateLogServers() {
+        final ImmutableList<LogServer> logServers;
         try {
-            final LogServers logServersFetcher = new LogServers(objectMapper, httpClient, BAD_SERVERS);
-            this.logServers = logServersFetcher.fetch();
+            logServers = logServersFetcher.fetch();
         } catch (IOException | LogServers.FetchException e) {
+            // Keep reading the logs we already know about. Without any, try again soon instead of in an hour.
             LOG.error("Could not refresh Certificate Transparency log servers.", e);
+            if (!logReaderScheduler.hasReaders()) {
+                logServerRefreshService.schedule(this::updateLogServers, 1, TimeUnit.MINUTES);
+            }
+            return;
+        }
+
+        this.logServers = logServers;
+        heartbeatService.execute(this::rebalance);
+    }
+
+    /**
+     * Reads the logs that are assigned to this node. That's all of them, unless the logs are split between the nodes.
+     */
+    private synchronized void rebalance() {
+        List<LogServer> logServers = this.logServers;
+        try {
+            if (partitioner != null) {
+                if (!partitioner.holdsLease(System.currentTimeMillis())) {
+                    // The heartbeat is late and other nodes may read our logs already. Hand them off before renewing.
+                    handOffAll();
+                }
+                Set<String> assigned = partitioner.heartbeat(
+                        logServers.stream().map(LogServer::url).collect(Collectors.toList()),
+                        logReaderScheduler.getHeldLogs()
+                );
+                checkpoints.acquire(assigned);
+                logServers = logServers.stream()
+                        .filter(logServer -> assigned.contains(logServer.url()))
+                        .collect(Collectors.toList());
+            }
+
+            // Every log server is read by its own task, so one slow log does not hold up all the others.
+            logReaderScheduler.reconcile(logServers, this::createReader);
+
+            if (backfill != null) {
+                backfill.retain(logServers);
+                backfill.start(logServers);
+            }
+        } catch (Exception e) {
+            LOG.error("Could not assign Certificate Transparency logs of input <{}> to this node.", input.getId(), e);
+
+            // Without a renewed lease, other nodes take over our logs once it expired. Keep reading them only if the
+            // next heartbeat can still renew it.
+            if (partitioner != null && !partitioner.holdsLease(System.currentTimeMillis() + heartbeatMillis)) {
+                handOffAll();
+            }
         }
     }
 
-    private void readLogs() {
+    /**
+     * Stops reading and backfilling all logs of this node and writes their positions, so the nodes that take them over
+     * continue from there.
+     */
+    private void handOffAll() {
+        if (logReaderScheduler.hasReaders()) {
+            LOG.warn("Lease of input <{}> expires before it can be renewed. Handing off its Certificate Transparency logs.", input.getId());
+        }
+        logReaderScheduler.reconcile(ImmutableList.of(), this::createReader);
+        if (backfill != null) {
+            backfill.retain(ImmutableList.of());
+        }
+    }
+
+    @Nullable
+    private byte[] decode(byte[] payload) {
+        List<DecodedMessage> messages = decoder.decode(CertificateLogEntry.fromBytes(payload), decoderMetrics);
+        return messages == null ? null : new DecodedLogEntry(messages).toBytes();
+    }
+
+    private Backfill createBackfill(MessageInput input) throws MisfireException {
+        Instant startDate = null;
+        String date = Strings.emptyToNull(configuration.getString(CK_BACKFILL_START_DATE));
+        if (date != null) {
+            try {
+                startDate = LocalDate.parse(date.trim()).atStartOfDay(ZoneOffset.UTC).toInstant();
+            } catch (DateTimeParseException e) {
+                throw new MisfireException("Invalid backfill start date [" + date + "]. Expected a date like 2017-08-01.", e);
+            }
+        }
+
+        BackfillCheckpoints backfillCheckpoints = new BackfillCheckpoints(new CheckpointStore<>(
+                new MongoCheckpointStorage<>(mongoConnection, BACKFILL_RANGES_COLLECTION, objectMapper, new TypeReference<List<BackfillRange>>() {}),
+                input.getId(),
+                checkpointEntries,
+                checkpointService
+        ));
 
+        return new Backfill(
+                input.getId(),
+                ImmutableSet.copyOf(Splitter.on(CharMatcher.anyOf(",\n")).trimResults().omitEmptyStrings()
+                        .split(Strings.nullToEmpty(configuration.getString(CK_BACKFILL_LOGS)))),
+                configuration.getInt(CK_BACKFILL_START_INDEX, 0),
+                startDate,
+                configuration.getInt(CK_BACKFILL_RANGE_SIZE, DEFAULT_BACKFILL_RANGE_SIZE),
+                configuration.getInt(CK_BACKFILL_WORKERS, DEFAULT_BACKFILL_WORKERS),
+                Math.max(1, configuration.getInt(CK_BACKFILL_RATE, DEFAULT_BACKFILL_RATE)),
+                readPrecertificates,
+                httpClient,
+                operatorLimiters,
+                objectMapper,
+                backfillCheckpoints,
+                emitter,
+                this::isThrottled
+        );
+    }
+
+    private LogReader createReader(LogServer logServer) {
+        return new LogReader(
+                logServer,
+                emitter,
+                this::isThrottled,
+                httpClient,
+                operatorLimiters.forLog(logServer),
+                objectMapper,
+                checkpoints,
+                requestsInFlight,
+                maxCatchUpEntries,
+                readPrecertificates,
+                deduplicator,
+                localRegistry
+        );
     }
 
     @Override
-    public void stop() {
+    public void doStop() {
+        this.heartbeatService.shutdown();
+        this.logReaderScheduler.stop();
         this.logServerRefreshService.shutdown();
+
+        if (backfill != null) {
+            backfill.stop();
+            Backfill.removeMetrics(localRegistry);
+        }
+
+        // Entries that are still queued were not checkpointed and are read again on the next launch.
+        if (emitter != null) {
+            emitter.stop();
+        }
+
+        this.checkpointService.shutdown();
+        if (checkpoints != null) {
+            checkpoints.flush();
+        }
+
+        // Only after the positions were written, so the nodes that take over continue from there.
+        if (partitioner != null) {
+            partitioner.leave();
+            LogPartitioner.removeMetrics(localRegistry);
+        }
+
         this.logReaderService.shutdown();
+        this.httpClient.shutdown();
+
+        if (input != null) {
+            inputDecoderMetrics.remove(input.getId(), decoderMetrics);
+        }
     }
 
     @Override
@@ -169,6 +531,273 @@ public class CertificateLogTransport implements Transport {
         public ConfigurationRequest getRequestedConfiguration() {
             final ConfigurationRequest r = super.getRequestedConfiguration();
 
+            r.addField(new TextField(
+                    CK_LOG_LIST_URL,
+                    "Log list URL",
+                    LogServers.ALL_LOGS_LIST,
+                    "URL of the list of Certificate Transparency logs to read, in the format of the list published by Google.",
+                    ConfigurationField.Optional.OPTIONAL
+            ));
+
+            r.addField(new NumberField(
+                    CK_READER_THREADS,
+                    "Reader threads",
+                    DEFAULT_READER_THREADS,
+                    "Maximum number of log servers that are read at the same time.",
+                    ConfigurationField.Optional.OPTIONAL,
+                    NumberField.Attribute.ONLY_POSITIVE
+            ));
+
+            r.addField(new NumberField(
+                    CK_POLL_INTERVAL,
+                    "Minimum poll interval",
+                    DEFAULT_POLL_INTERVAL,
+                    "Seconds to wait at least between two reads of the same log server.",
+                    ConfigurationField.Optional.OPTIONAL,
+                    NumberField.Attribute.ONLY_POSITIVE
+            ));
+
+            r.addField(new NumberField(
+                    CK_MAX_POLL_INTERVAL,
+                    "Maximum poll interval",
+                    DEFAULT_MAX_POLL_INTERVAL,
+                    "Seconds to wait at most between two reads of a log server that doesn't grow.",
+                    ConfigurationField.Optional.OPTIONAL,
+                    NumberField.Attribute.ONLY_POSITIVE
+            ));
+
+            r.addField(new NumberField(
+                    CK_FRESHNESS_TARGET,
+                    "Freshness target",
+                    DEFAULT_FRESHNESS_TARGET,
+                    "Seconds after which a new entry of a growing log should have been read. Logs are read more or less often depending on how fast they grow.",
+                    ConfigurationField.Optional.OPTIONAL,
+                    NumberField.Attribute.ONLY_POSITIVE
+            ));
+
+            r.addField(new NumberField(
+                    CK_MAX_BACKOFF,
+                    "Maximum backoff",
+                    DEFAULT_MAX_BACKOFF,
+                    "Maximum number of seconds to wait before reading a failing log server again.",
+                    ConfigurationField.Optional.OPTIONAL,
+                    NumberField.Attribute.ONLY_POSITIVE
+            ));
+
+            r.addField(new NumberField(
+                    CK_REQUESTS_IN_FLIGHT,
+                    "Requests in flight",
+                    DEFAULT_REQUESTS_IN_FLIGHT,
+                    "Number of get-entries requests that are sent to a log server at the same time when catching up.",
+                    ConfigurationField.Optional.OPTIONAL,
+                    NumberField.Attribute.ONLY_POSITIVE
+            ));
+
+            r.addField(new NumberField(
+                    CK_MAX_REQUESTS_PER_HOST,
+                    "Maximum requests per host",
+                    DEFAULT_MAX_REQUESTS_PER_HOST,
+                    "Number of requests that are sent to the same host at the same time, for all its logs together.",
+                    ConfigurationField.Optional.OPTIONAL,
+                    NumberField.Attribute.ONLY_POSITIVE
+            ));
+
+            r.addField(new NumberField(
+                    CK_OPERATOR_RATE,
+                    "Requests per second per operator",
+                    DEFAULT_OPERATOR_RATE,
+                    "Maximum number of requests per second to all logs of the same operator together. Lowered automatically while the operator answers with HTTP 429 or 503.",
+                    ConfigurationField.Optional.OPTIONAL,
+                    NumberField.Attribute.ONLY_POSITIVE
+            ));
+
+            r.addField(new NumberField(
+                    CK_TREE_HEAD_TIMEOUT,
+                    "Tree head timeout",
+                    DEFAULT_TREE_HEAD_TIMEOUT,
+                    "Seconds to wait for a connection or a get-sth response.",
+                    ConfigurationField.Optional.OPTIONAL,
+                    NumberField.Attribute.ONLY_POSITIVE
+            ));
+
+            r.addField(new NumberField(
+                    CK_ENTRIES_TIMEOUT,
+                    "Entries timeout",
+                    DEFAULT_ENTRIES_TIMEOUT,
+                    "Seconds to wait for data of a get-entries response or the log list.",
+                    ConfigurationField.Optional.OPTIONAL,
+                    NumberField.Attribute.ONLY_POSITIVE
+            ));
+
+            r.addField(new BooleanField(
+                    CK_PARTITION_LOGS,
+                    "Split logs between nodes",
+                    true,
+                    "When the input is global, every log is read by one node only and logs move between nodes as they join or leave. Duplicates are only skipped within the logs of the same node."
+            ));
+
+            r.addField(new NumberField(
+                    CK_LEASE_TIMEOUT,
+                    "Node lease timeout",
+                    DEFAULT_LEASE_TIMEOUT,
+                    "Seconds after which the logs of a node that stopped responding are read by the other nodes. Nodes renew their lease three times as often.",
+                    ConfigurationField.Optional.OPTIONAL,
+                    NumberField.Attribute.ONLY_POSITIVE
+            ));
+
+            r.addField(new NumberField(
+                    CK_CHECKPOINT_INTERVAL,
+                    "Checkpoint interval",
+                    DEFAULT_CHECKPOINT_INTERVAL,
+                    "Seconds between two writes of the read positions to MongoDB.",
+                    ConfigurationField.Optional.OPTIONAL,
+                    NumberField.Attribute.ONLY_POSITIVE
+            ));
+
+            r.addField(new NumberField(
+                    CK_CHECKPOINT_ENTRIES,
+                    "Checkpoint entries",
+                    DEFAULT_CHECKPOINT_ENTRIES,
+                    "Write the read positions early after this many entries have been read.",
+                    ConfigurationField.Optional.OPTIONAL,
+                    NumberField.Attribute.ONLY_POSITIVE
+            ));
+
+            r.addField(new NumberField(
+                    CK_MAX_CATCHUP_ENTRIES,
+                    "Maximum catch-up entries",
+                    DEFAULT_MAX_CATCHUP_ENTRIES,
+                    "When resuming, read at most this many entries per log that were appended while the input was stopped. Older entries are skipped. 0 means no limit.",
+                    ConfigurationField.Optional.OPTIONAL,
+                    NumberField.Attribute.ONLY_POSITIVE
+            ));
+
+            r.addField(new BooleanField(
+                    CK_READ_PRECERTIFICATES,
+                    "Read precertificates",
+                    true,
+                    "Also create messages for precertificates. Most certificates are logged as a precertificate first."
+            ));
+
+            r.addField(new BooleanField(
+                    CK_DEDUP_ENABLED,
+                    "Skip duplicates",
+                    true,
+                    "Only create a message for the first copy of a certificate or precertificate that is read from any log. Duplicates are only detected among the logs read by the same node, not across the nodes of a global input."
+            ));
+
+            r.addField(new NumberField(
+                    CK_DEDUP_CAPACITY,
+                    "Duplicate detection capacity",
+                    DEFAULT_DEDUP_CAPACITY,
+                    "Number of certificates remembered per window. Memory use grows with this number, about 6 MB per million at the default false positive rate.",
+                    ConfigurationField.Optional.OPTIONAL,
+                    NumberField.Attribute.ONLY_POSITIVE
+            ));
+
+            r.addField(new NumberField(
+                    CK_DEDUP_FALSE_POSITIVES,
+                    "Duplicate detection accuracy",
+                    DEFAULT_DEDUP_FALSE_POSITIVES,
+                    "About one in this many new certificates is wrongly taken for a duplicate and skipped. Higher values need more memory.",
+                    ConfigurationField.Optional.OPTIONAL,
+                    NumberField.Attribute.ONLY_POSITIVE
+            ));
+
+            r.addField(new NumberField(
+                    CK_DEDUP_WINDOW,
+                    "Duplicate detection window",
+                    DEFAULT_DEDUP_WINDOW,
+                    "Minutes a certificate is remembered at least. It is forgotten after twice this time or earlier if the capacity is reached.",
+                    ConfigurationField.Optional.OPTIONAL,
+                    NumberField.Attribute.ONLY_POSITIVE
+            ));
+
+            r.addField(new BooleanField(
+                    CK_DEDUP_COUNT_PER_LOG,
+                    "Count duplicates per log",
+                    false,
+                    "Add a metric per log server that counts the copies of already seen certificates it carried."
+            ));
+
+            r.addField(new BooleanField(
+                    CK_BACKFILL_ENABLED,
+                    "Backfill",
+                    false,
+                    "Also read the history of the logs, from the backfill start up to their size when the backfill began. Continues where it stopped after a restart."
+            ));
+
+            r.addField(new TextField(
+                    CK_BACKFILL_LOGS,
+                    "Backfill logs",
+                    "",
+                    "Comma separated list of log URLs to backfill, like \"ct.googleapis.com/pilot/\". All logs if empty.",
+                    ConfigurationField.Optional.OPTIONAL,
+                    TextField.Attribute.TEXTAREA
+            ));
+
+            r.addField(new NumberField(
+                    CK_BACKFILL_START_INDEX,
+                    "Backfill start index",
+                    0,
+                    "Index of the first entry to backfill in every log.",
+                    ConfigurationField.Optional.OPTIONAL,
+                    NumberField.Attribute.ONLY_POSITIVE
+            ));
+
+            r.addField(new TextField(
+                    CK_BACKFILL_START_DATE,
+                    "Backfill start date",
+                    "",
+                    "Backfill entries logged on this day (UTC) or later, like 2017-08-01. Takes precedence over the start index.",
+                    ConfigurationField.Optional.OPTIONAL
+            ));
+
+            r.addField(new NumberField(
+                    CK_BACKFILL_WORKERS,
+                    "Backfill workers",
+                    DEFAULT_BACKFILL_WORKERS,
+                    "Number of backfill ranges that are read at the same time.",
+                    ConfigurationField.Optional.OPTIONAL,
+                    NumberField.Attribute.ONLY_POSITIVE
+            ));
+
+            r.addField(new NumberField(
+                    CK_BACKFILL_RANGE_SIZE,
+                    "Backfill range size",
+                    DEFAULT_BACKFILL_RANGE_SIZE,
+                    "Number of entries per backfill range. Every range is read by one worker and has its own checkpoint.",
+                    ConfigurationField.Optional.OPTIONAL,
+                    NumberField.Attribute.ONLY_POSITIVE
+            ));
+
+            r.addField(new NumberField(
+                    CK_BACKFILL_RATE,
+                    "Backfill rate",
+                    DEFAULT_BACKFILL_RATE,
+                    "Maximum number of entries per second that all backfill workers read together.",
+                    ConfigurationField.Optional.OPTIONAL,
+                    NumberField.Attribute.ONLY_POSITIVE
+            ));
+
+            r.addField(new NumberField(
+                    CK_DECODER_THREADS,
+                    "Decoder threads",
+                    0,
+                    "Number of threads that parse certificates before they are passed to the input. 0 leaves parsing to the codec, one certificate at a time.",
+                    ConfigurationField.Optional.OPTIONAL,
+                    NumberField.Attribute.ONLY_POSITIVE
+            ));
+
+            r.addField(new NumberField(
+                    CK_QUEUE_SIZE,
+                    "Hand-off queue size",
+                    DEFAULT_QUEUE_SIZE,
+                    "Number of entries that may wait for the input. Log servers are read more slowly while it is full.",
+                    ConfigurationField.Optional.OPTIONAL,
+                    NumberField.Attribute.ONLY_POSITIVE
+            ));
+
             return r;
         }
 
@@ -0,0 +1,25 @@
+package org.graylog.plugins.certificatetransparency.loginput;
+
+import com.codahale.metrics.Counter;
+import com.codahale.metrics.MetricRegistry;
+import com.codahale.metrics.Timer;
+
+/**
+ * Time spent decoding the entries of one input into messages and the entries that could not be decoded, whether the
+ * transport or the codec decoded them.
+ */
+public class DecoderMetrics {
+
+    final Timer decodeTime;
+    final Counter unknownEntryType;
+    final Counter parseErrors;
+    final Counter missingDomainName;
+
+    public DecoderMetrics(MetricRegistry registry) {
+        this.decodeTime = registry.timer("decode_time");
+        this.unknownEntryType = registry.counter(MetricRegistry.name("entries_failed", "unknown_entry_type"));
+        this.parseErrors = registry.counter(MetricRegistry.name("entries_failed", "parse_error"));
+        this.missingDomainName = registry.counter(MetricRegistry.name("entries_failed", "no_domain_name"));
+    }
+
+}
@@ -0,0 +1,35 @@
+package org.graylog.plugins.certificatetransparency.loginput;
+
+import com.codahale.metrics.MetricRegistry;
+
+import javax.annotation.Nullable;
+import javax.inject.Singleton;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * The decoder metrics of the inputs running on this node, by input ID. The transport registers the metrics of its input
+ * when it starts, so the codec, which only learns the input from the messages it decodes, counts into the same ones.
+ */
+@Singleton
+public class InputDecoderMetrics {
+
+    // For entries of inputs that are not running anymore, like the ones left in the journal. Not reported.
+    private final DecoderMetrics detached = new DecoderMetrics(new MetricRegistry());
+
+    private final Map<String, DecoderMetrics> metrics = new ConcurrentHashMap<>();
+
+    public void register(String inputId, DecoderMetrics decoderMetrics) {
+        metrics.put(inputId, decoderMetrics);
+    }
+
+    public void remove(String inputId, DecoderMetrics decoderMetrics) {
+        metrics.remove(inputId, decoderMetrics);
+    }
+
+    public DecoderMetrics get(@Nullable String inputId) {
+        DecoderMetrics decoderMetrics = inputId == null ? null : metrics.get(inputId);
+        return decoderMetrics == null ? detached : decoderMetrics;
+    }
+
+}
@@ -0,0 +1,347 @@
+package org.graylog.plugins.certificatetransparency.loginput.ct.backfill;
+
+import com.codahale.metrics.Gauge;
+import com.codahale.metrics.MetricRegistry;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.google.common.util.concurrent.RateLimiter;
+import com.google.common.util.concurrent.ThreadFactoryBuilder;
+import okhttp3.HttpUrl;
+import org.graylog.plugins.certificatetransparency.loginput.ct.http.CtHttpClient;
+import org.graylog.plugins.certificatetransparency.loginput.ct.http.OperatorRateLimiters;
+import org.graylog.plugins.certificatetransparency.loginput.ct.http.RateLimitedException;
+import org.graylog.plugins.certificatetransparency.loginput.ct.logs.CertificateLogEntry;
+import org.graylog.plugins.certificatetransparency.loginput.ct.logs.EntryEmitter;
+import org.graylog.plugins.certificatetransparency.loginput.ct.logs.EntryRangeFetcher;
+import org.graylog.plugins.certificatetransparency.loginput.ct.logs.LogReadMetrics;
+import org.graylog.plugins.certificatetransparency.loginput.ct.logs.LogReader;
+import org.graylog.plugins.certificatetransparency.loginput.ct.logservers.LogServer;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import javax.annotation.Nullable;
+import java.io.IOException;
+import java.time.Instant;
+import java.util.Collection;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.function.BooleanSupplier;
+import java.util.stream.Collectors;
+
+/**
+ * Reads the history of logs, from a start index or date up to the size the log had when the backfill was planned.
+ * Everything after that is up to the log readers.
+ *
+ * The history of a log is split into ranges that are read in parallel by a pool of workers, each with its own
+ * checkpoint, so a backfill continues where it stopped after a restart. Entries go through the same hand-off queue
+ * and codec as the ones of the log readers, at a limited rate shared by all workers. Copies of a certificate in other
+ * logs are not skipped, that would push the recent entries out of the duplicate detection of the log readers.
+ *
+ * Requests count against the same per-operator limits as the ones of the log readers. When the logs of an input are
+ * split between nodes, a log is backfilled by the node that reads it, see {@link #retain(Collection)}.
+ */
+public class Backfill {
+
+    private static final Logger LOG = LoggerFactory.getLogger(Backfill.class);
+
+    private static final long PAUSE_MILLIS = 1000;
+    private static final long RETRY_MILLIS = 30000;
+
+    private final String inputId;
+    private final Set<String> logUrls;
+    private final long startIndex;
+    @Nullable
+    private final Instant startDate;
+    private final long rangeSize;
+    private final boolean readPrecertificates;
+    private final CtHttpClient httpClient;
+    private final OperatorRateLimiters operatorLimiters;
+    private final ObjectMapper om;
+    private final BackfillCheckpoints checkpoints;
+    private final EntryEmitter emitter;
+    private final BooleanSupplier throttled;
+    private final RateLimiter rateLimiter;
+    private final ScheduledExecutorService workers;
+
+    // The log readers have their own metrics. Ours are registered below "backfill".
+    private final MetricRegistry metricRegistry;
+    private final LogReadMetrics metrics;
+
+    // Keyed by log URL. A log gets a new token whenever it is planned, tasks of an earlier plan stop on their own.
+    private final Map<String, Object> planned = new ConcurrentHashMap<>();
+    private final Map<String, BackfillRange> remaining = new ConcurrentHashMap<>();
+
+    private volatile boolean stopped = false;
+
+    /**
+     * @param logUrls   logs to backfill, all logs if empty
+     * @param startDate start at the first entry logged at this time or later, overrides the start index
+     */
+    public Backfill(String inputId,
+                    Set<String> logUrls,
+                    long startIndex,
+                    @Nullable Instant startDate,
+                    long rangeSize,
+                    int workers,
+                    double entriesPerSecond,
+                    boolean readPrecertificates,
+                    CtHttpClient httpClient,
+                    OperatorRateLimiters operatorLimiters,
+                    ObjectMapper om,
+                    BackfillCheckpoints checkpoints,
+                    EntryEmitter emitter,
+                    BooleanSupplier throttled) {
+        this.inputId = inputId;
+        this.logUrls = logUrls;
+        this.startIndex = Math.max(0, startIndex);
+        this.startDate = startDate;
+        this.rangeSize = Math.max(1, rangeSize);
+        this.readPrecertificates = readPrecertificates;
+        this.httpClient = httpClient;
+        this.operatorLimiters = operatorLimiters;
+        this.om = om;
+        this.checkpoints = checkpoints;
+        this.emitter = emitter;
+        this.throttled = throttled;
+        this.rateLimiter = RateLimiter.create(entriesPerSecond);
+        this.workers = Executors.newScheduledThreadPool(Math.max(1, workers),
+                new ThreadFactoryBuilder()
+                        .setDaemon(true)
+                        .setNameFormat("ct-backfill-%d")
+                        .build());
+
+        this.metricRegistry = new MetricRegistry();
+        this.metrics = new LogReadMetrics(metricRegistry);
+        metricRegistry.register("ranges_remaining", (Gauge<Integer>) remaining::size);
+        metricRegistry.register("entries_remaining", (Gauge<Long>) () -> remaining.values().stream()
+                .mapToLong(BackfillRange::remaining)
+                .sum());
+    }
+
+    public void registerMetrics(MetricRegistry registry) {
+        registry.register("backfill", metricRegistry);
+    }
+
+    public static void removeMetrics(MetricRegistry registry) {
+        registry.removeMatching((name, metric) -> name.startsWith("backfill."));
+    }
+
+    /**
+     * Plans or resumes the backfill of every log in the list that is selected and wasn't seen before.
+     */
+    public void start(Collection<LogServer> logServers) {
+        for (LogServer logServer : logServers) {
+            Object token = new Object();
+            if ((logUrls.isEmpty() || logUrls.contains(logServer.url())) && planned.putIfAbsent(logServer.url(), token) == null) {
+                workers.execute(() -> plan(logServer, token));
+            }
+        }
+    }
+
+    /**
+     * Stops backfilling the logs that are not in the list anymore, because another node reads them now. Their ranges
+     * are written, so that node continues where this one stopped.
+     */
+    public void retain(Collection<LogServer> logServers) {
+        Set<String> urls = logServers.stream().map(LogServer::url).collect(Collectors.toSet());
+        for (String url : planned.keySet()) {
+            if (!urls.contains(url)) {
+                LOG.info("Another node backfills [{}] now. Stopping to backfill it.", url);
+                planned.remove(url);
+                remaining.values().removeIf(range -> url.equals(range.logUrl()));
+                checkpoints.release(url);
+            }
+        }
+    }
+
+    public void stop() {
+        stopped = true;
+        workers.shutdownNow();
+        checkpoints.flush();
+    }
+
+    public void flush() {
+        checkpoints.flush();
+    }
+
+    private boolean isReleased(LogServer logServer, Object token) {
+        return planned.get(logServer.url()) != token;
+    }
+
+    private String request() {
+        return startDate == null ? "index:" + startIndex : "date:" + startDate;
+    }
+
+    private void plan(LogServer logServer, Object token) {
+        if (stopped || isReleased(logServer, token)) {
+            return;
+        }
+
+        String request = request();
+        checkpoints.acquire(logServer.url());
+        List<BackfillRange> ranges = checkpoints.get(logServer.url());
+
+        if (ranges.isEmpty() || !ranges.stream().allMatch(range -> request.equals(range.request()))) {
+            try {
+                HttpUrl url = url(logServer);
+                long treeSize = logServer.isFrozen()
+                        ? logServer.finalTreeSize()
+                        : LogReader.getTreeHead(httpClient.treeHeads(), om, url, operatorLimiters.forLog(logServer)).treeSize;
+                long start = startDate == null
+                        ? Math.min(startIndex, treeSize)
+                        : firstIndexAt(treeSize, startDate.toEpochMilli(), index -> timestamp(logServer, url, index));
+
+                ranges = BackfillRange.partition(inputId, logServer.url(), request, start, treeSize, rangeSize);
+                checkpoints.plan(logServer.url(), ranges);
+
+                LOG.info("Backfilling [{}] from <{}> to <{}> in {} ranges.", logServer, start, treeSize, ranges.size());
+            } catch (Exception e) {
+                long retryMillis = e instanceof RateLimitedException ? ((RateLimitedException) e).getRetryAfterMillis() : RETRY_MILLIS;
+                LOG.warn("Could not plan backfill of [{}]. Trying again in {} seconds.",
+                        logServer, TimeUnit.MILLISECONDS.toSeconds(retryMillis), e);
+                workers.schedule(() -> plan(logServer, token), retryMillis, TimeUnit.MILLISECONDS);
+                return;
+            }
+        } else {
+            LOG.info("Resuming backfill of [{}] in {} ranges.", logServer, ranges.stream().filter(r -> !r.isDone()).count());
+        }
+
+        for (BackfillRange range : ranges) {
+            if (!range.isDone()) {
+                remaining.put(key(range), range);
+                workers.execute(new RangeTask(logServer, range, token));
+            }
+        }
+    }
+
+    /**
+     * Finds the first index with a timestamp at or after the given one. Entries are only roughly ordered by their
+     * timestamp, within the maximum merge delay of the log, so this is close to the first such entry but not exact.
+     */
+    static long firstIndexAt(long treeSize, long timestamp, IndexTimestamps timestamps) throws IOException {
+        long low = 0;
+        long high = treeSize;
+        while (low < high) {
+            long middle = (low + high) >>> 1;
+            if (timestamps.at(middle) < timestamp) {
+                low = middle + 1;
+            } else {
+                high = middle;
+            }
+        }
+        return low;
+    }
+
+    interface IndexTimestamps {
+        long at(long index) throws IOException;
+    }
+
+    private long timestamp(LogServer logServer, HttpUrl url, long index) throws IOException {
+        long[] timestamp = {-1};
+        new EntryRangeFetcher(httpClient.entries(), om, url, 1, metrics, operatorLimiters.forLog(logServer)).fetch(index, index + 1, () -> false,
+                (i, leafInput, extraData) -> timestamp[0] = CertificateLogEntry.timestamp(leafInput));
+        return timestamp[0];
+    }
+
+    private static String key(BackfillRange range) {
+        return range.logUrl() + "#" + range.start();
+    }
+
+    private static HttpUrl url(LogServer logServer) {
+        HttpUrl url = logServer.httpUrl();
+        if (url == null) {
+            throw new IllegalStateException("Invalid Certificate Transparency log server URL: [" + logServer.url() + "].");
+        }
+        return url;
+    }
+
+    /**
+     * Reads one range from its position to its end. Pauses while the input is throttled and tries again later when
+     * the log fails.
+     */
+    private class RangeTask implements Runnable {
+
+        private final LogServer logServer;
+        private final Object token;
+        private final String key;
+        private final EntryEmitter.Checkpoint checkpoint;
+        private final EntryRangeFetcher fetcher;
+
+        private volatile BackfillRange range;
+        private volatile long position;
+
+        RangeTask(LogServer logServer, BackfillRange range, Object token) {
+            this.logServer = logServer;
+            this.token = token;
+            this.key = key(range);
+            this.range = range;
+            this.position = range.position();
+            this.checkpoint = index -> {
+                if (isReleased(logServer, token)) {
+                    return;
+                }
+                this.range = this.range.withPosition(index + 1);
+                checkpoints.update(this.range, index + 1);
+                if (this.range.isDone()) {
+                    remaining.remove(key);
+                } else {
+                    remaining.put(key, this.range);
+                }
+            };
+            this.fetcher = new EntryRangeFetcher(httpClient.entries(), om, url(logServer), 1, metrics, operatorLimiters.forLog(logServer));
+        }
+
+        @Override
+        public void run() {
+            if (stopped || isReleased(logServer, token)) {
+                return;
+            }
+
+            try {
+                fetcher.fetch(position, range.end(), () -> stopped || isReleased(logServer, token) || throttled.getAsBoolean(),
+                        (index, leafInput, extraData) -> {
+                            rateLimiter.acquire();
+                            metrics.entryRead(leafInput.length + extraData.length, CertificateLogEntry.timestamp(leafInput));
+
+                            if (!readPrecertificates && CertificateLogEntry.entryType(leafInput) == CertificateLogEntry.ENTRY_TYPE_PRECERT) {
+                                metrics.skipped(LogReadMetrics.SkipReason.PRECERTIFICATE, 1);
+                                emitter.emit(checkpoint, index, null);
+                            } else {
+                                CertificateLogEntry logEntry = new CertificateLogEntry(logServer.url(), index, leafInput, extraData);
+                                emitter.emit(checkpoint, index, logEntry.toBytes());
+                            }
+
+                            position = index + 1;
+                        });
+            } catch (RateLimitedException e) {
+                if (stopped || isReleased(logServer, token)) {
+                    return;
+                }
+                LOG.debug("Log server [{}] is rate limiting the backfill. Continuing in {}ms.", logServer, e.getRetryAfterMillis());
+                workers.schedule(this, e.getRetryAfterMillis(), TimeUnit.MILLISECONDS);
+                return;
+            } catch (IOException e) {
+                if (stopped || isReleased(logServer, token)) {
+                    return;
+                }
+                LOG.warn("Could not backfill [{}] at <{}>. Trying again in {} seconds.",
+                        logServer, position, TimeUnit.MILLISECONDS.toSeconds(RETRY_MILLIS), e);
+                workers.schedule(this, RETRY_MILLIS, TimeUnit.MILLISECONDS);
+                return;
+            }
+
+            if (position < range.end() && !stopped && !isReleased(logServer, token)) {
+                // Throttled. Continue from the position once the input takes entries again.
+                workers.schedule(this, PAUSE_MILLIS, TimeUnit.MILLISECONDS);
+            } else if (position >= range.end()) {
+                LOG.debug("Backfilled [{}] from <{}> to <{}>.", logServer, range.start(), range.end());
+            }
+        }
+
+    }
+
+}
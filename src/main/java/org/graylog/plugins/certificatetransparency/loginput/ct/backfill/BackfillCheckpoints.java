@@ -0,0 +1,103 @@
+package org.graylog.plugins.certificatetransparency.loginput.ct.backfill;
+
+import com.google.common.collect.ImmutableList;
+import org.graylog.plugins.certificatetransparency.loginput.ct.logs.checkpoints.CheckpointStore;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Keeps track of the backfill ranges of one input and their positions. The ranges of a log are its checkpoint, written
+ * in batches by a {@link CheckpointStore} like the positions of the log readers.
+ *
+ * Only the ranges of logs that were acquired are kept and written. When the logs of an input are split between nodes,
+ * every node acquires the logs it backfills and releases them when another node takes over.
+ */
+public class BackfillCheckpoints {
+
+    private static final Logger LOG = LoggerFactory.getLogger(BackfillCheckpoints.class);
+
+    private static final Comparator<BackfillRange> BY_START = Comparator.comparingLong(BackfillRange::start);
+
+    private final CheckpointStore<List<BackfillRange>> store;
+
+    // Keyed by log URL, ordered by their start. A log's list is replaced as a whole, so the store keeps a snapshot.
+    private final Map<String, List<BackfillRange>> ranges = new ConcurrentHashMap<>();
+
+    public BackfillCheckpoints(CheckpointStore<List<BackfillRange>> store) {
+        this.store = store;
+    }
+
+    /**
+     * Loads the ranges of a log as they were left off, by this node or the one that backfilled the log before. Must
+     * be called before the ranges of the log are asked for.
+     */
+    public void acquire(String logUrl) {
+        List<BackfillRange> loaded = store.load(Collections.singleton(logUrl)).get(logUrl);
+        ranges.put(logUrl, loaded == null ? ImmutableList.of() : sorted(loaded));
+
+        LOG.debug("Loaded Certificate Transparency backfill ranges of [{}].", logUrl);
+    }
+
+    /**
+     * Stops updating the ranges of a log and writes their last positions on the checkpoint executor. Positions of
+     * entries that are still queued are dropped, those entries are read again by the node that continues.
+     */
+    public void release(String logUrl) {
+        if (ranges.remove(logUrl) != null) {
+            store.release(logUrl, () -> LOG.debug("Released Certificate Transparency backfill ranges of [{}].", logUrl));
+        }
+    }
+
+    /**
+     * The ranges of the log, ordered by their start.
+     */
+    public List<BackfillRange> get(String logUrl) {
+        return ranges.getOrDefault(logUrl, ImmutableList.of());
+    }
+
+    /**
+     * Replaces all ranges of the log with a new plan.
+     */
+    public void plan(String logUrl, List<BackfillRange> plan) {
+        ranges.compute(logUrl, (url, previous) -> {
+            List<BackfillRange> planned = sorted(plan);
+            store.update(url, planned);
+            return planned;
+        });
+    }
+
+    public void update(BackfillRange range, long position) {
+        // Only logs that were acquired. The store is updated within, so it never gets an older list than the last one.
+        ranges.computeIfPresent(range.logUrl(), (url, logRanges) -> {
+            int index = Collections.binarySearch(logRanges, range, BY_START);
+            if (index < 0) {
+                // A range of an earlier plan.
+                return logRanges;
+            }
+
+            BackfillRange[] updated = logRanges.toArray(new BackfillRange[0]);
+            updated[index] = updated[index].withPosition(position);
+            List<BackfillRange> snapshot = Collections.unmodifiableList(Arrays.asList(updated));
+            store.update(url, snapshot);
+            return snapshot;
+        });
+    }
+
+    public void flush() {
+        store.flush();
+    }
+
+    private static List<BackfillRange> sorted(List<BackfillRange> logRanges) {
+        BackfillRange[] sorted = logRanges.toArray(new BackfillRange[0]);
+        Arrays.sort(sorted, BY_START);
+        return Collections.unmodifiableList(Arrays.asList(sorted));
+    }
+
+}
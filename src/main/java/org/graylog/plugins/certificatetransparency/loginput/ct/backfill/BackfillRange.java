@@ -0,0 +1,73 @@
+package org.graylog.plugins.certificatetransparency.loginput.ct.backfill;
+
+import com.fasterxml.jackson.annotation.JsonAutoDetect;
+import com.fasterxml.jackson.annotation.JsonCreator;
+import com.fasterxml.jackson.annotation.JsonProperty;
+import com.google.auto.value.AutoValue;
+import com.google.common.collect.ImmutableList;
+
+import java.util.List;
+
+/**
+ * A part of a log that is backfilled on its own. Entries in {@code [start, position)} were read already.
+ */
+@JsonAutoDetect
+@AutoValue
+public abstract class BackfillRange {
+
+    @JsonProperty("input_id")
+    public abstract String inputId();
+
+    @JsonProperty("log_url")
+    public abstract String logUrl();
+
+    // Where the backfill was asked to start, like "index:0" or "date:2017-08-01". A different one plans a new backfill.
+    @JsonProperty("request")
+    public abstract String request();
+
+    @JsonProperty("start")
+    public abstract long start();
+
+    // Exclusive.
+    @JsonProperty("end")
+    public abstract long end();
+
+    // Index of the next entry to read.
+    @JsonProperty("position")
+    public abstract long position();
+
+    public boolean isDone() {
+        return position() >= end();
+    }
+
+    public long remaining() {
+        return Math.max(0, end() - position());
+    }
+
+    public BackfillRange withPosition(long position) {
+        return create(inputId(), logUrl(), request(), start(), end(), position);
+    }
+
+    @JsonCreator
+    public static BackfillRange create(@JsonProperty("input_id") String inputId,
+                                       @JsonProperty("log_url") String logUrl,
+                                       @JsonProperty("request") String request,
+                                       @JsonProperty("start") long start,
+                                       @JsonProperty("end") long end,
+                                       @JsonProperty("position") long position) {
+        return new AutoValue_BackfillRange(inputId, logUrl, request, start, end, position);
+    }
+
+    /**
+     * Splits {@code [start, end)} into ranges of at most {@code rangeSize} entries.
+     */
+    public static List<BackfillRange> partition(String inputId, String logUrl, String request,
+                                                long start, long end, long rangeSize) {
+        ImmutableList.Builder<BackfillRange> ranges = ImmutableList.builder();
+        for (long from = start; from < end; from += rangeSize) {
+            ranges.add(create(inputId, logUrl, request, from, Math.min(from + rangeSize, end), from));
+        }
+        return ranges.build();
+    }
+
+}
@@ -0,0 +1,79 @@
+package org.graylog.plugins.certificatetransparency.loginput.ct.cluster;
+
+import com.google.common.hash.HashFunction;
+import com.google.common.hash.Hashing;
+
+import java.nio.charset.StandardCharsets;
+import java.util.Collection;
+import java.util.HashSet;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Decides which node reads a log with rendezvous hashing: every node scores every log and the node with the highest
+ * score reads it. All nodes come to the same result without talking to each other, and when a node joins or leaves
+ * only the logs it gains or loses move.
+ */
+public final class LogAssignment {
+
+    private static final HashFunction HASH = Hashing.murmur3_128();
+
+    private LogAssignment() {
+    }
+
+    /**
+     * The node that should read the log.
+     */
+    public static String owner(String logUrl, Collection<String> nodeIds) {
+        String owner = null;
+        long best = 0;
+        for (String nodeId : nodeIds) {
+            long score = score(nodeId, logUrl);
+            // Ties are practically impossible, but all nodes must break them the same way.
+            if (owner == null || score > best || (score == best && nodeId.compareTo(owner) < 0)) {
+                owner = nodeId;
+                best = score;
+            }
+        }
+        return owner;
+    }
+
+    /**
+     * The logs this node should read: those it owns among all live nodes, unless another node still reads them. Such
+     * logs are taken over once that node has handed them off and dropped them from its lease.
+     *
+     * @param held       the logs this node reads right now
+     * @param otherNodes the logs held by every other live node, keyed by node ID
+     */
+    public static Set<String> assign(Collection<String> logUrls,
+                                     String nodeId,
+                                     Set<String> held,
+                                     Map<String, ? extends Collection<String>> otherNodes) {
+        Set<String> nodeIds = new HashSet<>(otherNodes.keySet());
+        nodeIds.add(nodeId);
+
+        Set<String> heldByOthers = new HashSet<>();
+        for (Collection<String> logs : otherNodes.values()) {
+            heldByOthers.addAll(logs);
+        }
+
+        Set<String> assigned = new HashSet<>();
+        for (String logUrl : logUrls) {
+            // A log two nodes hold after they started at the same time stays with its owner.
+            if (nodeId.equals(owner(logUrl, nodeIds)) && (held.contains(logUrl) || !heldByOthers.contains(logUrl))) {
+                assigned.add(logUrl);
+            }
+        }
+        return assigned;
+    }
+
+    private static long score(String nodeId, String logUrl) {
+        return HASH.newHasher()
+                .putString(nodeId, StandardCharsets.UTF_8)
+                .putByte((byte) 0)
+                .putString(logUrl, StandardCharsets.UTF_8)
+                .hash()
+                .asLong();
+    }
+
+}
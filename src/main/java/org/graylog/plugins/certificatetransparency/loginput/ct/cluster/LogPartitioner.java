@@ -0,0 +1,116 @@
+package org.graylog.plugins.certificatetransparency.loginput.ct.cluster;
+
+import com.codahale.metrics.Gauge;
+import com.codahale.metrics.MetricRegistry;
+import com.google.common.collect.ImmutableList;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeSet;
+
+/**
+ * Splits the logs of a global input between the nodes of the cluster, so every log is read by one node only.
+ *
+ * Every node renews its lease with each heartbeat, listing the logs it reads. The nodes with a lease that didn't
+ * expire divide the logs among themselves with {@link LogAssignment}. A node that loses a log hands it off first: it
+ * stops reading, writes the position of the last entry that went through the input and only then drops the log from
+ * its lease. The node that gains the log waits for that and continues from the written
+ * position. A node that disappears without handing off loses its logs when its lease expires, and they are read again
+ * from their last written position. A node that can't renew its lease in time hands off its logs, see
+ * {@link #holdsLease(long)}, so they are not read by two nodes for long.
+ *
+ * Every node writes only its own lease, see {@link MongoNodeLeases}. Leases that expired are deleted by the next node
+ * that renews its own.
+ */
+public class LogPartitioner {
+
+    private static final Logger LOG = LoggerFactory.getLogger(LogPartitioner.class);
+
+    private final MongoNodeLeases leases;
+    private final String inputId;
+    private final String nodeId;
+    private final long leaseMillis;
+
+    private boolean announced = false;
+    private volatile long leaseExpiresAt = 0;
+    private volatile int nodes = 1;
+    private volatile int assigned = 0;
+
+    public LogPartitioner(MongoNodeLeases leases, String inputId, String nodeId, long leaseMillis) {
+        this.leases = leases;
+        this.inputId = inputId;
+        this.nodeId = nodeId;
+        this.leaseMillis = leaseMillis;
+    }
+
+    /**
+     * Renews the lease of this node with the logs it holds and returns the logs it should read from now on. The first
+     * heartbeat only announces the node, so it doesn't take logs from nodes that haven't seen it yet.
+     *
+     * @param held the logs this node reads or still hands off
+     */
+    public synchronized Set<String> heartbeat(Collection<String> logUrls, Set<String> held) {
+        long now = System.currentTimeMillis();
+
+        leases.renew(NodeLease.create(inputId, nodeId, now + leaseMillis, ImmutableList.copyOf(new TreeSet<>(held))));
+        leases.prune(inputId, now);
+
+        Map<String, List<String>> otherNodes = new HashMap<>();
+        for (NodeLease lease : leases.live(inputId, now)) {
+            if (!nodeId.equals(lease.nodeId())) {
+                otherNodes.put(lease.nodeId(), lease.logs());
+            }
+        }
+        leaseExpiresAt = now + leaseMillis;
+
+        if (otherNodes.size() + 1 != nodes) {
+            LOG.info("Input <{}> runs on {} nodes. Rebalancing its Certificate Transparency logs.", inputId, otherNodes.size() + 1);
+        }
+        nodes = otherNodes.size() + 1;
+
+        if (!announced) {
+            announced = true;
+            return Collections.emptySet();
+        }
+
+        Set<String> logs = LogAssignment.assign(logUrls, nodeId, held, otherNodes);
+        assigned = logs.size();
+        return logs;
+    }
+
+    /**
+     * Whether the lease of this node still holds at the given time. Once it doesn't, other nodes may read its logs.
+     */
+    public boolean holdsLease(long at) {
+        return at < leaseExpiresAt;
+    }
+
+    /**
+     * Drops the lease of this node, so the other nodes take over its logs with their next heartbeat instead of
+     * waiting for it to expire. The positions of the logs must have been written before.
+     */
+    public synchronized void leave() {
+        try {
+            leases.remove(inputId, nodeId);
+            leaseExpiresAt = 0;
+        } catch (Exception e) {
+            LOG.warn("Could not drop the lease of input <{}>. Its logs move to other nodes once it expired.", inputId, e);
+        }
+    }
+
+    public void registerMetrics(MetricRegistry registry) {
+        registry.register(MetricRegistry.name("partition", "nodes"), (Gauge<Integer>) () -> nodes);
+        registry.register(MetricRegistry.name("partition", "logs_assigned"), (Gauge<Integer>) () -> assigned);
+    }
+
+    public static void removeMetrics(MetricRegistry registry) {
+        registry.removeMatching((name, metric) -> name.startsWith("partition."));
+    }
+
+}
@@ -0,0 +1,89 @@
+package org.graylog.plugins.certificatetransparency.loginput.ct.cluster;
+
+import com.mongodb.BasicDBObject;
+import com.mongodb.DBCollection;
+import com.mongodb.DBCursor;
+import com.mongodb.DBObject;
+import org.graylog2.database.MongoConnection;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Keeps the leases of the nodes in a MongoDB collection with a document per input and node. A node only ever writes
+ * its own document, so renewals of nodes that write at the same time don't overwrite each other.
+ */
+public class MongoNodeLeases {
+
+    private static final String FIELD_INPUT_ID = "input_id";
+    private static final String FIELD_NODE_ID = "node_id";
+    private static final String FIELD_EXPIRES_AT = "expires_at";
+    private static final String FIELD_LOGS = "logs";
+
+    private final DBCollection collection;
+
+    public MongoNodeLeases(MongoConnection mongoConnection, String collectionName) {
+        this.collection = mongoConnection.getDatabase().getCollection(collectionName);
+        this.collection.createIndex(
+                new BasicDBObject(FIELD_INPUT_ID, 1).append(FIELD_NODE_ID, 1),
+                new BasicDBObject("unique", true)
+        );
+    }
+
+    /**
+     * Writes the lease of a node, replacing the one it had.
+     */
+    public void renew(NodeLease lease) {
+        collection.update(
+                new BasicDBObject(FIELD_INPUT_ID, lease.inputId()).append(FIELD_NODE_ID, lease.nodeId()),
+                new BasicDBObject("$set", new BasicDBObject(FIELD_EXPIRES_AT, lease.expiresAt())
+                        .append(FIELD_LOGS, new ArrayList<>(lease.logs()))),
+                true,
+                false
+        );
+    }
+
+    /**
+     * The leases of the input that didn't expire at the given time.
+     */
+    public List<NodeLease> live(String inputId, long nowMillis) {
+        List<NodeLease> leases = new ArrayList<>();
+        DBObject query = new BasicDBObject(FIELD_INPUT_ID, inputId)
+                .append(FIELD_EXPIRES_AT, new BasicDBObject("$gt", nowMillis));
+        try (DBCursor cursor = collection.find(query)) {
+            for (DBObject document : cursor) {
+                List<String> logs = new ArrayList<>();
+                Object stored = document.get(FIELD_LOGS);
+                if (stored instanceof List) {
+                    for (Object logUrl : (List<?>) stored) {
+                        logs.add((String) logUrl);
+                    }
+                }
+                leases.add(NodeLease.create(
+                        inputId,
+                        (String) document.get(FIELD_NODE_ID),
+                        ((Number) document.get(FIELD_EXPIRES_AT)).longValue(),
+                        logs
+                ));
+            }
+        }
+        return leases;
+    }
+
+    /**
+     * Deletes the leases of the input that expired at the given time. A lease that was renewed in the meantime no
+     * longer matches and stays.
+     */
+    public void prune(String inputId, long nowMillis) {
+        collection.remove(new BasicDBObject(FIELD_INPUT_ID, inputId)
+                .append(FIELD_EXPIRES_AT, new BasicDBObject("$lte", nowMillis)));
+    }
+
+    /**
+     * Deletes the lease of a node.
+     */
+    public void remove(String inputId, String nodeId) {
+        collection.remove(new BasicDBObject(FIELD_INPUT_ID, inputId).append(FIELD_NODE_ID, nodeId));
+    }
+
+}
@@ -0,0 +1,28 @@
+package org.graylog.plugins.certificatetransparency.loginput.ct.cluster;
+
+import com.google.auto.value.AutoValue;
+
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * A node that runs an input and the logs it reads right now. Renewed with every heartbeat of the node.
+ */
+@AutoValue
+public abstract class NodeLease {
+
+    public abstract String inputId();
+
+    public abstract String nodeId();
+
+    // Epoch milliseconds. The node is considered gone after that.
+    public abstract long expiresAt();
+
+    // URLs of the logs the node reads or still hands off.
+    public abstract List<String> logs();
+
+    public static NodeLease create(String inputId, String nodeId, long expiresAt, List<String> logs) {
+        return new AutoValue_NodeLease(inputId, nodeId, expiresAt, logs == null ? Collections.emptyList() : logs);
+    }
+
+}
@@ -0,0 +1,132 @@
+package org.graylog.plugins.certificatetransparency.loginput.ct.dedup;
+
+import com.codahale.metrics.Counter;
+import com.codahale.metrics.Gauge;
+import com.codahale.metrics.MetricRegistry;
+import com.google.common.base.Ticker;
+import com.google.common.hash.BloomFilter;
+import com.google.common.hash.Funnels;
+import com.google.common.hash.HashFunction;
+import com.google.common.hash.Hashing;
+
+import javax.annotation.Nullable;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Remembers which certificates were already read from any log, so a certificate that is logged to several logs is
+ * only passed on once.
+ *
+ * Entries are kept in two Bloom filters of a fixed size. New entries go into the current one. When it is full or
+ * older than the window, it becomes the previous one and the oldest entries are forgotten. Memory use is bounded by
+ * the capacity and the false positive rate. A false positive drops a certificate that was not seen before.
+ */
+public class EntryDeduplicator {
+
+    // version (1 byte), leaf_type (1 byte) and timestamp (8 bytes) differ between logs. The rest of the leaf doesn't.
+    private static final int KEY_OFFSET = 10;
+
+    private final long capacity;
+    private final double falsePositiveRate;
+    private final long windowNanos;
+    private final Ticker ticker;
+    private final HashFunction hashFunction;
+
+    private final Counter unique;
+    private final Counter duplicates;
+    @Nullable
+    private final MetricRegistry perLogRegistry;
+
+    private BloomFilter<Long> current;
+    private BloomFilter<Long> previous;
+    private long currentInsertions;
+    private long currentStarted;
+
+    public EntryDeduplicator(MetricRegistry registry,
+                             long capacity,
+                             double falsePositiveRate,
+                             long window,
+                             TimeUnit unit,
+                             boolean countPerLog) {
+        this(registry, capacity, falsePositiveRate, window, unit, countPerLog, Ticker.systemTicker());
+    }
+
+    EntryDeduplicator(MetricRegistry registry,
+                      long capacity,
+                      double falsePositiveRate,
+                      long window,
+                      TimeUnit unit,
+                      boolean countPerLog,
+                      Ticker ticker) {
+        this.capacity = Math.max(1, capacity);
+        this.falsePositiveRate = falsePositiveRate;
+        this.windowNanos = unit.toNanos(window);
+        this.ticker = ticker;
+        this.hashFunction = Hashing.murmur3_128();
+
+        this.unique = registry.counter("dedup_unique");
+        this.duplicates = registry.counter("dedup_duplicates");
+        this.perLogRegistry = countPerLog ? registry : null;
+
+        this.current = newFilter();
+        this.previous = null;
+        this.currentInsertions = 0;
+        this.currentStarted = ticker.read();
+
+        registry.register("dedup_expected_false_positive_rate", (Gauge<Double>) this::expectedFalsePositiveRate);
+    }
+
+    /**
+     * Returns true and remembers the entry if it was not seen before in any log. The log URL is only used for the
+     * per-log metrics.
+     */
+    public boolean firstSighting(String logUrl, byte[] leafInput) {
+        long key = key(leafInput);
+
+        synchronized (this) {
+            rotateIfNeeded();
+
+            if (current.mightContain(key) || (previous != null && previous.mightContain(key))) {
+                duplicates.inc();
+                if (perLogRegistry != null) {
+                    perLogRegistry.counter(MetricRegistry.name("dedup_duplicates", logUrl)).inc();
+                }
+                return false;
+            }
+
+            current.put(key);
+            currentInsertions++;
+        }
+
+        unique.inc();
+        return true;
+    }
+
+    private long key(byte[] leafInput) {
+        int offset = Math.min(KEY_OFFSET, leafInput.length);
+        return hashFunction.hashBytes(leafInput, offset, leafInput.length - offset).asLong();
+    }
+
+    private void rotateIfNeeded() {
+        long now = ticker.read();
+        if (currentInsertions >= capacity || now - currentStarted >= windowNanos) {
+            previous = current;
+            current = newFilter();
+            currentInsertions = 0;
+            currentStarted = now;
+        }
+    }
+
+    private synchronized double expectedFalsePositiveRate() {
+        // An entry is checked against both filters, so both add to the rate.
+        double rate = current.expectedFpp();
+        if (previous != null) {
+            rate = 1 - (1 - rate) * (1 - previous.expectedFpp());
+        }
+        return rate;
+    }
+
+    private BloomFilter<Long> newFilter() {
+        return BloomFilter.create(Funnels.longFunnel(), capacity, falsePositiveRate);
+    }
+
+}
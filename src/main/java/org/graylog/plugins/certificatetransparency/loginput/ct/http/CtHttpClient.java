@@ -0,0 +1,169 @@
+package org.graylog.plugins.certificatetransparency.loginput.ct.http;
+
+import com.codahale.metrics.Counter;
+import com.codahale.metrics.Gauge;
+import com.codahale.metrics.Meter;
+import com.codahale.metrics.MetricRegistry;
+import com.google.common.util.concurrent.ThreadFactoryBuilder;
+import okhttp3.Connection;
+import okhttp3.ConnectionPool;
+import okhttp3.Dispatcher;
+import okhttp3.Interceptor;
+import okhttp3.OkHttpClient;
+import okhttp3.Request;
+import okhttp3.Response;
+
+import java.io.IOException;
+import java.util.Collections;
+import java.util.Locale;
+import java.util.Set;
+import java.util.WeakHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * HTTP clients for the different kinds of requests to CT logs. They all share one connection pool and dispatcher, so
+ * the logs of an operator that are served from the same host share connections.
+ *
+ * Responses are gzip compressed if the log supports it. OkHttp asks for it and decompresses transparently as long as
+ * no one sets the {@code Accept-Encoding} header.
+ */
+public class CtHttpClient {
+
+    // Idle connections are kept for this long. Most logs are polled more often than that.
+    private static final long KEEP_ALIVE_MINUTES = 5;
+
+    private static final int MAX_REQUESTS = 256;
+
+    private final ConnectionPool connectionPool;
+    private final Dispatcher dispatcher;
+    private final OkHttpClient treeHeads;
+    private final OkHttpClient entries;
+    private final OkHttpClient logList;
+
+    public CtHttpClient(OkHttpClient httpClient,
+                        int maxRequestsPerHost,
+                        int maxIdleConnections,
+                        long treeHeadTimeout,
+                        long entriesTimeout,
+                        TimeUnit unit,
+                        MetricRegistry metricRegistry) {
+        this.connectionPool = new ConnectionPool(maxIdleConnections, KEEP_ALIVE_MINUTES, TimeUnit.MINUTES);
+        this.dispatcher = new Dispatcher(Executors.newCachedThreadPool(new ThreadFactoryBuilder()
+                .setDaemon(true)
+                .setNameFormat("ct-http-%d")
+                .build()));
+        this.dispatcher.setMaxRequests(MAX_REQUESTS);
+        this.dispatcher.setMaxRequestsPerHost(maxRequestsPerHost);
+
+        OkHttpClient shared = httpClient.newBuilder()
+                .connectionPool(connectionPool)
+                .dispatcher(dispatcher)
+                .followRedirects(true)
+                .followSslRedirects(true)
+                .addNetworkInterceptor(new Instrumentation(metricRegistry))
+                .build();
+
+        // A tree head is tiny. If it takes long, the log is in trouble and we'd rather try again later.
+        this.treeHeads = shared.newBuilder()
+                .connectTimeout(treeHeadTimeout, unit)
+                .readTimeout(treeHeadTimeout, unit)
+                .writeTimeout(treeHeadTimeout, unit)
+                .build();
+        this.entries = shared.newBuilder()
+                .connectTimeout(treeHeadTimeout, unit)
+                .readTimeout(entriesTimeout, unit)
+                .writeTimeout(treeHeadTimeout, unit)
+                .build();
+        this.logList = shared.newBuilder()
+                .connectTimeout(treeHeadTimeout, unit)
+                .readTimeout(entriesTimeout, unit)
+                .writeTimeout(entriesTimeout, unit)
+                .build();
+
+        metricRegistry.register(MetricRegistry.name("http", "connections"), (Gauge<Integer>) connectionPool::connectionCount);
+        metricRegistry.register(MetricRegistry.name("http", "connections_idle"), (Gauge<Integer>) connectionPool::idleConnectionCount);
+        metricRegistry.register(MetricRegistry.name("http", "requests_running"), (Gauge<Integer>) dispatcher::runningCallsCount);
+        metricRegistry.register(MetricRegistry.name("http", "requests_queued"), (Gauge<Integer>) dispatcher::queuedCallsCount);
+    }
+
+    /**
+     * For get-sth requests.
+     */
+    public OkHttpClient treeHeads() {
+        return treeHeads;
+    }
+
+    /**
+     * For get-entries requests.
+     */
+    public OkHttpClient entries() {
+        return entries;
+    }
+
+    /**
+     * For the log list.
+     */
+    public OkHttpClient logList() {
+        return logList;
+    }
+
+    public void shutdown() {
+        dispatcher.cancelAll();
+        dispatcher.executorService().shutdown();
+        connectionPool.evictAll();
+    }
+
+    /**
+     * Counts responses by status, protocol and encoding. Runs as a network interceptor, so it sees every request that
+     * goes over the wire including redirects, and the connection it uses. Requests are timed by the log readers.
+     */
+    private static class Instrumentation implements Interceptor {
+
+        private final MetricRegistry registry;
+        private final Meter connectionsOpened;
+        private final Counter gzipResponses;
+        private final Counter failures;
+
+        // Connections seen before. Weak, so closed connections don't stay around.
+        private final Set<Connection> connections = Collections.newSetFromMap(new WeakHashMap<>());
+
+        Instrumentation(MetricRegistry registry) {
+            this.registry = registry;
+            this.connectionsOpened = registry.meter(MetricRegistry.name("http", "connections_opened"));
+            this.gzipResponses = registry.counter(MetricRegistry.name("http", "responses", "gzip"));
+            this.failures = registry.counter(MetricRegistry.name("http", "responses", "failed"));
+        }
+
+        @Override
+        public Response intercept(Chain chain) throws IOException {
+            Request request = chain.request();
+
+            Connection connection = chain.connection();
+            if (connection != null) {
+                synchronized (connections) {
+                    if (connections.add(connection)) {
+                        connectionsOpened.mark();
+                    }
+                }
+            }
+
+            try {
+                Response response = chain.proceed(request);
+
+                registry.counter(MetricRegistry.name("http", "responses", (response.code() / 100) + "xx")).inc();
+                registry.counter(MetricRegistry.name("http", "protocol", response.protocol().name().toLowerCase(Locale.ENGLISH))).inc();
+                if ("gzip".equalsIgnoreCase(response.header("Content-Encoding"))) {
+                    gzipResponses.inc();
+                }
+
+                return response;
+            } catch (IOException e) {
+                failures.inc();
+                throw e;
+            }
+        }
+
+    }
+
+}
@@ -0,0 +1,141 @@
+package org.graylog.plugins.certificatetransparency.loginput.ct.http;
+
+import com.codahale.metrics.Gauge;
+import com.codahale.metrics.MetricRegistry;
+import com.google.common.base.Ticker;
+import com.google.common.util.concurrent.RateLimiter;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Limits the requests to all logs of one operator, which usually share one rate limit on the operator's side.
+ *
+ * Requests are spread out by a token bucket. The rate and the number of requests each log may have in flight grow
+ * a little with every request that goes through and are halved when the operator throttles us (additive increase,
+ * multiplicative decrease), so the limiter settles just below what the operator allows. A {@code Retry-After} pauses
+ * all logs of the operator.
+ *
+ * The limiter never makes a reader wait longer than a moment. While the operator is paused, or its next request is
+ * further away, it fails with a {@link RateLimitedException}, so the reader thread moves on to the logs of other
+ * operators and the log is read again once the pause is over.
+ */
+public class OperatorRateLimiter {
+
+    // Requests that are answered with 429 at the same time are one throttling, not several.
+    private static final long DECREASE_HOLDOFF_NANOS = TimeUnit.SECONDS.toNanos(1);
+
+    private static final double MIN_RATE = 0.1;
+
+    // Longest a reader waits for the next request of the operator before it gives up the thread.
+    private static final long MAX_WAIT_MILLIS = 100;
+
+    private final double maxRate;
+    private final int maxConcurrency;
+    private final RateLimiter limiter;
+    private final Ticker ticker;
+
+    private double rate;
+    private int concurrency;
+    private int successesSinceIncrease = 0;
+    private long lastDecrease;
+    private long pausedUntil;
+    private long throttled = 0;
+
+    public OperatorRateLimiter(double maxRequestsPerSecond, int maxConcurrency) {
+        this(maxRequestsPerSecond, maxConcurrency, Ticker.systemTicker());
+    }
+
+    OperatorRateLimiter(double maxRequestsPerSecond, int maxConcurrency, Ticker ticker) {
+        this.maxRate = Math.max(MIN_RATE, maxRequestsPerSecond);
+        this.maxConcurrency = Math.max(1, maxConcurrency);
+        this.ticker = ticker;
+
+        this.rate = this.maxRate;
+        this.concurrency = this.maxConcurrency;
+        this.limiter = RateLimiter.create(rate);
+        this.lastDecrease = ticker.read() - DECREASE_HOLDOFF_NANOS;
+        this.pausedUntil = ticker.read();
+    }
+
+    /**
+     * Clears the next request to the operator, waiting a moment at most.
+     *
+     * @throws RateLimitedException with the time to wait, while the operator is paused or its rate is used up
+     */
+    public void acquire() throws RateLimitedException {
+        if (!tryAcquire()) {
+            throw new RateLimitedException(Math.max(MAX_WAIT_MILLIS, TimeUnit.NANOSECONDS.toMillis(getPauseNanos())));
+        }
+    }
+
+    /**
+     * Clears the next request to the operator if it may get one within a moment. Otherwise returns false right away.
+     */
+    public boolean tryAcquire() {
+        return getPauseNanos() == 0 && limiter.tryAcquire(MAX_WAIT_MILLIS, TimeUnit.MILLISECONDS);
+    }
+
+    /**
+     * A request went through without being throttled.
+     */
+    public synchronized void success() {
+        if (rate < maxRate) {
+            // Get back to the maximum rate after about 20 good requests per halving.
+            setRate(Math.min(maxRate, rate + maxRate / 20));
+        }
+
+        // One more request in flight after a whole window of requests went through.
+        if (concurrency < maxConcurrency && ++successesSinceIncrease >= concurrency) {
+            concurrency++;
+            successesSinceIncrease = 0;
+        }
+    }
+
+    /**
+     * The operator throttled a request. Waits at least for the given time before the next request.
+     */
+    public synchronized void throttled(long retryAfterMillis) {
+        long now = ticker.read();
+        throttled++;
+        pausedUntil = Math.max(pausedUntil, now + TimeUnit.MILLISECONDS.toNanos(retryAfterMillis));
+
+        if (now - lastDecrease >= DECREASE_HOLDOFF_NANOS) {
+            lastDecrease = now;
+            setRate(Math.max(MIN_RATE, rate / 2));
+            concurrency = Math.max(1, concurrency / 2);
+            successesSinceIncrease = 0;
+        }
+    }
+
+    public synchronized double getRate() {
+        return rate;
+    }
+
+    /**
+     * Number of requests a single log of the operator may have in flight.
+     */
+    public synchronized int getConcurrency() {
+        return concurrency;
+    }
+
+    synchronized long getPauseNanos() {
+        return Math.max(0, pausedUntil - ticker.read());
+    }
+
+    public void registerMetrics(MetricRegistry registry, String prefix) {
+        registry.register(MetricRegistry.name(prefix, "request_rate"), (Gauge<Double>) this::getRate);
+        registry.register(MetricRegistry.name(prefix, "concurrency"), (Gauge<Integer>) this::getConcurrency);
+        registry.register(MetricRegistry.name(prefix, "paused_ms"), (Gauge<Long>) () -> TimeUnit.NANOSECONDS.toMillis(getPauseNanos()));
+        registry.register(MetricRegistry.name(prefix, "throttled"), (Gauge<Long>) () -> {
+            synchronized (this) {
+                return throttled;
+            }
+        });
+    }
+
+    private void setRate(double rate) {
+        this.rate = rate;
+        limiter.setRate(rate);
+    }
+
+}
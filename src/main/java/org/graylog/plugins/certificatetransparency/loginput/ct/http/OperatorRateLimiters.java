@@ -0,0 +1,38 @@
+package org.graylog.plugins.certificatetransparency.loginput.ct.http;
+
+import com.codahale.metrics.MetricRegistry;
+import org.graylog.plugins.certificatetransparency.loginput.ct.logservers.LogServer;
+
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * One {@link OperatorRateLimiter} per log operator, shared by all readers of the operator's logs.
+ */
+public class OperatorRateLimiters {
+
+    private final double maxRequestsPerSecond;
+    private final int maxConcurrency;
+    private final MetricRegistry metricRegistry;
+    private final Map<String, OperatorRateLimiter> limiters = new ConcurrentHashMap<>();
+
+    public OperatorRateLimiters(double maxRequestsPerSecond, int maxConcurrency, MetricRegistry metricRegistry) {
+        this.maxRequestsPerSecond = maxRequestsPerSecond;
+        this.maxConcurrency = maxConcurrency;
+        this.metricRegistry = metricRegistry;
+    }
+
+    public OperatorRateLimiter forLog(LogServer logServer) {
+        // Logs without a known operator get a limiter of their own.
+        String operator = logServer.operatedBy().isEmpty() || "UNKNOWN".equals(logServer.operatedBy().get(0))
+                ? logServer.url()
+                : logServer.operatedBy().get(0);
+
+        return limiters.computeIfAbsent(operator, name -> {
+            OperatorRateLimiter limiter = new OperatorRateLimiter(maxRequestsPerSecond, maxConcurrency);
+            limiter.registerMetrics(metricRegistry, MetricRegistry.name("operator", name));
+            return limiter;
+        });
+    }
+
+}
@@ -0,0 +1,90 @@
+package org.graylog.plugins.certificatetransparency.loginput.ct.http;
+
+import okhttp3.Response;
+
+import javax.annotation.Nullable;
+import java.io.IOException;
+import java.time.Instant;
+import java.time.ZonedDateTime;
+import java.time.format.DateTimeFormatter;
+import java.time.format.DateTimeParseException;
+
+/**
+ * A log server answered with 429 or 503 and wants us to slow down, or its operator's requests are paused since one did.
+ * This is expected now and then and not an error worth a stack trace, so the exception has none.
+ */
+public class RateLimitedException extends IOException {
+
+    // If the server doesn't say how long to wait.
+    static final long DEFAULT_RETRY_AFTER_MILLIS = 10000;
+
+    private final int statusCode;
+    private final long retryAfterMillis;
+
+    public RateLimitedException(String url, int statusCode, long retryAfterMillis) {
+        super("Log server [" + url + "] answered <" + statusCode + ">. Retrying after " + retryAfterMillis + "ms.");
+        this.statusCode = statusCode;
+        this.retryAfterMillis = retryAfterMillis;
+    }
+
+    /**
+     * The requests to the operator are paused or its rate is used up. No request was sent.
+     */
+    public RateLimitedException(long retryAfterMillis) {
+        super("Requests to the operator are paused. Retrying after " + retryAfterMillis + "ms.");
+        this.statusCode = 429;
+        this.retryAfterMillis = retryAfterMillis;
+    }
+
+    public int getStatusCode() {
+        return statusCode;
+    }
+
+    public long getRetryAfterMillis() {
+        return retryAfterMillis;
+    }
+
+    @Override
+    public synchronized Throwable fillInStackTrace() {
+        return this;
+    }
+
+    public static boolean isRateLimited(int statusCode) {
+        return statusCode == 429 || statusCode == 503;
+    }
+
+    /**
+     * Returns the exception for a 429 or 503 response, or null for any other response.
+     */
+    @Nullable
+    public static RateLimitedException of(String url, Response response, long nowMillis) {
+        if (!isRateLimited(response.code())) {
+            return null;
+        }
+        return new RateLimitedException(url, response.code(), retryAfterMillis(response.header("Retry-After"), nowMillis));
+    }
+
+    /**
+     * Parses a Retry-After header, which is either a number of seconds or an HTTP date.
+     */
+    static long retryAfterMillis(@Nullable String retryAfter, long nowMillis) {
+        if (retryAfter == null || retryAfter.trim().isEmpty()) {
+            return DEFAULT_RETRY_AFTER_MILLIS;
+        }
+
+        String value = retryAfter.trim();
+        try {
+            return Math.max(0, Long.parseLong(value) * 1000);
+        } catch (NumberFormatException e) {
+            // Not a number of seconds.
+        }
+
+        try {
+            Instant until = ZonedDateTime.parse(value, DateTimeFormatter.RFC_1123_DATE_TIME).toInstant();
+            return Math.max(0, until.toEpochMilli() - nowMillis);
+        } catch (DateTimeParseException e) {
+            return DEFAULT_RETRY_AFTER_MILLIS;
+        }
+    }
+
+}
@@ -0,0 +1,121 @@
+package org.graylog.plugins.certificatetransparency.loginput.ct.logs;
+
+import java.nio.BufferUnderflowException;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+
+/**
+ * A single log entry as it is passed from the {@link LogReader} to the codec in a raw message. The leaf input and
+ * extra data are already base64 decoded and written in a compact binary format, so the codec does not have to parse
+ * any JSON.
+ */
+public class CertificateLogEntry {
+
+    private static final byte VERSION = 1;
+
+    // Entry types of a MerkleTreeLeaf, see RFC 6962 section 3.4.
+    public static final int ENTRY_TYPE_X509 = 0;
+    public static final int ENTRY_TYPE_PRECERT = 1;
+
+    // version (1 byte) and leaf_type (1 byte) come before the timestamp, the timestamp (8 bytes) before the entry type.
+    private static final int TIMESTAMP_OFFSET = 2;
+    private static final int ENTRY_TYPE_OFFSET = 10;
+
+    private final String logUrl;
+    private final long index;
+    private final byte[] leafInput;
+    private final byte[] extraData;
+
+    public CertificateLogEntry(String logUrl, long index, byte[] leafInput, byte[] extraData) {
+        this.logUrl = logUrl;
+        this.index = index;
+        this.leafInput = leafInput;
+        this.extraData = extraData;
+    }
+
+    public String getLogUrl() {
+        return logUrl;
+    }
+
+    public long getIndex() {
+        return index;
+    }
+
+    public byte[] getLeafInput() {
+        return leafInput;
+    }
+
+    public byte[] getExtraData() {
+        return extraData;
+    }
+
+    /**
+     * Reads the entry type from the MerkleTreeLeaf without parsing the rest of it. Returns -1 if the leaf is too short
+     * to contain one.
+     */
+    public static int entryType(byte[] leafInput) {
+        if (leafInput.length < ENTRY_TYPE_OFFSET + 2) {
+            return -1;
+        }
+        return ((leafInput[ENTRY_TYPE_OFFSET] & 0xFF) << 8) | (leafInput[ENTRY_TYPE_OFFSET + 1] & 0xFF);
+    }
+
+    /**
+     * Reads the time the entry was added to the log, in milliseconds since the epoch, from the MerkleTreeLeaf. Returns
+     * -1 if the leaf is too short to contain one.
+     */
+    public static long timestamp(byte[] leafInput) {
+        if (leafInput.length < TIMESTAMP_OFFSET + 8) {
+            return -1;
+        }
+
+        long timestamp = 0;
+        for (int i = TIMESTAMP_OFFSET; i < TIMESTAMP_OFFSET + 8; i++) {
+            timestamp = (timestamp << 8) | (leafInput[i] & 0xFF);
+        }
+        return timestamp;
+    }
+
+    public byte[] toBytes() {
+        byte[] url = logUrl.getBytes(StandardCharsets.UTF_8);
+
+        ByteBuffer buffer = ByteBuffer.allocate(1 + 8 + 2 + url.length + 4 + leafInput.length + 4 + extraData.length);
+        buffer.put(VERSION);
+        buffer.putLong(index);
+        buffer.putShort((short) url.length);
+        buffer.put(url);
+        buffer.putInt(leafInput.length);
+        buffer.put(leafInput);
+        buffer.putInt(extraData.length);
+        buffer.put(extraData);
+
+        return buffer.array();
+    }
+
+    public static CertificateLogEntry fromBytes(byte[] payload) {
+        try {
+            ByteBuffer buffer = ByteBuffer.wrap(payload);
+
+            byte version = buffer.get();
+            if (version != VERSION) {
+                throw new IllegalArgumentException("Unsupported log entry payload version <" + version + ">.");
+            }
+
+            long index = buffer.getLong();
+
+            byte[] url = new byte[buffer.getShort() & 0xFFFF];
+            buffer.get(url);
+
+            byte[] leafInput = new byte[buffer.getInt()];
+            buffer.get(leafInput);
+
+            byte[] extraData = new byte[buffer.getInt()];
+            buffer.get(extraData);
+
+            return new CertificateLogEntry(new String(url, StandardCharsets.UTF_8), index, leafInput, extraData);
+        } catch (BufferUnderflowException | NegativeArraySizeException e) {
+            throw new IllegalArgumentException("Truncated log entry payload.", e);
+        }
+    }
+
+}
@@ -0,0 +1,160 @@
+package org.graylog.plugins.certificatetransparency.loginput.ct.logs;
+
+import java.io.ByteArrayOutputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.BufferUnderflowException;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * A log entry that was already decoded by the transport, as it is passed to the codec in a raw message. The codec
+ * only has to turn it into messages.
+ *
+ * Like a {@link CertificateLogEntry}, it is written in a compact binary format: the text and fields of every message,
+ * each field as its name, a type and its value. Values come back with the type they were written with, so messages
+ * are the same whether the transport or the codec decoded the entry. The first byte tells it apart from a
+ * {@link CertificateLogEntry} payload.
+ */
+public class DecodedLogEntry {
+
+    private static final byte VERSION = 2;
+
+    private static final byte TYPE_STRING = 1;
+    private static final byte TYPE_INT = 2;
+    private static final byte TYPE_LONG = 3;
+    private static final byte TYPE_DOUBLE = 4;
+    private static final byte TYPE_BOOLEAN = 5;
+    private static final byte TYPE_LIST = 6;
+
+    private final List<DecodedMessage> messages;
+
+    public DecodedLogEntry(List<DecodedMessage> messages) {
+        this.messages = messages;
+    }
+
+    public List<DecodedMessage> getMessages() {
+        return messages;
+    }
+
+    public static boolean isDecoded(byte[] payload) {
+        return payload.length > 0 && payload[0] == VERSION;
+    }
+
+    public byte[] toBytes() {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream(1024);
+        try (DataOutputStream out = new DataOutputStream(bytes)) {
+            out.writeByte(VERSION);
+            out.writeInt(messages.size());
+            for (DecodedMessage message : messages) {
+                writeString(out, message.getMessage());
+                out.writeInt(message.getFields().size());
+                for (Map.Entry<String, Object> field : message.getFields().entrySet()) {
+                    writeString(out, field.getKey());
+                    writeValue(out, field.getKey(), field.getValue());
+                }
+            }
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+        return bytes.toByteArray();
+    }
+
+    public static DecodedLogEntry fromBytes(byte[] payload) {
+        if (!isDecoded(payload)) {
+            throw new IllegalArgumentException("Not a decoded log entry payload.");
+        }
+
+        try {
+            ByteBuffer buffer = ByteBuffer.wrap(payload, 1, payload.length - 1);
+
+            int messageCount = buffer.getInt();
+            List<DecodedMessage> messages = new ArrayList<>(messageCount);
+            for (int i = 0; i < messageCount; i++) {
+                String message = readString(buffer);
+                int fieldCount = buffer.getInt();
+                Map<String, Object> fields = new HashMap<>(fieldCount * 2);
+                for (int j = 0; j < fieldCount; j++) {
+                    fields.put(readString(buffer), readValue(buffer));
+                }
+                messages.add(new DecodedMessage(message, fields));
+            }
+
+            return new DecodedLogEntry(messages);
+        } catch (BufferUnderflowException | NegativeArraySizeException | IllegalArgumentException e) {
+            throw new IllegalArgumentException("Invalid decoded log entry payload.", e);
+        }
+    }
+
+    private static void writeValue(DataOutputStream out, String field, Object value) throws IOException {
+        if (value instanceof String) {
+            out.writeByte(TYPE_STRING);
+            writeString(out, (String) value);
+        } else if (value instanceof Integer) {
+            out.writeByte(TYPE_INT);
+            out.writeInt((Integer) value);
+        } else if (value instanceof Long) {
+            out.writeByte(TYPE_LONG);
+            out.writeLong((Long) value);
+        } else if (value instanceof Double) {
+            out.writeByte(TYPE_DOUBLE);
+            out.writeDouble((Double) value);
+        } else if (value instanceof Boolean) {
+            out.writeByte(TYPE_BOOLEAN);
+            out.writeBoolean((Boolean) value);
+        } else if (value instanceof List) {
+            List<?> list = (List<?>) value;
+            out.writeByte(TYPE_LIST);
+            out.writeInt(list.size());
+            for (Object element : list) {
+                writeValue(out, field, element);
+            }
+        } else {
+            throw new IllegalArgumentException("Field [" + field + "] has a value of unsupported type <"
+                    + (value == null ? null : value.getClass().getName()) + ">.");
+        }
+    }
+
+    private static Object readValue(ByteBuffer buffer) {
+        byte type = buffer.get();
+        switch (type) {
+            case TYPE_STRING:
+                return readString(buffer);
+            case TYPE_INT:
+                return buffer.getInt();
+            case TYPE_LONG:
+                return buffer.getLong();
+            case TYPE_DOUBLE:
+                return buffer.getDouble();
+            case TYPE_BOOLEAN:
+                return buffer.get() != 0;
+            case TYPE_LIST:
+                int size = buffer.getInt();
+                List<Object> list = new ArrayList<>(size);
+                for (int i = 0; i < size; i++) {
+                    list.add(readValue(buffer));
+                }
+                return list;
+            default:
+                throw new IllegalArgumentException("Unknown field type <" + type + ">.");
+        }
+    }
+
+    private static void writeString(DataOutputStream out, String value) throws IOException {
+        byte[] bytes = value.getBytes(StandardCharsets.UTF_8);
+        out.writeInt(bytes.length);
+        out.write(bytes);
+    }
+
+    private static String readString(ByteBuffer buffer) {
+        byte[] bytes = new byte[buffer.getInt()];
+        buffer.get(bytes);
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+
+}
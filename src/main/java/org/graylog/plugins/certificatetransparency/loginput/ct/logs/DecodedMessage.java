@@ -0,0 +1,26 @@
+package org.graylog.plugins.certificatetransparency.loginput.ct.logs;
+
+import java.util.Map;
+
+/**
+ * Text and fields of a message that was built from a log entry, before it becomes a Graylog message.
+ */
+public class DecodedMessage {
+
+    private final String message;
+    private final Map<String, Object> fields;
+
+    public DecodedMessage(String message, Map<String, Object> fields) {
+        this.message = message;
+        this.fields = fields;
+    }
+
+    public String getMessage() {
+        return message;
+    }
+
+    public Map<String, Object> getFields() {
+        return fields;
+    }
+
+}
@@ -0,0 +1,83 @@
+package org.graylog.plugins.certificatetransparency.loginput.ct.logs;
+
+import com.fasterxml.jackson.core.JsonFactory;
+import com.fasterxml.jackson.core.JsonParseException;
+import com.fasterxml.jackson.core.JsonParser;
+import com.fasterxml.jackson.core.JsonToken;
+
+import java.io.IOException;
+import java.io.InputStream;
+
+/**
+ * Streaming parser for {@code get-entries} responses. Entries are passed on one by one while the body is read and
+ * their base64 fields are decoded by the parser directly, so neither the body nor the entries are held in memory.
+ */
+public class EntriesParser {
+
+    private static final String FIELD_ENTRIES = "entries";
+    private static final String FIELD_LEAF_INPUT = "leaf_input";
+    private static final String FIELD_EXTRA_DATA = "extra_data";
+
+    private final JsonFactory jsonFactory;
+
+    public EntriesParser(JsonFactory jsonFactory) {
+        this.jsonFactory = jsonFactory;
+    }
+
+    /**
+     * Parses at most {@code maxEntries} entries from the stream and returns how many were passed to the handler.
+     */
+    public int parse(InputStream in, int maxEntries, EntryHandler handler) throws IOException {
+        try (JsonParser parser = jsonFactory.createParser(in)) {
+            if (parser.nextToken() != JsonToken.START_OBJECT) {
+                throw new JsonParseException(parser, "Expected get-entries response to be a JSON object.");
+            }
+
+            int count = 0;
+            while (parser.nextToken() == JsonToken.FIELD_NAME) {
+                String field = parser.getCurrentName();
+                JsonToken value = parser.nextToken();
+
+                if (!FIELD_ENTRIES.equals(field) || value != JsonToken.START_ARRAY) {
+                    parser.skipChildren();
+                    continue;
+                }
+
+                while (count < maxEntries && parser.nextToken() == JsonToken.START_OBJECT) {
+                    byte[] leafInput = null;
+                    byte[] extraData = null;
+
+                    while (parser.nextToken() == JsonToken.FIELD_NAME) {
+                        String name = parser.getCurrentName();
+                        parser.nextToken();
+
+                        if (FIELD_LEAF_INPUT.equals(name)) {
+                            leafInput = parser.getBinaryValue();
+                        } else if (FIELD_EXTRA_DATA.equals(name)) {
+                            extraData = parser.getBinaryValue();
+                        } else {
+                            parser.skipChildren();
+                        }
+                    }
+
+                    if (leafInput == null || extraData == null) {
+                        throw new JsonParseException(parser, "Entry is missing leaf_input or extra_data.");
+                    }
+
+                    handler.accept(count, leafInput, extraData);
+                    count++;
+                }
+
+                // Anything after the requested entries is not interesting.
+                return count;
+            }
+
+            return count;
+        }
+    }
+
+    public interface EntryHandler {
+        void accept(int offset, byte[] leafInput, byte[] extraData) throws IOException;
+    }
+
+}
@@ -0,0 +1,184 @@
+package org.graylog.plugins.certificatetransparency.loginput.ct.logs;
+
+import com.codahale.metrics.Counter;
+import com.codahale.metrics.Gauge;
+import com.codahale.metrics.MetricRegistry;
+import com.google.common.util.concurrent.ThreadFactoryBuilder;
+import org.graylog2.plugin.inputs.MessageInput;
+import org.graylog2.plugin.journal.RawMessage;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import javax.annotation.Nullable;
+import java.io.InterruptedIOException;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Bounded hand-off between the log readers and the input. Readers block when the queue is full, so they never fetch
+ * more than the input takes. A single thread passes the entries to the input and only then moves the checkpoint they
+ * were queued with, so entries that are still queued when the input stops are read again after a restart.
+ *
+ * With a decoder, entries are decoded by a pool of threads as soon as they are queued. The emitter thread still takes
+ * them in the order they were queued, so the entries of a log stay in order.
+ */
+public class EntryEmitter {
+
+    private static final Logger LOG = LoggerFactory.getLogger(EntryEmitter.class);
+
+    private final MessageInput input;
+    private final BlockingQueue<QueuedEntry> queue;
+    private final MetricRegistry metricRegistry;
+    private final Counter inputErrors;
+    @Nullable
+    private final Decoder decoder;
+    @Nullable
+    private final ExecutorService decoderPool;
+    private final Thread thread;
+
+    private volatile boolean running;
+
+    public EntryEmitter(MessageInput input, int capacity, MetricRegistry metricRegistry) {
+        this(input, capacity, null, 0, metricRegistry);
+    }
+
+    public EntryEmitter(MessageInput input, int capacity, @Nullable Decoder decoder, int decoderThreads, MetricRegistry metricRegistry) {
+        this.input = input;
+        this.queue = new ArrayBlockingQueue<>(Math.max(1, capacity));
+        this.thread = new ThreadFactoryBuilder()
+                .setDaemon(true)
+                .setNameFormat("ct-entry-emitter-%d")
+                .build()
+                .newThread(this::run);
+        this.metricRegistry = metricRegistry;
+        this.inputErrors = metricRegistry.counter(MetricRegistry.name("entries_failed", "input_error"));
+
+        if (decoder != null && decoderThreads > 0) {
+            this.decoder = decoder;
+            this.decoderPool = Executors.newFixedThreadPool(decoderThreads, new ThreadFactoryBuilder()
+                    .setDaemon(true)
+                    .setNameFormat("ct-entry-decoder-%d")
+                    .build());
+        } else {
+            this.decoder = null;
+            this.decoderPool = null;
+        }
+    }
+
+    public void start() {
+        metricRegistry.register("queue_size", (Gauge<Integer>) queue::size);
+        running = true;
+        thread.start();
+    }
+
+    /**
+     * Stops passing entries to the input. Entries still queued are dropped and read again on the next start.
+     */
+    public void stop() {
+        running = false;
+        thread.interrupt();
+        queue.clear();
+        if (decoderPool != null) {
+            decoderPool.shutdownNow();
+        }
+        metricRegistry.remove("queue_size");
+    }
+
+    /**
+     * Queues an entry of a log. Entries without a payload were skipped by the reader and only move the checkpoint.
+     * Blocks while the queue is full.
+     */
+    public void emit(Checkpoint checkpoint, long index, @Nullable byte[] payload) throws InterruptedIOException {
+        if (!running) {
+            throw new InterruptedIOException("Input was stopped.");
+        }
+
+        CompletableFuture<byte[]> decoded = null;
+        if (decoderPool != null && payload != null) {
+            decoded = CompletableFuture.supplyAsync(() -> decoder.decode(payload), decoderPool);
+        }
+
+        QueuedEntry entry = new QueuedEntry(checkpoint, index, payload, decoded);
+        try {
+            while (!queue.offer(entry, 1, TimeUnit.SECONDS)) {
+                if (!running) {
+                    throw new InterruptedIOException("Input was stopped.");
+                }
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new InterruptedIOException("Interrupted while waiting for the input.");
+        }
+    }
+
+    private void run() {
+        while (running) {
+            QueuedEntry entry;
+            try {
+                entry = queue.take();
+            } catch (InterruptedException e) {
+                break;
+            }
+
+            try {
+                byte[] payload = entry.decoded == null ? entry.payload : entry.decoded.get();
+                if (payload != null) {
+                    input.processRawMessage(new RawMessage(payload));
+                }
+            } catch (InterruptedException e) {
+                break;
+            } catch (ExecutionException e) {
+                // The decoder counts and logs the entries it can't decode. This is everything else.
+                LOG.error("Could not decode entry <{}>.", entry.index, e.getCause());
+            } catch (Exception e) {
+                LOG.error("Could not pass entry <{}> to the input. Skipping.", entry.index, e);
+                inputErrors.inc();
+            }
+
+            // Entries that failed are checkpointed too. They would most likely fail again and hold up their log.
+            try {
+                entry.checkpoint.emitted(entry.index);
+            } catch (Exception e) {
+                LOG.error("Could not move checkpoint to entry <{}>.", entry.index, e);
+            }
+        }
+    }
+
+    /**
+     * Decodes the payload of an entry ahead of the input. Returns null to drop the entry.
+     */
+    public interface Decoder {
+        @Nullable
+        byte[] decode(byte[] payload);
+    }
+
+    /**
+     * Called on the emitter thread once an entry was passed to the input or failed, in the order the entries were
+     * queued.
+     */
+    public interface Checkpoint {
+        void emitted(long index);
+    }
+
+    private static class QueuedEntry {
+        private final Checkpoint checkpoint;
+        private final long index;
+        @Nullable
+        private final byte[] payload;
+        @Nullable
+        private final CompletableFuture<byte[]> decoded;
+
+        QueuedEntry(Checkpoint checkpoint, long index, @Nullable byte[] payload, @Nullable CompletableFuture<byte[]> decoded) {
+            this.checkpoint = checkpoint;
+            this.index = index;
+            this.payload = payload;
+            this.decoded = decoded;
+        }
+    }
+
+}
@@ -0,0 +1,248 @@
+package org.graylog.plugins.certificatetransparency.loginput.ct.logs;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import okhttp3.Call;
+import okhttp3.Callback;
+import okhttp3.HttpUrl;
+import okhttp3.OkHttpClient;
+import okhttp3.Request;
+import okhttp3.Response;
+import org.graylog.plugins.certificatetransparency.loginput.ct.http.OperatorRateLimiter;
+import org.graylog.plugins.certificatetransparency.loginput.ct.http.RateLimitedException;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.util.ArrayDeque;
+import java.util.Deque;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.function.BooleanSupplier;
+
+/**
+ * Fetches a range of entries from a log with several {@code get-entries} requests in flight at the same time.
+ *
+ * Log servers cap the number of entries they return per request and silently return less than what was asked for.
+ * The fetcher learns that limit from the responses and requests the rest of a short batch again before it hands out
+ * anything that comes after it, so entries are always passed on complete and in order.
+ *
+ * Every request is cleared with the rate limiter of the log's operator first, which also decides how many requests
+ * may be in flight. When the operator throttles us, the batches get smaller for a while as well.
+ *
+ * Only the response headers of requests that are in flight are awaited. Bodies are parsed as a stream, one batch
+ * after the other, by the thread that called {@link #fetch(long, long, BooleanSupplier, EntryConsumer)}.
+ */
+public class EntryRangeFetcher {
+
+    private static final Logger LOG = LoggerFactory.getLogger(EntryRangeFetcher.class);
+
+    // Most logs return less than this per request. We start high and shrink to what the server actually returns.
+    public static final int INITIAL_BATCH_SIZE = 1024;
+
+    // Neither throttling nor short responses make batches smaller than this.
+    private static final int MIN_BATCH_SIZE = 32;
+
+    private final OkHttpClient httpClient;
+    private final EntriesParser parser;
+    private final HttpUrl url;
+    private final int maxRequestsInFlight;
+    private final LogReadMetrics metrics;
+    private final OperatorRateLimiter rateLimiter;
+
+    // What the server returns at most, and what we ask for right now.
+    private volatile int maxBatchSize;
+    private volatile int batchSize;
+
+    // The most entries the server returned for one request.
+    private volatile int largestResponse = 0;
+
+    public EntryRangeFetcher(OkHttpClient httpClient,
+                             ObjectMapper om,
+                             HttpUrl url,
+                             int maxRequestsInFlight,
+                             LogReadMetrics metrics,
+                             OperatorRateLimiter rateLimiter) {
+        this.httpClient = httpClient;
+        this.parser = new EntriesParser(om.getFactory());
+        this.url = url;
+        this.maxRequestsInFlight = Math.max(1, maxRequestsInFlight);
+        this.metrics = metrics;
+        this.rateLimiter = rateLimiter;
+
+        this.maxBatchSize = INITIAL_BATCH_SIZE;
+        this.batchSize = INITIAL_BATCH_SIZE;
+    }
+
+    public int getBatchSize() {
+        return batchSize;
+    }
+
+    /**
+     * Fetches all entries with an index in {@code [from, to)} and passes them to the consumer in order.
+     *
+     * Once {@code stop} returns true, no more requests are sent. Entries of requests that are already in flight are
+     * still passed on as long as there is no gap before them.
+     */
+    public void fetch(long from, long to, BooleanSupplier stop, EntryConsumer consumer) throws IOException {
+        final Deque<Batch> inFlight = new ArrayDeque<>();
+
+        long next = from;
+        try {
+            while (!inFlight.isEmpty() || (next < to && !stop.getAsBoolean())) {
+                while (inFlight.size() < Math.min(maxRequestsInFlight, rateLimiter.getConcurrency()) && next < to && !stop.getAsBoolean()) {
+                    // With requests in flight, take their entries before giving up on a paused operator.
+                    if (inFlight.isEmpty()) {
+                        rateLimiter.acquire();
+                    } else if (!rateLimiter.tryAcquire()) {
+                        break;
+                    }
+
+                    long end = Math.min(next + batchSize, to);
+                    inFlight.add(request(next, end));
+                    next = end;
+                }
+
+                Batch batch = inFlight.poll();
+                int received;
+                try (Response response = batch.await()) {
+                    RateLimitedException rateLimited = RateLimitedException.of(url.toString(), response, System.currentTimeMillis());
+                    if (rateLimited != null) {
+                        rateLimiter.throttled(rateLimited.getRetryAfterMillis());
+                        batchSize = Math.max(MIN_BATCH_SIZE, Math.min(batchSize, maxBatchSize) / 2);
+                        throw rateLimited;
+                    }
+                    if (response.code() != 200) {
+                        throw new IOException("Expected HTTP response code <200> but got <" + response.code() + ">");
+                    }
+                    rateLimiter.success();
+
+                    received = parser.parse(
+                            response.body().byteStream(),
+                            (int) (batch.end - batch.start),
+                            (offset, leafInput, extraData) -> consumer.accept(batch.start + offset, leafInput, extraData)
+                    );
+                }
+
+                if (received == 0) {
+                    throw new IOException("Log server returned no entries for [" + batch.start + ", " + batch.end + ").");
+                }
+
+                largestResponse = Math.max(largestResponse, received);
+
+                long stoppedAt = batch.start + received;
+                if (stoppedAt < batch.end) {
+                    if (stop.getAsBoolean()) {
+                        // Everything in flight comes after the gap and is cancelled below.
+                        break;
+                    }
+
+                    // The server capped the batch. Some servers also cut responses short at chunk boundaries, so not
+                    // every short response is the limit. The largest one the server returned so far is.
+                    int limit = Math.max(MIN_BATCH_SIZE, largestResponse);
+                    if (limit != maxBatchSize) {
+                        LOG.debug("Log server [{}] returned up to {} entries per request. Adjusting batch size.", url, largestResponse);
+                        maxBatchSize = limit;
+                        batchSize = limit;
+                    }
+
+                    // Get the rest before anything after it.
+                    rateLimiter.acquire();
+                    inFlight.addFirst(request(stoppedAt, batch.end));
+                } else {
+                    // A batch requested before the limit was lowered can show that the server returns more.
+                    maxBatchSize = Math.max(maxBatchSize, received);
+
+                    if (batchSize < maxBatchSize) {
+                        // Not throttled anymore. Grow back to what the server allows.
+                        batchSize = Math.min(maxBatchSize, batchSize + Math.max(1, maxBatchSize / 8));
+                    }
+                }
+            }
+        } finally {
+            for (Batch batch : inFlight) {
+                batch.cancel();
+            }
+        }
+    }
+
+    // The request must have been cleared with the rate limiter.
+    private Batch request(long start, long end) {
+        // The end of a get-entries range is inclusive.
+        Call call = httpClient.newCall(new Request.Builder()
+                .get()
+                .url(url.newBuilder()
+                        .addEncodedPathSegments("ct/v1/get-entries")
+                        .addQueryParameter("start", Long.toString(start))
+                        .addQueryParameter("end", Long.toString(end - 1))
+                        .build())
+                .build()
+        );
+
+        Batch batch = new Batch(start, end, call);
+        call.enqueue(batch);
+        return batch;
+    }
+
+    public interface EntryConsumer {
+        void accept(long index, byte[] leafInput, byte[] extraData) throws IOException;
+    }
+
+    private class Batch implements Callback {
+
+        private final long start;
+        private final long end;
+        private final Call call;
+        private final CompletableFuture<Response> response;
+        private final long started;
+
+        Batch(long start, long end, Call call) {
+            this.start = start;
+            this.end = end;
+            this.call = call;
+            this.response = new CompletableFuture<>();
+            this.started = System.nanoTime();
+        }
+
+        @Override
+        public void onFailure(Call call, IOException e) {
+            metrics.entriesRequest(System.nanoTime() - started);
+            response.completeExceptionally(e);
+        }
+
+        @Override
+        public void onResponse(Call call, Response response) {
+            // Time until the server answered. Reading the body is up to the parser.
+            metrics.entriesRequest(System.nanoTime() - started);
+
+            // Don't touch the body here. It is streamed when it is this batch's turn.
+            if (!this.response.complete(response)) {
+                response.close();
+            }
+        }
+
+        Response await() throws IOException {
+            try {
+                return response.get();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new InterruptedIOException("Interrupted while waiting for entries.");
+            } catch (ExecutionException e) {
+                if (e.getCause() instanceof IOException) {
+                    throw (IOException) e.getCause();
+                }
+                throw new IOException("Could not fetch entries [" + start + ", " + end + ").", e.getCause());
+            }
+        }
+
+        void cancel() {
+            call.cancel();
+
+            if (!response.cancel(false) && !response.isCompletedExceptionally()) {
+                response.join().close();
+            }
+        }
+
+    }
+
+}
@@ -0,0 +1,104 @@
+package org.graylog.plugins.certificatetransparency.loginput.ct.logs;
+
+import com.codahale.metrics.Gauge;
+import com.codahale.metrics.MetricRegistry;
+
+/**
+ * Estimates how fast a log grows from its successive signed tree heads and picks the delay until the next read from
+ * that.
+ *
+ * Busy logs are read often enough that every run only has a small batch of entries to fetch and no entry waits
+ * longer than the freshness target. Logs that don't grow are read less often the longer they stay idle. Logs that
+ * publish a new tree head only every now and then are not asked before the next one is due.
+ */
+public class LogGrowth {
+
+    // Weight of the newest tree head in the moving averages.
+    private static final double ALPHA = 0.3;
+
+    // Busy logs are read often enough to not have more entries than this waiting per run.
+    static final long TARGET_BATCH_ENTRIES = 1024;
+
+    private final long minIntervalMillis;
+    private final long maxIntervalMillis;
+    private final long freshnessMillis;
+
+    private long treeSize = -1;
+    private long treeTimestamp = -1;
+    private long lastGrowthMillis = -1;
+
+    // Entries per millisecond.
+    private double rate = 0;
+    // Time between the last two tree heads that were published and whether the last read got the same one again.
+    private long treeHeadInterval = -1;
+    private boolean sameTreeHead = false;
+
+    public LogGrowth(long minIntervalMillis, long maxIntervalMillis, long freshnessMillis) {
+        this.minIntervalMillis = minIntervalMillis;
+        this.maxIntervalMillis = Math.max(maxIntervalMillis, minIntervalMillis);
+        this.freshnessMillis = freshnessMillis;
+    }
+
+    /**
+     * Records a tree head of the log. The timestamp is the one signed by the log, in milliseconds since the epoch.
+     */
+    public synchronized void record(long treeSize, long treeTimestamp, long nowMillis) {
+        sameTreeHead = treeTimestamp <= this.treeTimestamp;
+
+        if (this.treeTimestamp < 0) {
+            this.lastGrowthMillis = nowMillis;
+        } else if (!sameTreeHead) {
+            long elapsed = treeTimestamp - this.treeTimestamp;
+            double observedRate = (double) Math.max(0, treeSize - this.treeSize) / elapsed;
+
+            rate = ALPHA * observedRate + (1 - ALPHA) * rate;
+            treeHeadInterval = elapsed;
+
+            if (treeSize > this.treeSize) {
+                lastGrowthMillis = nowMillis;
+            }
+        }
+
+        this.treeSize = treeSize;
+        this.treeTimestamp = Math.max(treeTimestamp, this.treeTimestamp);
+    }
+
+    /**
+     * Returns the delay until the log should be read again.
+     */
+    public synchronized long nextDelay(long nowMillis) {
+        if (treeTimestamp < 0) {
+            return minIntervalMillis;
+        }
+
+        double delay;
+        if (nowMillis - lastGrowthMillis > freshnessMillis) {
+            // Idle: read again after half the time the log has been idle already.
+            delay = (nowMillis - lastGrowthMillis) / 2.0;
+        } else {
+            delay = freshnessMillis;
+            if (rate > 0) {
+                delay = Math.min(delay, TARGET_BATCH_ENTRIES / rate);
+            }
+        }
+
+        // The log publishes tree heads less often than we read it. There is nothing new before the next one is due.
+        if (sameTreeHead && treeHeadInterval > 0) {
+            delay = Math.max(delay, treeTimestamp + treeHeadInterval - nowMillis);
+        }
+
+        return Math.max(minIntervalMillis, Math.min(maxIntervalMillis, (long) delay));
+    }
+
+    /**
+     * Estimated number of entries that are appended to the log per second.
+     */
+    public synchronized double getEntriesPerSecond() {
+        return rate * 1000;
+    }
+
+    public void registerMetrics(MetricRegistry registry, String prefix) {
+        registry.register(MetricRegistry.name(prefix, "entries_per_second"), (Gauge<Double>) this::getEntriesPerSecond);
+    }
+
+}
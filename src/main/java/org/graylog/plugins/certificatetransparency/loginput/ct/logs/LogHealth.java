@@ -0,0 +1,163 @@
+package org.graylog.plugins.certificatetransparency.loginput.ct.logs;
+
+import com.codahale.metrics.Gauge;
+import com.codahale.metrics.MetricRegistry;
+
+import java.io.InterruptedIOException;
+
+/**
+ * Health of a single log server, fed by the outcome of every read run. Works as a circuit breaker: after a few
+ * failed runs in a row the log is only probed with an exponentially growing delay, until a probe succeeds again.
+ */
+public class LogHealth {
+
+    public enum State {
+        // The log works and is read at the normal interval.
+        CLOSED,
+        // The log failed too often and is not read until its backoff is over.
+        OPEN,
+        // The backoff is over and the next run decides whether the log is healthy again.
+        HALF_OPEN
+    }
+
+    // Weight of the newest run in the moving averages.
+    private static final double ALPHA = 0.2;
+
+    private static final int FAILURES_TO_OPEN = 3;
+
+    // A timeout blocks a reader thread for the whole timeout, so it counts more than a quick failure.
+    private static final int TIMEOUT_WEIGHT = 2;
+
+    // Runs that take longer than this lower the health score.
+    private static final double LATENCY_TARGET_MILLIS = 1000;
+
+    private final long pollIntervalMillis;
+    private final long maxBackoffMillis;
+
+    private State state = State.CLOSED;
+    private int consecutiveFailures = 0;
+    private double latencyMillis = Double.NaN;
+    private double errorRate = 0;
+    private double entriesPerRun = 0;
+    private long timeouts = 0;
+
+    public LogHealth(long pollIntervalMillis, long maxBackoffMillis) {
+        this.pollIntervalMillis = pollIntervalMillis;
+        this.maxBackoffMillis = Math.max(maxBackoffMillis, pollIntervalMillis);
+    }
+
+    /**
+     * Called before every run. A run of an open circuit is a probe.
+     */
+    public synchronized void beforeRun() {
+        if (state == State.OPEN) {
+            state = State.HALF_OPEN;
+        }
+    }
+
+    /**
+     * Records a successful run. How long to wait until the next one depends on the log, not on its health.
+     */
+    public synchronized void success(long runMillis, long entries) {
+        state = State.CLOSED;
+        consecutiveFailures = 0;
+
+        updateLatency(runMillis);
+        errorRate = (1 - ALPHA) * errorRate;
+        entriesPerRun = ALPHA * entries + (1 - ALPHA) * entriesPerRun;
+    }
+
+    /**
+     * Records a failed run and returns the delay until the next one.
+     */
+    public synchronized long failure(long runMillis, Throwable cause) {
+        boolean timeout = isTimeout(cause);
+        if (timeout) {
+            timeouts++;
+        }
+
+        consecutiveFailures += timeout ? TIMEOUT_WEIGHT : 1;
+        if (state == State.HALF_OPEN || consecutiveFailures >= FAILURES_TO_OPEN) {
+            state = State.OPEN;
+        }
+
+        updateLatency(runMillis);
+        errorRate = ALPHA + (1 - ALPHA) * errorRate;
+        entriesPerRun = (1 - ALPHA) * entriesPerRun;
+
+        return backoff(consecutiveFailures);
+    }
+
+    long backoff(int consecutiveFailures) {
+        // Double the poll interval for every failure in a row. Cap the shift to not overflow.
+        long backoff = pollIntervalMillis << Math.min(consecutiveFailures, 16);
+        return Math.min(backoff, maxBackoffMillis);
+    }
+
+    public synchronized State getState() {
+        return state;
+    }
+
+    /**
+     * A score from 0 (broken) to 100 (fast and without errors).
+     */
+    public synchronized double getScore() {
+        if (state == State.OPEN) {
+            return 0;
+        }
+
+        double latencyFactor = Double.isNaN(latencyMillis)
+                ? 1
+                : LATENCY_TARGET_MILLIS / Math.max(latencyMillis, LATENCY_TARGET_MILLIS);
+        return 100 * (1 - errorRate) * latencyFactor;
+    }
+
+    public void registerMetrics(MetricRegistry registry, String prefix) {
+        registry.register(MetricRegistry.name(prefix, "health_score"), (Gauge<Double>) this::getScore);
+        registry.register(MetricRegistry.name(prefix, "circuit_state"), (Gauge<String>) () -> getState().toString());
+        registry.register(MetricRegistry.name(prefix, "consecutive_failures"), (Gauge<Integer>) () -> {
+            synchronized (this) {
+                return consecutiveFailures;
+            }
+        });
+        registry.register(MetricRegistry.name(prefix, "run_latency_ms"), (Gauge<Double>) () -> {
+            synchronized (this) {
+                return Double.isNaN(latencyMillis) ? 0 : latencyMillis;
+            }
+        });
+        registry.register(MetricRegistry.name(prefix, "error_rate"), (Gauge<Double>) () -> {
+            synchronized (this) {
+                return errorRate;
+            }
+        });
+        registry.register(MetricRegistry.name(prefix, "entries_per_run"), (Gauge<Double>) () -> {
+            synchronized (this) {
+                return entriesPerRun;
+            }
+        });
+        registry.register(MetricRegistry.name(prefix, "timeouts"), (Gauge<Long>) () -> {
+            synchronized (this) {
+                return timeouts;
+            }
+        });
+    }
+
+    public static void removeMetrics(MetricRegistry registry, String prefix) {
+        registry.removeMatching((name, metric) -> name.startsWith(prefix + "."));
+    }
+
+    private void updateLatency(long runMillis) {
+        latencyMillis = Double.isNaN(latencyMillis) ? runMillis : ALPHA * runMillis + (1 - ALPHA) * latencyMillis;
+    }
+
+    private static boolean isTimeout(Throwable cause) {
+        for (Throwable t = cause; t != null; t = t.getCause()) {
+            // OkHttp reports connect and read timeouts as SocketTimeoutException, which is an InterruptedIOException.
+            if (t instanceof InterruptedIOException) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+}
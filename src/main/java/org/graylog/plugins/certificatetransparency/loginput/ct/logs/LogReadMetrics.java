@@ -0,0 +1,131 @@
+package org.graylog.plugins.certificatetransparency.loginput.ct.logs;
+
+import com.codahale.metrics.Counter;
+import com.codahale.metrics.Gauge;
+import com.codahale.metrics.Meter;
+import com.codahale.metrics.MetricRegistry;
+import com.codahale.metrics.Timer;
+
+import java.util.EnumMap;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Metrics of the read path of a single log. Everything is counted for the log and for all logs of the input together.
+ *
+ * The metrics of the log only show up once {@link #register(MetricRegistry, String)} was called, which the scheduler
+ * does when it starts the reader.
+ */
+public class LogReadMetrics {
+
+    public enum SkipReason {
+        // Precertificates are not read.
+        PRECERTIFICATE,
+        // The certificate was already read from another log.
+        DUPLICATE,
+        // The input was too far behind when it resumed reading.
+        CATCH_UP
+    }
+
+    private final Meter entries = new Meter();
+    private final Meter bytes = new Meter();
+    private final Timer treeHeadRequests = new Timer();
+    private final Timer entriesRequests = new Timer();
+    private final Map<SkipReason, Counter> skipped = new EnumMap<>(SkipReason.class);
+
+    private final Meter totalEntries;
+    private final Meter totalBytes;
+    private final Timer totalTreeHeadRequests;
+    private final Timer totalEntriesRequests;
+    private final Map<SkipReason, Counter> totalSkipped = new EnumMap<>(SkipReason.class);
+
+    private volatile long treeSize = -1;
+    private volatile long treeTimestamp = -1;
+    private volatile long position = -1;
+    private volatile long entryTimestamp = -1;
+
+    public LogReadMetrics(MetricRegistry registry) {
+        this.totalEntries = registry.meter("entries_read");
+        this.totalBytes = registry.meter("bytes_read");
+        this.totalTreeHeadRequests = registry.timer("get_sth_time");
+        this.totalEntriesRequests = registry.timer("get_entries_time");
+
+        for (SkipReason reason : SkipReason.values()) {
+            skipped.put(reason, new Counter());
+            totalSkipped.put(reason, registry.counter(skippedName(reason)));
+        }
+    }
+
+    public void register(MetricRegistry registry, String prefix) {
+        registry.register(MetricRegistry.name(prefix, "entries_read"), entries);
+        registry.register(MetricRegistry.name(prefix, "bytes_read"), bytes);
+        registry.register(MetricRegistry.name(prefix, "get_sth_time"), treeHeadRequests);
+        registry.register(MetricRegistry.name(prefix, "get_entries_time"), entriesRequests);
+        registry.register(MetricRegistry.name(prefix, "lag_entries"), (Gauge<Long>) this::getLagEntries);
+        registry.register(MetricRegistry.name(prefix, "lag_seconds"), (Gauge<Long>) this::getLagSeconds);
+
+        for (Map.Entry<SkipReason, Counter> entry : skipped.entrySet()) {
+            registry.register(MetricRegistry.name(prefix, skippedName(entry.getKey())), entry.getValue());
+        }
+    }
+
+    public void treeHeadRequest(long nanos) {
+        treeHeadRequests.update(nanos, TimeUnit.NANOSECONDS);
+        totalTreeHeadRequests.update(nanos, TimeUnit.NANOSECONDS);
+    }
+
+    public void entriesRequest(long nanos) {
+        entriesRequests.update(nanos, TimeUnit.NANOSECONDS);
+        totalEntriesRequests.update(nanos, TimeUnit.NANOSECONDS);
+    }
+
+    public void treeHead(long treeSize, long treeTimestamp) {
+        this.treeSize = treeSize;
+        this.treeTimestamp = treeTimestamp;
+    }
+
+    public void position(long position) {
+        this.position = position;
+    }
+
+    public void entryRead(int bytes, long entryTimestamp) {
+        entries.mark();
+        totalEntries.mark();
+        this.bytes.mark(bytes);
+        totalBytes.mark(bytes);
+
+        this.entryTimestamp = entryTimestamp;
+    }
+
+    public void skipped(SkipReason reason, long count) {
+        skipped.get(reason).inc(count);
+        totalSkipped.get(reason).inc(count);
+    }
+
+    /**
+     * Number of entries in the log that were not read yet.
+     */
+    public long getLagEntries() {
+        long treeSize = this.treeSize;
+        long position = this.position;
+        return treeSize < 0 || position < 0 ? 0 : Math.max(0, treeSize - position);
+    }
+
+    /**
+     * How much older the last entry that was read is than the log's tree head. Zero if all entries were read.
+     */
+    public long getLagSeconds() {
+        long treeTimestamp = this.treeTimestamp;
+        long entryTimestamp = this.entryTimestamp;
+        if (getLagEntries() == 0 || treeTimestamp < 0 || entryTimestamp < 0) {
+            return 0;
+        }
+        return Math.max(0, TimeUnit.MILLISECONDS.toSeconds(treeTimestamp - entryTimestamp));
+    }
+
+    private static String skippedName(SkipReason reason) {
+        return MetricRegistry.name("entries_skipped", reason.toString().toLowerCase(Locale.ENGLISH));
+    }
+
+}
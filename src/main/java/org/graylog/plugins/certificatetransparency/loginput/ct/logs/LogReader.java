@@ -1,135 +1,271 @@
 package org.graylog.plugins.certificatetransparency.loginput.ct.logs;
 
+import com.codahale.metrics.MetricRegistry;
 import com.fasterxml.jackson.databind.ObjectMapper;
-import com.google.common.collect.ImmutableList;
-import com.google.common.collect.Maps;
 import okhttp3.HttpUrl;
 import okhttp3.OkHttpClient;
 import okhttp3.Request;
 import okhttp3.Response;
-import org.graylog.plugins.certificatetransparency.loginput.ct.logs.json.CertificateTransparencyEntryResponse;
-import org.graylog.plugins.certificatetransparency.loginput.ct.logs.json.EntriesListResponse;
+import org.graylog.plugins.certificatetransparency.loginput.ct.dedup.EntryDeduplicator;
+import org.graylog.plugins.certificatetransparency.loginput.ct.http.CtHttpClient;
+import org.graylog.plugins.certificatetransparency.loginput.ct.http.OperatorRateLimiter;
+import org.graylog.plugins.certificatetransparency.loginput.ct.http.RateLimitedException;
+import org.graylog.plugins.certificatetransparency.loginput.ct.logs.checkpoints.LogCheckpoints;
 import org.graylog.plugins.certificatetransparency.loginput.ct.logs.json.SignedTreeHeadResponse;
 import org.graylog.plugins.certificatetransparency.loginput.ct.logservers.LogServer;
-import org.graylog2.plugin.inputs.MessageInput;
-import org.graylog2.plugin.journal.RawMessage;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
+import javax.annotation.Nullable;
 import java.io.IOException;
-import java.util.List;
-import java.util.Map;
+import java.io.InterruptedIOException;
+import java.util.function.BooleanSupplier;
 
 public class LogReader {
 
     private static final Logger LOG = LoggerFactory.getLogger(LogReader.class);
 
-    private final static int CHUNK_SIZE = 64;
-
-    private final MessageInput input;
-    private final OkHttpClient httpClient;
+    private volatile LogServer logServer;
+    private final EntryEmitter emitter;
+    private final EntryEmitter.Checkpoint checkpoint;
+    private final BooleanSupplier throttled;
+    private final CtHttpClient httpClient;
+    private final OperatorRateLimiter rateLimiter;
     private final ObjectMapper om;
+    private final LogCheckpoints checkpoints;
+    private final int maxRequestsInFlight;
+    private final long maxCatchUpEntries;
+    private final boolean readPrecertificates;
+    @Nullable
+    private final EntryDeduplicator deduplicator;
+    private final LogReadMetrics metrics;
 
-    private final ImmutableList<LogServer> logServers;
-
-    private final Map<LogServer, Long> lastPositions;
+    private volatile boolean stopped = false;
+    private volatile Long lastPosition;
+    private volatile SignedTreeHeadResponse lastTreeHead;
+    private EntryRangeFetcher fetcher;
 
-    public LogReader(MessageInput input, OkHttpClient httpClient, ObjectMapper om, ImmutableList<LogServer> logServers) {
-        this.input = input;
+    public LogReader(LogServer logServer,
+                     EntryEmitter emitter,
+                     BooleanSupplier throttled,
+                     CtHttpClient httpClient,
+                     OperatorRateLimiter rateLimiter,
+                     ObjectMapper om,
+                     LogCheckpoints checkpoints,
+                     int maxRequestsInFlight,
+                     long maxCatchUpEntries,
+                     boolean readPrecertificates,
+                     @Nullable EntryDeduplicator deduplicator,
+                     MetricRegistry metricRegistry) {
+        this.logServer = logServer;
+        this.emitter = emitter;
+        this.checkpoint = index -> checkpoints.update(this.logServer, index + 1);
+        this.throttled = throttled;
         this.httpClient = httpClient;
+        this.rateLimiter = rateLimiter;
         this.om = om;
+        this.checkpoints = checkpoints;
+        this.maxRequestsInFlight = maxRequestsInFlight;
+        this.maxCatchUpEntries = maxCatchUpEntries;
+        this.readPrecertificates = readPrecertificates;
+        this.deduplicator = deduplicator;
+        this.metrics = new LogReadMetrics(metricRegistry);
 
-        this.logServers = logServers;
-        this.lastPositions = Maps.newHashMap();
+        this.lastPosition = null;
     }
 
-    public void read() {
-        for (LogServer logServer : this.logServers) {
-            try {
-                LOG.debug("Reading Certificate Transparency logs from [{}].", logServer);
+    public LogServer getLogServer() {
+        return logServer;
+    }
 
-                HttpUrl url = HttpUrl.parse("https://" + logServer.url());
+    public LogReadMetrics getMetrics() {
+        return metrics;
+    }
 
-                if (url == null) {
-                    LOG.warn("Skipping Certificate Transparency log server with invalid URL: [{}].", logServer);
-                    continue;
-                }
+    /**
+     * Replaces the log server with a newer version of it from the log list, like when the log was frozen.
+     */
+    public void update(LogServer logServer) {
+        if (!logServer.url().equals(this.logServer.url())) {
+            throw new IllegalArgumentException("Log server [" + logServer + "] is not the log of this reader.");
+        }
+        this.logServer = logServer;
+    }
 
-                Long treeSize = getTreeSize(url);
-                Long previousTreeSize = lastPositions.get(logServer);
+    /**
+     * The tree head the last run got from the log. Null if there was none yet or the log is frozen.
+     */
+    @Nullable
+    public SignedTreeHeadResponse getLastTreeHead() {
+        return lastTreeHead;
+    }
 
-                lastPositions.put(logServer, treeSize);
-                if(previousTreeSize == null) {
-                    // Don't run on first run. Wait for next run, when we have a previous position to compare.
-                    LOG.debug("Skipping first run on [{}].", logServer);
-                    lastPositions.put(logServer, treeSize);
-                } else {
-                    // Read everything since last run, in chunks.
-                    long diff = treeSize-previousTreeSize;
+    /**
+     * Returns true once all entries of a frozen log have been read. Nothing will ever be appended to it again.
+     */
+    public boolean isDrained() {
+        Long finalTreeSize = logServer.finalTreeSize();
+        if (finalTreeSize == null) {
+            return false;
+        }
+
+        // Before the first read, the position is wherever this input stopped reading last time.
+        Long position = lastPosition == null ? checkpoints.get(logServer) : lastPosition;
+        return position != null && position >= finalTreeSize;
+    }
+
+    /**
+     * Reads all entries that were appended to the log since the last run. Errors are not handled here but passed on
+     * to the caller so it can decide when to try again. Returns the number of entries that were read.
+     */
+    public synchronized long read() throws IOException {
+        final LogServer logServer = this.logServer;
+
+        if (stopped) {
+            return 0;
+        }
 
-                    if (diff > 0) {
-                        LOG.debug("Fetching {} [{}->{}] new entries from [{}].", diff, previousTreeSize, treeSize, logServer);
+        if (throttled.getAsBoolean()) {
+            LOG.debug("Input is throttled. Not reading [{}].", logServer);
+            return 0;
+        }
+
+        LOG.debug("Reading Certificate Transparency logs from [{}].", logServer);
+
+        HttpUrl url = logServer.httpUrl();
+
+        if (url == null) {
+            throw new IllegalStateException("Invalid Certificate Transparency log server URL: [" + logServer.url() + "].");
+        }
+
+        if (fetcher == null) {
+            fetcher = new EntryRangeFetcher(httpClient.entries(), om, url, maxRequestsInFlight, metrics, rateLimiter);
+        }
 
-                        for (CertificateTransparencyEntryResponse entry : getNewEntries(url, previousTreeSize, treeSize)) {
-                            input.processRawMessage(new RawMessage(om.writeValueAsBytes(entry)));
-                        }
-                    }
+        // A frozen log doesn't grow anymore, so there is no need to ask for its size.
+        long treeSize;
+        if (logServer.isFrozen()) {
+            treeSize = logServer.finalTreeSize();
+            metrics.treeHead(treeSize, -1);
+        } else {
+            lastTreeHead = timedTreeHead(url);
+            treeSize = lastTreeHead.treeSize;
+            metrics.treeHead(treeSize, lastTreeHead.timestamp);
+        }
+
+        if (lastPosition == null) {
+            lastPosition = resumePosition(logServer, treeSize);
+            metrics.position(lastPosition);
+        }
+
+        // Read everything since last run, in chunks.
+        long previousTreeSize = lastPosition;
+        long diff = treeSize-previousTreeSize;
+
+        if (diff > 0) {
+            LOG.debug("Fetching {} [{}->{}] new entries from [{}].", diff, previousTreeSize, treeSize, logServer);
+
+            // Advance the position with every entry, so a failed run continues where it stopped. Stop early when the
+            // input gets throttled, the next run continues from there.
+            fetcher.fetch(previousTreeSize, treeSize, () -> stopped || throttled.getAsBoolean(), (index, leafInput, extraData) -> {
+                metrics.entryRead(leafInput.length + extraData.length, CertificateLogEntry.timestamp(leafInput));
+
+                // Drop unwanted precertificates and copies from other logs before they reach the journal and the codec.
+                // Skipped entries are queued without a payload, so the checkpoint doesn't pass entries still queued.
+                LogReadMetrics.SkipReason skipReason = skipReason(logServer, leafInput);
+                if (skipReason == null) {
+                    CertificateLogEntry logEntry = new CertificateLogEntry(logServer.url(), index, leafInput, extraData);
+                    emitter.emit(checkpoint, index, logEntry.toBytes());
+                } else {
+                    metrics.skipped(skipReason, 1);
+                    emitter.emit(checkpoint, index, null);
                 }
-            } catch(Exception e) {
-                LOG.error("Could not read logs from [{}]. Skipping.", logServer, e);
-            }
+
+                lastPosition = index + 1;
+                metrics.position(lastPosition);
+            });
         }
 
-        LOG.debug("Certificate Transparency read run finished successfully.");
+        LOG.debug("Certificate Transparency read run on [{}] finished successfully.", logServer);
+        return lastPosition - previousTreeSize;
     }
 
-    private long getTreeSize(HttpUrl url) throws IOException {
-        Response response = httpClient.newCall(new Request.Builder()
-                .get()
-                .url(url.newBuilder().addEncodedPathSegments("ct/v1/get-sth").build())
-                .build()
-        ).execute();
+    /**
+     * Stops reading the log for good and hands it off: once the entries that were read went through the input, their
+     * position is written and forgotten, so the node that reads the log next continues right there. {@code released}
+     * runs once the position was written. Waits for a read that is running, which stops early.
+     */
+    public void handOff(Runnable released) throws InterruptedIOException {
+        stopped = true;
 
-        try {
-            if (response.code() != 200) {
-                throw new RuntimeException("Expected HTTP response code <200> but got <" + response.code() + ">");
-            }
+        synchronized (this) {
+            // Queued behind the last entry of the log, so it moves once all of them were passed to the input.
+            emitter.emit(index -> checkpoints.release(logServer.url(), released), -1, null);
+        }
+    }
+
+    @Nullable
+    private LogReadMetrics.SkipReason skipReason(LogServer logServer, byte[] leafInput) {
+        if (!readPrecertificates && CertificateLogEntry.entryType(leafInput) == CertificateLogEntry.ENTRY_TYPE_PRECERT) {
+            return LogReadMetrics.SkipReason.PRECERTIFICATE;
+        }
+        if (deduplicator != null && !deduplicator.firstSighting(logServer.url(), leafInput)) {
+            return LogReadMetrics.SkipReason.DUPLICATE;
+        }
+        return null;
+    }
+
+    private long resumePosition(LogServer logServer, long treeSize) {
+        Long checkpoint = checkpoints.get(logServer);
 
-            String body = response.body().string();
+        if (checkpoint == null) {
+            // Never read this log before. Start with whatever is appended from now on.
+            LOG.debug("No previous position for [{}]. Starting at current tree size <{}>.", logServer, treeSize);
+            checkpoints.update(logServer, treeSize);
+            return treeSize;
+        }
+
+        if (maxCatchUpEntries > 0 && treeSize - checkpoint > maxCatchUpEntries) {
+            long skipTo = treeSize - maxCatchUpEntries;
+            LOG.warn("Position of [{}] is {} entries behind. Skipping {} entries to catch up at most {}.",
+                    logServer, treeSize - checkpoint, skipTo - checkpoint, maxCatchUpEntries);
+            checkpoints.update(logServer, skipTo);
+            metrics.skipped(LogReadMetrics.SkipReason.CATCH_UP, skipTo - checkpoint);
+            return skipTo;
+        }
+
+        LOG.debug("Resuming [{}] at position <{}>.", logServer, checkpoint);
+        return checkpoint;
+    }
 
-            SignedTreeHeadResponse sth = om.readValue(body, SignedTreeHeadResponse.class);
-            return sth.treeSize;
+    private SignedTreeHeadResponse timedTreeHead(HttpUrl url) throws IOException {
+        long started = System.nanoTime();
+        try {
+            return getTreeHead(httpClient.treeHeads(), om, url, rateLimiter);
         } finally {
-            if (response != null) {
-                response.close();
-            }
+            metrics.treeHeadRequest(System.nanoTime() - started);
         }
     }
 
-    private List<CertificateTransparencyEntryResponse> getNewEntries(HttpUrl url, Long from, Long to) throws IOException {
-        Response response = httpClient.newCall(new Request.Builder()
+    public static SignedTreeHeadResponse getTreeHead(OkHttpClient httpClient, ObjectMapper om, HttpUrl url, OperatorRateLimiter rateLimiter) throws IOException {
+        rateLimiter.acquire();
+
+        try (Response response = httpClient.newCall(new Request.Builder()
                 .get()
-                .url(url.newBuilder()
-                        .addEncodedPathSegments("ct/v1/get-entries")
-                        .addQueryParameter("start", from.toString())
-                        .addQueryParameter("end", to.toString())
-                        .build())
+                .url(url.newBuilder().addEncodedPathSegments("ct/v1/get-sth").build())
                 .build()
-        ).execute();
-
-        try {
+        ).execute()) {
+            RateLimitedException rateLimited = RateLimitedException.of(url.toString(), response, System.currentTimeMillis());
+            if (rateLimited != null) {
+                rateLimiter.throttled(rateLimited.getRetryAfterMillis());
+                throw rateLimited;
+            }
             if (response.code() != 200) {
-                throw new RuntimeException("Expected HTTP response code <200> but got <" + response.code() + ">");
+                throw new IOException("Expected HTTP response code <200> but got <" + response.code() + ">");
             }
+            rateLimiter.success();
 
-            String body = response.body().string();
-
-            EntriesListResponse entries = om.readValue(body, EntriesListResponse.class);
-            return entries.entries;
-        } finally {
-            if (response != null) {
-                response.close();
-            }
+            return om.readValue(response.body().byteStream(), SignedTreeHeadResponse.class);
         }
     }
 
@@ -0,0 +1,265 @@
+package org.graylog.plugins.certificatetransparency.loginput.ct.logs;
+
+import com.codahale.metrics.Gauge;
+import com.codahale.metrics.MetricRegistry;
+import com.google.common.collect.Maps;
+import org.graylog.plugins.certificatetransparency.loginput.ct.http.RateLimitedException;
+import org.graylog.plugins.certificatetransparency.loginput.ct.logs.json.SignedTreeHeadResponse;
+import org.graylog.plugins.certificatetransparency.loginput.ct.logservers.LogServer;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.InterruptedIOException;
+import java.util.Collection;
+import java.util.HashSet;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Function;
+import java.util.stream.Collectors;
+
+/**
+ * Runs every {@link LogReader} as its own independently scheduled task, so a slow or broken log server only delays
+ * itself. The number of logs that are read at the same time is limited by the size of the executor.
+ *
+ * The set of readers follows the log list: {@link #reconcile(Collection, Function)} starts readers for new logs and
+ * hands off the logs that were removed, see {@link LogReader#handOff(Runnable)}. Frozen logs are read up to their final
+ * size, then their reader stops.
+ *
+ * Every log has its own {@link LogHealth}. Logs that keep failing are only probed with a growing delay, so they don't
+ * take reader threads away from logs that work. How often a working log is read depends on how fast it grows, see
+ * {@link LogGrowth}.
+ */
+public class LogReaderScheduler {
+
+    private static final Logger LOG = LoggerFactory.getLogger(LogReaderScheduler.class);
+
+    private final ScheduledExecutorService executor;
+    private final MetricRegistry metricRegistry;
+    private final long minPollIntervalMillis;
+    private final long maxPollIntervalMillis;
+    private final long freshnessMillis;
+    private final long maxBackoffMillis;
+
+    // Keyed by log URL, the other attributes of a log can change with a new version of the log list.
+    private final Map<String, ScheduledReader> readers;
+    // Logs that were removed but whose last entries are still on their way to the input.
+    private final Set<String> handingOff;
+
+    private volatile boolean running;
+
+    public LogReaderScheduler(ScheduledExecutorService executor,
+                              MetricRegistry metricRegistry,
+                              long minPollInterval,
+                              long maxPollInterval,
+                              long freshness,
+                              long maxBackoff,
+                              TimeUnit unit) {
+        this.executor = executor;
+        this.metricRegistry = metricRegistry;
+        this.minPollIntervalMillis = unit.toMillis(minPollInterval);
+        this.maxPollIntervalMillis = unit.toMillis(maxPollInterval);
+        this.freshnessMillis = unit.toMillis(freshness);
+        this.maxBackoffMillis = Math.max(unit.toMillis(maxBackoff), this.minPollIntervalMillis);
+
+        this.readers = Maps.newConcurrentMap();
+        this.handingOff = ConcurrentHashMap.newKeySet();
+        this.running = true;
+
+        metricRegistry.register("lag_entries", (Gauge<Long>) () -> readers.values().stream()
+                .mapToLong(r -> r.reader.getMetrics().getLagEntries())
+                .sum());
+        metricRegistry.register("lag_seconds", (Gauge<Long>) () -> readers.values().stream()
+                .mapToLong(r -> r.reader.getMetrics().getLagSeconds())
+                .max()
+                .orElse(0));
+    }
+
+    public void start(LogReader reader) {
+        if (!running) {
+            return;
+        }
+
+        ScheduledReader scheduled = new ScheduledReader(reader);
+        if (readers.putIfAbsent(reader.getLogServer().url(), scheduled) == null) {
+            scheduled.registerMetrics();
+            scheduled.schedule(0);
+        }
+    }
+
+    /**
+     * Brings the running readers in line with the given log list. Readers of logs that are still in it keep their
+     * position and only get the newer version of the log.
+     */
+    public void reconcile(Collection<LogServer> logServers, Function<LogServer, LogReader> readerFactory) {
+        if (!running) {
+            return;
+        }
+
+        Set<String> urls = logServers.stream().map(LogServer::url).collect(Collectors.toSet());
+        for (Map.Entry<String, ScheduledReader> entry : readers.entrySet()) {
+            if (!urls.contains(entry.getKey())) {
+                LOG.info("Stopping to read log server [{}]. It was removed from the log list or another node reads it now.", entry.getKey());
+                handOff(entry.getValue());
+            }
+        }
+
+        for (LogServer logServer : logServers) {
+            if (handingOff.contains(logServer.url())) {
+                // Came back before it was handed off. Started again with the next reconcile.
+                continue;
+            }
+
+            ScheduledReader scheduled = readers.get(logServer.url());
+            if (scheduled != null) {
+                if (logServer.isFrozen() && !scheduled.reader.getLogServer().isFrozen()) {
+                    LOG.info("Log server [{}] is frozen at <{}> entries. Reading up to there.", logServer.url(), logServer.finalTreeSize());
+                }
+                scheduled.reader.update(logServer);
+            } else {
+                LogReader reader = readerFactory.apply(logServer);
+                // Logs that were frozen and completely read before are not started again.
+                if (!reader.isDrained()) {
+                    start(reader);
+                }
+            }
+        }
+    }
+
+    public void stop() {
+        running = false;
+
+        for (ScheduledReader reader : readers.values()) {
+            reader.cancel();
+            LogHealth.removeMetrics(metricRegistry, reader.metricPrefix);
+        }
+        readers.clear();
+    }
+
+    public boolean hasReaders() {
+        return !readers.isEmpty();
+    }
+
+    /**
+     * The logs that are read or still handed off.
+     */
+    public Set<String> getHeldLogs() {
+        Set<String> held = new HashSet<>(readers.keySet());
+        held.addAll(handingOff);
+        return held;
+    }
+
+    private void handOff(ScheduledReader scheduled) {
+        String url = scheduled.reader.getLogServer().url();
+        handingOff.add(url);
+        remove(scheduled);
+
+        // Waits for a running read and possibly for room in the queue, so it doesn't happen on the caller's thread.
+        executor.execute(() -> {
+            try {
+                scheduled.reader.handOff(() -> handingOff.remove(url));
+            } catch (InterruptedIOException e) {
+                handingOff.remove(url);
+            }
+        });
+    }
+
+    private void remove(ScheduledReader scheduled) {
+        // A read that is running right now is finished, so the last entries still get their checkpoint.
+        scheduled.cancel();
+        if (readers.remove(scheduled.reader.getLogServer().url(), scheduled)) {
+            LogHealth.removeMetrics(metricRegistry, scheduled.metricPrefix);
+        }
+    }
+
+    private class ScheduledReader implements Runnable {
+
+        private final LogReader reader;
+        private final LogHealth health;
+        private final LogGrowth growth;
+        private final String metricPrefix;
+
+        private volatile long delayMillis = 0;
+
+        private volatile ScheduledFuture<?> future;
+        private volatile boolean cancelled = false;
+
+        ScheduledReader(LogReader reader) {
+            this.reader = reader;
+            this.health = new LogHealth(minPollIntervalMillis, maxBackoffMillis);
+            this.growth = new LogGrowth(minPollIntervalMillis, maxPollIntervalMillis, freshnessMillis);
+            this.metricPrefix = MetricRegistry.name("log", reader.getLogServer().url());
+        }
+
+        @Override
+        public void run() {
+            health.beforeRun();
+
+            long delay;
+            long started = System.nanoTime();
+            try {
+                long entries = reader.read();
+                health.success(TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - started), entries);
+
+                SignedTreeHeadResponse treeHead = reader.getLastTreeHead();
+                if (treeHead != null) {
+                    growth.record(treeHead.treeSize, treeHead.timestamp, System.currentTimeMillis());
+                }
+                delay = growth.nextDelay(System.currentTimeMillis());
+            } catch (RateLimitedException e) {
+                // Not broken, just busy. Come back when the log says so, the operator's limiter slows down the rest.
+                delay = Math.max(e.getRetryAfterMillis(), growth.nextDelay(System.currentTimeMillis()));
+                LOG.info("Log server [{}] is rate limiting us (HTTP {}). Reading again in {}ms.",
+                        reader.getLogServer().url(), e.getStatusCode(), delay);
+            } catch (Exception e) {
+                LogHealth.State before = health.getState();
+                delay = health.failure(TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - started), e);
+
+                if (before == LogHealth.State.CLOSED && health.getState() == LogHealth.State.OPEN) {
+                    LOG.warn("Log server [{}] failed repeatedly. Only probing it every {}ms until it recovers.",
+                            reader.getLogServer().url(), delay, e);
+                } else if (before == LogHealth.State.CLOSED) {
+                    LOG.error("Could not read logs from [{}]. Retrying in {}ms.", reader.getLogServer(), delay, e);
+                } else {
+                    // Already known to be broken. Don't fill the log with the same stack trace over and over.
+                    LOG.debug("Probe of log server [{}] failed. Next probe in {}ms.", reader.getLogServer().url(), delay, e);
+                }
+            }
+
+            if (reader.isDrained()) {
+                LOG.info("Read all entries of frozen log server [{}]. Stopping to read it.", reader.getLogServer().url());
+                remove(this);
+                return;
+            }
+
+            schedule(delay);
+        }
+
+        void registerMetrics() {
+            health.registerMetrics(metricRegistry, metricPrefix);
+            growth.registerMetrics(metricRegistry, metricPrefix);
+            reader.getMetrics().register(metricRegistry, metricPrefix);
+            metricRegistry.register(MetricRegistry.name(metricPrefix, "next_read_ms"), (Gauge<Long>) () -> delayMillis);
+        }
+
+        void schedule(long delayMillis) {
+            this.delayMillis = delayMillis;
+            if (running && !cancelled) {
+                this.future = executor.schedule(this, delayMillis, TimeUnit.MILLISECONDS);
+            }
+        }
+
+        void cancel() {
+            cancelled = true;
+            ScheduledFuture<?> f = this.future;
+            if (f != null) {
+                f.cancel(false);
+            }
+        }
+
+    }
+
+}
@@ -0,0 +1,24 @@
+package org.graylog.plugins.certificatetransparency.loginput.ct.logs.checkpoints;
+
+import java.util.Collection;
+import java.util.Map;
+
+/**
+ * Where the checkpoints of all inputs are kept, one per input and log. Writing the checkpoint of a log never touches
+ * that of another log or input, so nodes and inputs that write at the same time don't overwrite each other.
+ */
+public interface CheckpointStorage<T> {
+
+    /**
+     * The checkpoints of the logs of an input, keyed by log URL. Logs without a checkpoint are left out.
+     */
+    Map<String, T> load(String inputId, Collection<String> logUrls);
+
+    /**
+     * All checkpoints of an input, keyed by log URL.
+     */
+    Map<String, T> loadAll(String inputId);
+
+    void write(String inputId, String logUrl, T checkpoint);
+
+}
@@ -0,0 +1,105 @@
+package org.graylog.plugins.certificatetransparency.loginput.ct.logs.checkpoints;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.Collection;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executor;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Writes the checkpoints of one input to a {@link CheckpointStorage} in batches. Updating a checkpoint only marks its
+ * log as dirty, so the threads that pass entries to the input never wait for the storage.
+ *
+ * Dirty checkpoints are written by {@link #flush()}, which runs on a schedule and, once a number of updates came in,
+ * early on the checkpoint executor. A checkpoint that could not be written stays dirty for the next flush.
+ */
+public class CheckpointStore<T> {
+
+    private static final Logger LOG = LoggerFactory.getLogger(CheckpointStore.class);
+
+    private final CheckpointStorage<T> storage;
+    private final String inputId;
+    private final long flushAfterUpdates;
+    private final Executor executor;
+
+    // Keyed by log URL.
+    private final Map<String, T> dirty = new ConcurrentHashMap<>();
+    private final Map<String, Runnable> releasing = new ConcurrentHashMap<>();
+    private final AtomicLong updatesSinceFlush = new AtomicLong(0);
+    private final AtomicBoolean flushQueued = new AtomicBoolean(false);
+
+    public CheckpointStore(CheckpointStorage<T> storage, String inputId, long flushAfterUpdates, Executor executor) {
+        this.storage = storage;
+        this.inputId = inputId;
+        this.flushAfterUpdates = flushAfterUpdates;
+        this.executor = executor;
+    }
+
+    public Map<String, T> load(Collection<String> logUrls) {
+        return storage.load(inputId, logUrls);
+    }
+
+    public Map<String, T> loadAll() {
+        return storage.loadAll(inputId);
+    }
+
+    public void update(String logUrl, T checkpoint) {
+        dirty.put(logUrl, checkpoint);
+
+        if (updatesSinceFlush.incrementAndGet() >= flushAfterUpdates) {
+            queueFlush();
+        }
+    }
+
+    /**
+     * Writes the last checkpoint of a log, if it wasn't written yet, and runs {@code released} on the checkpoint
+     * executor once it was. Until then the log must be kept, so no other node continues from an older checkpoint.
+     */
+    public void release(String logUrl, Runnable released) {
+        releasing.put(logUrl, released);
+        queueFlush();
+    }
+
+    public synchronized void flush() {
+        flushQueued.set(false);
+        updatesSinceFlush.set(0);
+
+        for (Map.Entry<String, T> checkpoint : dirty.entrySet()) {
+            try {
+                storage.write(inputId, checkpoint.getKey(), checkpoint.getValue());
+            } catch (Exception e) {
+                // The others would most likely fail the same way. All of them stay dirty for the next flush.
+                LOG.error("Could not write Certificate Transparency checkpoints of input <{}>.", inputId, e);
+                break;
+            }
+
+            // A checkpoint that was updated in the meantime stays dirty.
+            dirty.remove(checkpoint.getKey(), checkpoint.getValue());
+        }
+
+        for (Map.Entry<String, Runnable> released : releasing.entrySet()) {
+            if (!dirty.containsKey(released.getKey()) && releasing.remove(released.getKey(), released.getValue())) {
+                released.getValue().run();
+            }
+        }
+    }
+
+    private void queueFlush() {
+        if (!flushQueued.compareAndSet(false, true)) {
+            return;
+        }
+
+        try {
+            executor.execute(this::flush);
+        } catch (RejectedExecutionException e) {
+            // Shutting down. The input flushes one last time when it stops.
+            flushQueued.set(false);
+        }
+    }
+
+}
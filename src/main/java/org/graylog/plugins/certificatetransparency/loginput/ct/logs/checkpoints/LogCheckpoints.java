@@ -0,0 +1,93 @@
+package org.graylog.plugins.certificatetransparency.loginput.ct.logs.checkpoints;
+
+import com.google.common.collect.Maps;
+import org.graylog.plugins.certificatetransparency.loginput.ct.logservers.LogServer;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import javax.annotation.Nullable;
+import java.util.Collection;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.stream.Collectors;
+
+/**
+ * Keeps track of the read position of every log server of one input. Positions are written in batches by a
+ * {@link CheckpointStore}, never once per entry and never on the thread that updates them.
+ *
+ * When the logs of an input are split between nodes, a node only writes the positions of the logs it reads. Logs
+ * move between nodes with {@link #release(String, Runnable)} on one node and {@link #acquire(Collection)} on the
+ * other.
+ */
+public class LogCheckpoints {
+
+    private static final Logger LOG = LoggerFactory.getLogger(LogCheckpoints.class);
+
+    private final CheckpointStore<Long> store;
+    private final Map<String, Long> positions;
+
+    // Logs taken over from other nodes. Their positions were loaded when they were taken over.
+    private final Set<String> acquired = ConcurrentHashMap.newKeySet();
+
+    public LogCheckpoints(CheckpointStore<Long> store) {
+        this.store = store;
+        this.positions = Maps.newConcurrentMap();
+    }
+
+    /**
+     * Loads the last written positions of this input. Must be called before any reader asks for its position.
+     */
+    public void load() {
+        positions.putAll(store.loadAll());
+        LOG.debug("Loaded {} Certificate Transparency log positions.", positions.size());
+    }
+
+    /**
+     * Loads the positions of logs this node takes over, as the node that read them before wrote them when it handed
+     * them off. Logs that were taken over before are left alone.
+     */
+    public void acquire(Collection<String> logUrls) {
+        Set<String> newLogs = logUrls.stream()
+                .filter(logUrl -> !acquired.contains(logUrl))
+                .collect(Collectors.toSet());
+        if (newLogs.isEmpty()) {
+            return;
+        }
+
+        Map<String, Long> loaded = store.load(newLogs);
+        for (String logUrl : newLogs) {
+            positions.remove(logUrl);
+        }
+        positions.putAll(loaded);
+        acquired.addAll(newLogs);
+    }
+
+    /**
+     * Writes the position of a log this node hands off and forgets it, so it isn't written again while another node
+     * reads the log. Must only be called once all entries that were read from the log went through the input.
+     * {@code released} runs once the position was written.
+     */
+    public void release(String logUrl, Runnable released) {
+        store.release(logUrl, () -> {
+            positions.remove(logUrl);
+            acquired.remove(logUrl);
+            released.run();
+        });
+    }
+
+    @Nullable
+    public Long get(LogServer logServer) {
+        return positions.get(logServer.url());
+    }
+
+    public void update(LogServer logServer, long position) {
+        positions.put(logServer.url(), position);
+        store.update(logServer.url(), position);
+    }
+
+    public void flush() {
+        store.flush();
+    }
+
+}
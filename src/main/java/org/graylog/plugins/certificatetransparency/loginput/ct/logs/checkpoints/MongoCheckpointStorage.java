@@ -0,0 +1,76 @@
+package org.graylog.plugins.certificatetransparency.loginput.ct.logs.checkpoints;
+
+import com.fasterxml.jackson.core.type.TypeReference;
+import com.fasterxml.jackson.databind.JavaType;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.mongodb.BasicDBObject;
+import com.mongodb.DBCollection;
+import com.mongodb.DBCursor;
+import com.mongodb.DBObject;
+import org.graylog2.database.MongoConnection;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Keeps checkpoints in a MongoDB collection with a document per input and log. Every write is an upsert of one
+ * document, unlike the cluster configuration that has one document for all inputs and nodes.
+ */
+public class MongoCheckpointStorage<T> implements CheckpointStorage<T> {
+
+    private static final String FIELD_INPUT_ID = "input_id";
+    private static final String FIELD_LOG_URL = "log_url";
+    private static final String FIELD_CHECKPOINT = "checkpoint";
+
+    private final DBCollection collection;
+    private final ObjectMapper objectMapper;
+    private final JavaType type;
+
+    public MongoCheckpointStorage(MongoConnection mongoConnection, String collectionName,
+                                  ObjectMapper objectMapper, TypeReference<T> type) {
+        this.collection = mongoConnection.getDatabase().getCollection(collectionName);
+        this.collection.createIndex(
+                new BasicDBObject(FIELD_INPUT_ID, 1).append(FIELD_LOG_URL, 1),
+                new BasicDBObject("unique", true)
+        );
+        this.objectMapper = objectMapper;
+        this.type = objectMapper.getTypeFactory().constructType(type);
+    }
+
+    @Override
+    public Map<String, T> load(String inputId, Collection<String> logUrls) {
+        return find(new BasicDBObject(FIELD_INPUT_ID, inputId)
+                .append(FIELD_LOG_URL, new BasicDBObject("$in", new ArrayList<>(logUrls))));
+    }
+
+    @Override
+    public Map<String, T> loadAll(String inputId) {
+        return find(new BasicDBObject(FIELD_INPUT_ID, inputId));
+    }
+
+    @Override
+    public void write(String inputId, String logUrl, T checkpoint) {
+        collection.update(
+                new BasicDBObject(FIELD_INPUT_ID, inputId).append(FIELD_LOG_URL, logUrl),
+                new BasicDBObject("$set", new BasicDBObject(FIELD_CHECKPOINT, objectMapper.convertValue(checkpoint, Object.class))),
+                true,
+                false
+        );
+    }
+
+    private Map<String, T> find(DBObject query) {
+        Map<String, T> checkpoints = new HashMap<>();
+        try (DBCursor cursor = collection.find(query)) {
+            for (DBObject document : cursor) {
+                Object checkpoint = document.get(FIELD_CHECKPOINT);
+                if (checkpoint != null) {
+                    checkpoints.put((String) document.get(FIELD_LOG_URL), objectMapper.convertValue(checkpoint, type));
+                }
+            }
+        }
+        return checkpoints;
+    }
+
+}
@@ -1,9 +0,0 @@
-package org.graylog.plugins.certificatetransparency.loginput.ct.logs.json;
-
-import java.util.List;
-
-public class EntriesListResponse {
-
-    public List<CertificateTransparencyEntryResponse> entries;
-
-}
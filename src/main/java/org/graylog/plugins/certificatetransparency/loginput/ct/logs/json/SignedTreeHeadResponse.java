@@ -7,4 +7,8 @@ public class SignedTreeHeadResponse {
     @JsonProperty("tree_size")
     public long treeSize;
 
+    // Milliseconds since the epoch.
+    @JsonProperty("timestamp")
+    public long timestamp;
+
 }
@@ -0,0 +1,46 @@
+package org.graylog.plugins.certificatetransparency.loginput.ct.logservers;
+
+import com.fasterxml.jackson.annotation.JsonAutoDetect;
+import com.fasterxml.jackson.annotation.JsonCreator;
+import com.fasterxml.jackson.annotation.JsonProperty;
+import com.google.auto.value.AutoValue;
+
+import javax.annotation.Nullable;
+
+/**
+ * The last version of a log list that was downloaded, with what is needed to ask if it changed since.
+ */
+@JsonAutoDetect
+@AutoValue
+public abstract class CachedLogList {
+
+    @JsonProperty("url")
+    public abstract String url();
+
+    @JsonProperty("etag")
+    @Nullable
+    public abstract String etag();
+
+    @JsonProperty("last_modified")
+    @Nullable
+    public abstract String lastModified();
+
+    // Epoch milliseconds.
+    @JsonProperty("fetched_at")
+    public abstract long fetchedAt();
+
+    // The log list as it was downloaded. Not kept without a cluster configuration, the parsed list is kept instead.
+    @JsonProperty("body")
+    @Nullable
+    public abstract String body();
+
+    @JsonCreator
+    public static CachedLogList create(@JsonProperty("url") String url,
+                                       @JsonProperty("etag") @Nullable String etag,
+                                       @JsonProperty("last_modified") @Nullable String lastModified,
+                                       @JsonProperty("fetched_at") long fetchedAt,
+                                       @JsonProperty("body") @Nullable String body) {
+        return new AutoValue_CachedLogList(url, etag, lastModified, fetchedAt, body);
+    }
+
+}
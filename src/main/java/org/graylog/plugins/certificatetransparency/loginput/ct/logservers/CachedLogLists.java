@@ -0,0 +1,30 @@
+package org.graylog.plugins.certificatetransparency.loginput.ct.logservers;
+
+import com.fasterxml.jackson.annotation.JsonAutoDetect;
+import com.fasterxml.jackson.annotation.JsonCreator;
+import com.fasterxml.jackson.annotation.JsonProperty;
+import com.google.auto.value.AutoValue;
+
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * Cached log lists of all Certificate Transparency inputs, one per log list URL, stored in the cluster configuration.
+ */
+@JsonAutoDetect
+@AutoValue
+public abstract class CachedLogLists {
+
+    @JsonProperty("lists")
+    public abstract List<CachedLogList> lists();
+
+    @JsonCreator
+    public static CachedLogLists create(@JsonProperty("lists") List<CachedLogList> lists) {
+        return new AutoValue_CachedLogLists(lists == null ? Collections.emptyList() : lists);
+    }
+
+    public static CachedLogLists empty() {
+        return create(Collections.emptyList());
+    }
+
+}
@@ -1,7 +1,9 @@
 package org.graylog.plugins.certificatetransparency.loginput.ct.logservers;
 
 import com.google.auto.value.AutoValue;
+import okhttp3.HttpUrl;
 
+import javax.annotation.Nullable;
 import java.util.List;
 
 @AutoValue
@@ -11,11 +13,36 @@ public abstract class LogServer {
     public abstract String url();
     public abstract List<String> operatedBy();
 
+    /**
+     * Size of the log when it was frozen. No entries are appended after it. Null for logs that are still running.
+     */
+    @Nullable
+    public abstract Long finalTreeSize();
+
+    public boolean isFrozen() {
+        return finalTreeSize() != null;
+    }
+
+    /**
+     * The base URL of the log, null if it is invalid. Log lists leave out the scheme, which is HTTPS. URLs with a
+     * scheme, like those of a mirror or a local test log, are taken as they are.
+     */
+    @Nullable
+    public HttpUrl httpUrl() {
+        String url = url();
+        return HttpUrl.parse(url.startsWith("http://") || url.startsWith("https://") ? url : "https://" + url);
+    }
+
     public static LogServer create(String description, String url, List<String> operatedBy) {
+        return create(description, url, operatedBy, null);
+    }
+
+    public static LogServer create(String description, String url, List<String> operatedBy, @Nullable Long finalTreeSize) {
         return builder()
                 .description(description)
                 .url(url)
                 .operatedBy(operatedBy)
+                .finalTreeSize(finalTreeSize)
                 .build();
     }
 
@@ -31,6 +58,8 @@ public abstract class LogServer {
 
         public abstract Builder operatedBy(List<String> operatedBy);
 
+        public abstract Builder finalTreeSize(@Nullable Long finalTreeSize);
+
         public abstract LogServer build();
     }
 
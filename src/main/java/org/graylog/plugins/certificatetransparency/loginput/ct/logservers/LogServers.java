@@ -8,12 +8,22 @@ import okhttp3.Response;
 import org.graylog.plugins.certificatetransparency.loginput.ct.logservers.json.LogServerResponse;
 import org.graylog.plugins.certificatetransparency.loginput.ct.logservers.json.LogServersListResponse;
 import org.graylog.plugins.certificatetransparency.loginput.ct.logservers.json.OperatorResponse;
+import org.graylog2.plugin.cluster.ClusterConfigService;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
+import javax.annotation.Nullable;
 import java.io.IOException;
-import java.util.List;
-
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Fetches the list of log servers. With a cluster configuration to keep it in, the last downloaded list is cached
+ * there and only downloaded again when it changed, so inputs start from the cached list without waiting for the
+ * download and keep running when the list can't be downloaded.
+ */
 public class LogServers {
 
     private static final Logger LOG = LoggerFactory.getLogger(LogServers.class);
@@ -22,70 +32,190 @@ public class LogServers {
 
     private final ObjectMapper om;
     private final OkHttpClient httpClient;
+    private final String logListUrl;
+    @Nullable
+    private final ClusterConfigService clusterConfigService;
+
+    // The list parsed from the cache, so an unchanged list isn't parsed again.
+    private CachedLogList cached;
+    private ImmutableList<LogServer> cachedServers;
+
+    public LogServers(ObjectMapper om, OkHttpClient httpClient) {
+        this(om, httpClient, ALL_LOGS_LIST);
+    }
 
-    private final ImmutableList<String> badServers;
+    public LogServers(ObjectMapper om, OkHttpClient httpClient, String logListUrl) {
+        this(om, httpClient, logListUrl, null);
+    }
 
-    public LogServers(ObjectMapper om, OkHttpClient httpClient, ImmutableList<String> badServers) {
+    public LogServers(ObjectMapper om, OkHttpClient httpClient, String logListUrl, @Nullable ClusterConfigService clusterConfigService) {
         this.om = om;
         this.httpClient = httpClient;
+        this.logListUrl = logListUrl;
+        this.clusterConfigService = clusterConfigService;
+    }
 
-        this.badServers = badServers;
+    /**
+     * The log servers of the cached list, empty if there is none or it can't be read.
+     */
+    public synchronized ImmutableList<LogServer> cached() {
+        CachedLogList list = loadCache();
+        if (list == null) {
+            return ImmutableList.of();
+        }
+
+        try {
+            return parseCached(list);
+        } catch (IOException e) {
+            LOG.warn("Could not read cached list of Certificate Transparency log servers.", e);
+            return ImmutableList.of();
+        }
     }
 
-    public ImmutableList<LogServer> fetch() throws IOException, FetchException {
+    public synchronized ImmutableList<LogServer> fetch() throws IOException, FetchException {
         LOG.info("Fetching current list of Certificate Transparency log servers.");
-        ImmutableList.Builder<LogServer> servers = new ImmutableList.Builder<>();
 
-        Response response = this.httpClient.newCall(
-                new Request.Builder()
-                        .get()
-                        .url(ALL_LOGS_LIST)
-                        .build()
-        ).execute();
+        CachedLogList list = loadCache();
+
+        Request.Builder request = new Request.Builder()
+                .get()
+                .url(logListUrl);
+        if (list != null && list.etag() != null) {
+            request.header("If-None-Match", list.etag());
+        }
+        if (list != null && list.lastModified() != null) {
+            request.header("If-Modified-Since", list.lastModified());
+        }
+
+        try (Response response = this.httpClient.newCall(request.build()).execute()) {
+            if (response.code() == 304 && list != null) {
+                LOG.debug("List of Certificate Transparency log servers did not change since it was fetched.");
+                return parseCached(list);
+            }
 
-        try {
             if (response.code() != 200) {
                 throw new FetchException("Expected HTTP response code <200> but got <" + response.code() + ">");
             }
 
-            String body = response.body().string();
-
-            LogServersListResponse list = om.readValue(body, LogServersListResponse.class);
-            for (LogServerResponse rawLog : list.logs) {
-                // Find operators of this log.
-                ImmutableList.Builder<String> operators = new ImmutableList.Builder<>();
-                for (Long operatorId : rawLog.operatedBy) {
-                    operators.add(findOperatorName(operatorId, list.operators));
+            ImmutableList<LogServer> servers;
+            String body = null;
+            if (clusterConfigService == null) {
+                // Nothing to cache the list in, so it is parsed while it is downloaded.
+                try (InputStream in = response.body().byteStream()) {
+                    servers = parse(om.readValue(in, LogServersListResponse.class));
                 }
+            } else {
+                byte[] bytes = response.body().bytes();
+                servers = parse(om.readValue(bytes, LogServersListResponse.class));
+                body = new String(bytes, StandardCharsets.UTF_8);
+            }
 
-                if(badServers.contains(rawLog.url)) {
-                    LOG.debug("Skipping known broken CT server [{}].", rawLog.url);
-                    continue;
-                }
+            storeCache(CachedLogList.create(
+                    logListUrl,
+                    response.header("ETag"),
+                    response.header("Last-Modified"),
+                    System.currentTimeMillis(),
+                    body
+            ), servers);
+
+            return servers;
+        }
+    }
 
-                servers.add(LogServer.create(
-                        rawLog.description,
-                        rawLog.url,
-                        operators.build()
-                ));
+    private ImmutableList<LogServer> parse(LogServersListResponse list) {
+        ImmutableList.Builder<LogServer> servers = new ImmutableList.Builder<>();
+
+        Map<Long, String> operators = new HashMap<>();
+        for (OperatorResponse operator : list.operators) {
+            operators.putIfAbsent(operator.id, operator.name);
+        }
+
+        for (LogServerResponse rawLog : list.logs) {
+            // Find operators of this log.
+            ImmutableList.Builder<String> operatorNames = new ImmutableList.Builder<>();
+            for (Long operatorId : rawLog.operatedBy) {
+                operatorNames.add(operators.getOrDefault(operatorId, "UNKNOWN"));
             }
 
-            return servers.build();
-        } finally {
-            if (response != null) {
-                response.close();
+            Long finalTreeSize = rawLog.finalSth == null ? null : rawLog.finalSth.treeSize;
+            if (rawLog.disqualifiedAt != null && finalTreeSize == null) {
+                // Nothing this log returns can be trusted anymore and there is no end to read up to.
+                LOG.debug("Skipping disqualified CT server [{}].", rawLog.url);
+                continue;
             }
+
+            servers.add(LogServer.create(
+                    rawLog.description,
+                    rawLog.url,
+                    operatorNames.build(),
+                    finalTreeSize
+            ));
+        }
+
+        return servers.build();
+    }
+
+    private ImmutableList<LogServer> parseCached(CachedLogList list) throws IOException {
+        if (!list.equals(cached)) {
+            cachedServers = parse(om.readValue(list.body(), LogServersListResponse.class));
+            cached = list;
         }
+        return cachedServers;
     }
 
-    private String findOperatorName(Long id, List<OperatorResponse> operators) {
-        for (OperatorResponse operator : operators) {
-            if (id.equals(operator.id)) {
-               return operator.name;
+    @Nullable
+    private CachedLogList loadCache() {
+        if (clusterConfigService == null) {
+            return cached;
+        }
+
+        try {
+            CachedLogLists lists = clusterConfigService.get(CachedLogLists.class);
+            if (lists != null) {
+                for (CachedLogList list : lists.lists()) {
+                    if (logListUrl.equals(list.url())) {
+                        return list;
+                    }
+                }
             }
+        } catch (Exception e) {
+            LOG.warn("Could not load cached list of Certificate Transparency log servers.", e);
+        }
+        return cached;
+    }
+
+    /**
+     * Writes the list to the cluster configuration. Lists of all inputs share one document, so the write of a node
+     * can drop what another node wrote for another list at the same time. The last write wins: a list that was lost
+     * is downloaded in full once more by the next fetch of its input and cached again.
+     */
+    private void storeCache(CachedLogList list, ImmutableList<LogServer> servers) {
+        cached = list;
+        cachedServers = servers;
+
+        if (clusterConfigService == null) {
+            return;
         }
 
-        return "UNKNOWN";
+        try {
+            CachedLogLists existing = clusterConfigService.get(CachedLogLists.class);
+            if (existing == null) {
+                existing = CachedLogLists.empty();
+            }
+
+            // Keep the lists of inputs that read another one.
+            ImmutableList.Builder<CachedLogList> lists = new ImmutableList.Builder<>();
+            for (CachedLogList other : existing.lists()) {
+                if (!logListUrl.equals(other.url())) {
+                    lists.add(other);
+                }
+            }
+            lists.add(list);
+
+            clusterConfigService.write(CachedLogLists.create(lists.build()));
+        } catch (Exception e) {
+            LOG.warn("Could not cache list of Certificate Transparency log servers.", e);
+        }
     }
 
     public class FetchException extends Exception {
@@ -0,0 +1,8 @@
+package org.graylog.plugins.certificatetransparency.loginput.ct.logservers.json;
+
+public class FinalTreeHeadResponse {
+
+    public Long treeSize;
+    public Long timestamp;
+
+}
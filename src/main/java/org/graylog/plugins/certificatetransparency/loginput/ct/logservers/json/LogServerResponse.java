@@ -8,4 +8,8 @@ public class LogServerResponse {
     public String url;
     public List<Long> operatedBy;
 
+    // Only set for logs that are frozen or no longer trusted.
+    public FinalTreeHeadResponse finalSth;
+    public Long disqualifiedAt;
+
 }
@@ -0,0 +1,72 @@
+package org.graylog.plugins.certificatetransparency.loginput.ct.util;
+
+import javax.annotation.Nullable;
+
+/**
+ * A domain name split at its public suffix. The parts are only cut out of the name when they are asked for.
+ */
+public class DomainName {
+
+    private final String name;
+    private final boolean wildcard;
+    private final int suffixStart;
+    private final int registrableStart;
+    private final int subdomainDepth;
+
+    DomainName(String name, boolean wildcard, int suffixStart, int registrableStart, int subdomainDepth) {
+        this.name = name;
+        this.wildcard = wildcard;
+        this.suffixStart = suffixStart;
+        this.registrableStart = registrableStart;
+        this.subdomainDepth = subdomainDepth;
+    }
+
+    public String getName() {
+        return name;
+    }
+
+    /**
+     * Whether the name starts with a {@code *} label. The wildcard does not count as a subdomain.
+     */
+    public boolean isWildcard() {
+        return wildcard;
+    }
+
+    /**
+     * The effective TLD, like {@code co.uk} for {@code www.example.co.uk}.
+     */
+    public String getPublicSuffix() {
+        return name.substring(suffixStart);
+    }
+
+    /**
+     * The label right before the public suffix, like {@code example} for {@code www.example.co.uk}. Null if the name
+     * is a public suffix itself.
+     */
+    @Nullable
+    public String getRegistrableLabel() {
+        return registrableStart < 0 ? null : name.substring(registrableStart, suffixStart - 1);
+    }
+
+    /**
+     * The domain that was registered, like {@code example.co.uk} for {@code www.example.co.uk}. Null if the name is a
+     * public suffix itself.
+     */
+    @Nullable
+    public String getRegistrableDomain() {
+        return registrableStart < 0 ? null : name.substring(registrableStart);
+    }
+
+    /**
+     * The number of labels before the registrable domain, like 1 for {@code www.example.co.uk}.
+     */
+    public int getSubdomainDepth() {
+        return subdomainDepth;
+    }
+
+    @Override
+    public String toString() {
+        return name;
+    }
+
+}
@@ -2,26 +2,121 @@ package org.graylog.plugins.certificatetransparency.loginput.ct.util;
 
 import com.google.common.collect.Maps;
 
+import javax.annotation.Nullable;
+import java.util.Locale;
 import java.util.Map;
+import java.util.concurrent.ConcurrentMap;
+import java.util.function.BiConsumer;
 
+/**
+ * Splits domain names at their public suffix, so {@code www.example.co.uk} is grouped under {@code example.co.uk}
+ * and not under {@code co.uk}.
+ */
 public class DomainSplitter {
 
-    public static Map<String, String> split(String domain, String prefix) {
-        if (!domain.contains(".")) {
+    private static final ConcurrentMap<String, FieldNames> FIELD_NAMES = Maps.newConcurrentMap();
+
+    public static Map<String, Object> split(String domain, String prefix) {
+        Map<String, Object> result = Maps.newHashMap();
+        split(domain, prefix, result::put);
+        return result;
+    }
+
+    /**
+     * Writes the fields of the domain straight into the given consumer, like a message, instead of a new map.
+     */
+    public static void split(String domain, String prefix, BiConsumer<String, Object> fields) {
+        FieldNames names = FIELD_NAMES.computeIfAbsent(prefix, FieldNames::new);
+        DomainName name = parse(domain);
+
+        fields.accept(names.commonName, domain);
+        fields.accept(names.publicSuffix, name.getPublicSuffix());
+        fields.accept(names.subdomainDepth, name.getSubdomainDepth());
+
+        String registrableDomain = name.getRegistrableDomain();
+        if (registrableDomain != null) {
+            fields.accept(names.registrableLabel, name.getRegistrableLabel());
+            fields.accept(names.registrableDomain, registrableDomain);
+        }
+    }
+
+    /**
+     * Returns the registrable domain, the same value as the {@code _l12} field. Null if the domain is a public suffix
+     * itself.
+     */
+    @Nullable
+    public static String registeredDomain(String domain) {
+        return parse(domain).getRegistrableDomain();
+    }
+
+    /**
+     * Returns true if the domain can be split. {@link #parse(String)} throws for all others.
+     */
+    public static boolean isValid(String domain) {
+        String name = domain.endsWith(".") ? domain.substring(0, domain.length() - 1) : domain;
+        return hasLabels(name, name.startsWith("*.") ? 2 : 0);
+    }
+
+    public static DomainName parse(String domain) {
+        return parse(domain, PublicSuffixList.getDefault());
+    }
+
+    static DomainName parse(String domain, PublicSuffixList publicSuffixes) {
+        String name = domain.toLowerCase(Locale.ENGLISH);
+        if (name.endsWith(".")) {
+            name = name.substring(0, name.length() - 1);
+        }
+
+        boolean wildcard = name.startsWith("*.");
+        int start = wildcard ? 2 : 0;
+        if (!hasLabels(name, start)) {
             throw new IllegalArgumentException("Invalid domain [" + domain + "].");
         }
 
-        Map<String, String> result = Maps.newHashMap();
+        int suffixLabels = publicSuffixes.publicSuffixLabels(name, start);
 
-        String[] levels = domain.split("\\.");
-        String l1 = levels[levels.length-1];
-        String l2 = levels[levels.length-2];
-        result.put("ct_" + prefix + "_common_name", domain);
-        result.put("ct_" + prefix + "_common_name_l1", l1);
-        result.put("ct_" + prefix + "_common_name_l2", l2);
-        result.put("ct_" + prefix + "_common_name_l12", l2 + "." + l1);
+        // Walk back over all labels once, noting where the public suffix and the registrable label start. Names with
+        // fewer labels than the matching rule are a public suffix as a whole.
+        int suffixStart = start;
+        int registrableStart = -1;
+        int labels = 0;
+        int end = name.length();
+        while (end > start) {
+            int dot = Math.max(name.lastIndexOf('.', end - 1), start - 1);
+            labels++;
 
-        return result;
+            if (labels == suffixLabels) {
+                suffixStart = dot + 1;
+            } else if (labels == suffixLabels + 1) {
+                registrableStart = dot + 1;
+            }
+            end = dot;
+        }
+
+        int subdomainDepth = Math.max(0, labels - suffixLabels - 1);
+
+        return new DomainName(name, wildcard, suffixStart, registrableStart, subdomainDepth);
+    }
+
+    // At least two labels after the wildcard, none of them empty at the end.
+    private static boolean hasLabels(String name, int start) {
+        return name.indexOf('.', start) > start && !name.endsWith(".");
+    }
+
+    private static class FieldNames {
+        private final String commonName;
+        private final String publicSuffix;
+        private final String registrableLabel;
+        private final String registrableDomain;
+        private final String subdomainDepth;
+
+        FieldNames(String prefix) {
+            this.commonName = "ct_" + prefix + "_common_name";
+            this.publicSuffix = commonName + "_l1";
+            this.registrableLabel = commonName + "_l2";
+            this.registrableDomain = commonName + "_l12";
+            this.subdomainDepth = commonName + "_subdomain_depth";
+        }
     }
 
 }
@@ -0,0 +1,144 @@
+package org.graylog.plugins.certificatetransparency.loginput.ct.util;
+
+import com.google.common.collect.Maps;
+import com.google.common.io.Resources;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.Reader;
+import java.io.UncheckedIOException;
+import java.net.IDN;
+import java.nio.charset.StandardCharsets;
+import java.util.Locale;
+import java.util.Map;
+
+/**
+ * The rules of the <a href="https://publicsuffix.org/">Public Suffix List</a> as a trie of labels, starting at the
+ * TLD. The list that ships with the plugin is loaded once on first use.
+ */
+public class PublicSuffixList {
+
+    private static final String RESOURCE = "public_suffix_list.dat";
+
+    private final Node root = new Node();
+
+    private static class Holder {
+        private static final PublicSuffixList INSTANCE = load();
+    }
+
+    public static PublicSuffixList getDefault() {
+        return Holder.INSTANCE;
+    }
+
+    PublicSuffixList(Reader rules) throws IOException {
+        BufferedReader reader = new BufferedReader(rules);
+
+        String line;
+        while ((line = reader.readLine()) != null) {
+            line = line.trim();
+            if (line.isEmpty() || line.startsWith("//")) {
+                continue;
+            }
+
+            // Only the first word of a line is the rule, see the format description of the list.
+            int space = line.indexOf(' ');
+            String rule = (space < 0 ? line : line.substring(0, space)).toLowerCase(Locale.ENGLISH);
+
+            addRule(rule);
+
+            // Certificates contain internationalized names in their ASCII form only.
+            String ascii = toAscii(rule);
+            if (ascii != null && !ascii.equals(rule)) {
+                addRule(ascii);
+            }
+        }
+    }
+
+    private static PublicSuffixList load() {
+        try (Reader reader = new InputStreamReader(
+                Resources.getResource(PublicSuffixList.class, RESOURCE).openStream(), StandardCharsets.UTF_8)) {
+            return new PublicSuffixList(reader);
+        } catch (IOException e) {
+            throw new UncheckedIOException("Could not load public suffix list.", e);
+        }
+    }
+
+    private void addRule(String rule) {
+        boolean exception = rule.startsWith("!");
+        if (exception) {
+            rule = rule.substring(1);
+        }
+
+        Node node = root;
+        int end = rule.length();
+        while (end > 0) {
+            int dot = rule.lastIndexOf('.', end - 1);
+            String label = rule.substring(dot + 1, end);
+
+            if (dot < 0 && label.equals("*")) {
+                node.wildcard = true;
+                return;
+            }
+
+            node = node.children.computeIfAbsent(label, l -> new Node());
+            end = dot;
+        }
+
+        if (exception) {
+            node.exception = true;
+        } else {
+            node.rule = true;
+        }
+    }
+
+    /**
+     * Returns the number of labels at the end of the lower case domain name that are its public suffix. Domains that
+     * no rule matches have a public suffix of one label, like the list demands. Only the part of the name from
+     * {@code start} on is looked at.
+     */
+    int publicSuffixLabels(String domain, int start) {
+        int suffix = 1;
+        int depth = 0;
+
+        Node node = root;
+        int end = domain.length();
+        while (end > start) {
+            int dot = Math.max(domain.lastIndexOf('.', end - 1), start - 1);
+            Node child = node.children.get(domain.substring(dot + 1, end));
+            depth++;
+
+            if (child != null && child.exception) {
+                // An exception always wins and makes the label itself registrable.
+                return depth - 1;
+            }
+            if (node.wildcard || (child != null && child.rule)) {
+                suffix = depth;
+            }
+            if (child == null) {
+                break;
+            }
+
+            node = child;
+            end = dot;
+        }
+
+        return suffix;
+    }
+
+    private static String toAscii(String rule) {
+        try {
+            return IDN.toASCII(rule, IDN.ALLOW_UNASSIGNED).toLowerCase(Locale.ENGLISH);
+        } catch (IllegalArgumentException e) {
+            return null;
+        }
+    }
+
+    private static class Node {
+        private final Map<String, Node> children = Maps.newHashMapWithExpectedSize(2);
+        private boolean rule;
+        private boolean exception;
+        private boolean wildcard;
+    }
+
+}
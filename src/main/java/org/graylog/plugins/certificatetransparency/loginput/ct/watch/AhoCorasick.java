@@ -0,0 +1,95 @@
+package org.graylog.plugins.certificatetransparency.loginput.ct.watch;
+
+import java.util.ArrayDeque;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Queue;
+
+/**
+ * Aho-Corasick automaton that finds any of a set of words in a text in a single pass, no matter how many words
+ * there are.
+ */
+class AhoCorasick {
+
+    private final Node root = new Node();
+    private boolean built = false;
+
+    void add(String word, WatchMatch.Type type) {
+        if (built) {
+            throw new IllegalStateException("Words can't be added after the automaton was built.");
+        }
+
+        Node node = root;
+        for (int i = 0; i < word.length(); i++) {
+            node = node.children.computeIfAbsent(word.charAt(i), c -> new Node());
+        }
+
+        // Words that are added first win if the same word is added twice.
+        if (node.word == null) {
+            node.word = word;
+            node.type = type;
+        }
+    }
+
+    void build() {
+        Queue<Node> queue = new ArrayDeque<>();
+        for (Node child : root.children.values()) {
+            child.fail = root;
+            queue.add(child);
+        }
+
+        while (!queue.isEmpty()) {
+            Node node = queue.poll();
+
+            for (Map.Entry<Character, Node> entry : node.children.entrySet()) {
+                char c = entry.getKey();
+                Node child = entry.getValue();
+
+                Node fail = node.fail;
+                while (fail != null && !fail.children.containsKey(c)) {
+                    fail = fail.fail;
+                }
+                child.fail = fail == null ? root : fail.children.get(c);
+                child.output = child.word != null ? child : child.fail.output;
+
+                queue.add(child);
+            }
+        }
+
+        built = true;
+    }
+
+    /**
+     * Returns the longest word that was found first in the text, or null.
+     */
+    Node find(CharSequence text) {
+        Node node = root;
+        Node best = null;
+
+        for (int i = 0; i < text.length(); i++) {
+            char c = text.charAt(i);
+
+            while (node != root && !node.children.containsKey(c)) {
+                node = node.fail;
+            }
+            Node next = node.children.get(c);
+            node = next == null ? root : next;
+
+            Node output = node.output;
+            if (output != null && (best == null || output.word.length() > best.word.length())) {
+                best = output;
+            }
+        }
+
+        return best;
+    }
+
+    static class Node {
+        final Map<Character, Node> children = new HashMap<>();
+        Node fail;
+        Node output;
+        String word;
+        WatchMatch.Type type;
+    }
+
+}
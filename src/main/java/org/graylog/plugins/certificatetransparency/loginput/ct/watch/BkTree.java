@@ -0,0 +1,95 @@
+package org.graylog.plugins.certificatetransparency.loginput.ct.watch;
+
+import java.util.ArrayDeque;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Burkhard-Keller tree over the watched labels. A query with a maximum distance only visits the parts of the tree
+ * that can contain matches, instead of computing the distance to every watched label.
+ */
+class BkTree {
+
+    private Node root;
+
+    void add(String word) {
+        if (root == null) {
+            root = new Node(word);
+            return;
+        }
+
+        Node node = root;
+        while (true) {
+            int distance = BoundedLevenshtein.distance(word, node.word, Integer.MAX_VALUE - 1);
+            if (distance == 0) {
+                return;
+            }
+
+            Node child = node.children.get(distance);
+            if (child == null) {
+                node.children.put(distance, new Node(word));
+                node.maxEdge = Math.max(node.maxEdge, distance);
+                return;
+            }
+            node = child;
+        }
+    }
+
+    /**
+     * Returns the closest word within {@code maxDistance} of the query, or null.
+     */
+    Result closest(String query, int maxDistance) {
+        if (root == null) {
+            return null;
+        }
+
+        Result best = null;
+        ArrayDeque<Node> pending = new ArrayDeque<>();
+        pending.push(root);
+
+        while (!pending.isEmpty()) {
+            Node node = pending.pop();
+
+            // Children are only reachable through edges in [d - max, d + max], so larger distances don't matter.
+            int bound = maxDistance + node.maxEdge;
+            int distance = BoundedLevenshtein.distance(query, node.word, bound);
+
+            if (distance <= maxDistance && (best == null || distance < best.distance)) {
+                best = new Result(node.word, distance);
+                if (distance == 0) {
+                    return best;
+                }
+            }
+
+            for (Map.Entry<Integer, Node> child : node.children.entrySet()) {
+                int edge = child.getKey();
+                if (edge >= distance - maxDistance && edge <= distance + maxDistance) {
+                    pending.push(child.getValue());
+                }
+            }
+        }
+
+        return best;
+    }
+
+    static class Result {
+        final String word;
+        final int distance;
+
+        Result(String word, int distance) {
+            this.word = word;
+            this.distance = distance;
+        }
+    }
+
+    private static class Node {
+        final String word;
+        final Map<Integer, Node> children = new HashMap<>();
+        int maxEdge = 0;
+
+        Node(String word) {
+            this.word = word;
+        }
+    }
+
+}
@@ -0,0 +1,52 @@
+package org.graylog.plugins.certificatetransparency.loginput.ct.watch;
+
+/**
+ * Levenshtein distance that gives up as soon as the result is known to be larger than a bound.
+ */
+class BoundedLevenshtein {
+
+    /**
+     * Returns the edit distance between both strings, or {@code bound + 1} if it is larger than {@code bound}.
+     */
+    static int distance(CharSequence a, CharSequence b, int bound) {
+        int n = a.length();
+        int m = b.length();
+
+        if (Math.abs(n - m) > bound) {
+            return bound + 1;
+        }
+        if (n == 0 || m == 0) {
+            return Math.max(n, m);
+        }
+
+        int[] previous = new int[m + 1];
+        int[] current = new int[m + 1];
+        for (int j = 0; j <= m; j++) {
+            previous[j] = j;
+        }
+
+        for (int i = 1; i <= n; i++) {
+            current[0] = i;
+            int rowMinimum = current[0];
+            char ca = a.charAt(i - 1);
+
+            for (int j = 1; j <= m; j++) {
+                int cost = ca == b.charAt(j - 1) ? 0 : 1;
+                current[j] = Math.min(Math.min(current[j - 1] + 1, previous[j] + 1), previous[j - 1] + cost);
+                rowMinimum = Math.min(rowMinimum, current[j]);
+            }
+
+            // Distances never shrink from one row to the next.
+            if (rowMinimum > bound) {
+                return bound + 1;
+            }
+
+            int[] swap = previous;
+            previous = current;
+            current = swap;
+        }
+
+        return Math.min(previous[m], bound + 1);
+    }
+
+}
@@ -0,0 +1,78 @@
+package org.graylog.plugins.certificatetransparency.loginput.ct.watch;
+
+import java.net.IDN;
+import java.text.Normalizer;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Normalizes domain names so that look-alike spellings of the same name become equal.
+ */
+class Homoglyphs {
+
+    private static final Map<Character, Character> CONFUSABLES = new HashMap<>();
+
+    static {
+        // Cyrillic
+        confusable("\u0430\u0435\u043e\u0440\u0441\u0443\u0445\u0456\u0458\u0455\u0501\u04bb\u04cf", "aeopcyxijsdhl");
+        // Greek
+        confusable("\u03b1\u03b5\u03b9\u03ba\u03bd\u03bf\u03c1\u03c4\u03c5\u03c7", "aeikvoptux");
+        // Latin look-alikes that don't decompose
+        confusable("\u0131\u0261\u0142\u00f8\u0111\u0127", "iglodh");
+        // Digits
+        confusable("01", "ol");
+    }
+
+    private static void confusable(String from, String to) {
+        for (int i = 0; i < from.length(); i++) {
+            CONFUSABLES.put(from.charAt(i), to.charAt(i));
+        }
+    }
+
+    /**
+     * Turns punycode labels back into unicode. Names that are not valid IDNs are returned as they are.
+     */
+    static String decodePunycode(String name) {
+        if (!name.contains("xn--")) {
+            return name;
+        }
+
+        try {
+            return IDN.toUnicode(name, IDN.ALLOW_UNASSIGNED);
+        } catch (IllegalArgumentException e) {
+            return name;
+        }
+    }
+
+    /**
+     * Maps a lower case name to a plain ASCII skeleton: accents are removed, look-alike characters are replaced and
+     * letter combinations that look like a single letter are merged.
+     */
+    static String skeleton(String name) {
+        String decomposed = Normalizer.normalize(name, Normalizer.Form.NFKD);
+
+        StringBuilder skeleton = new StringBuilder(decomposed.length());
+        for (int i = 0; i < decomposed.length(); i++) {
+            char c = decomposed.charAt(i);
+
+            if (Character.getType(c) == Character.NON_SPACING_MARK) {
+                continue;
+            }
+
+            Character replacement = CONFUSABLES.get(c);
+            char mapped = replacement == null ? c : replacement;
+
+            int last = skeleton.length() - 1;
+            if (last >= 0 && skeleton.charAt(last) == 'r' && mapped == 'n') {
+                skeleton.setCharAt(last, 'm');
+            } else if (last >= 0 && skeleton.charAt(last) == 'v' && mapped == 'v') {
+                skeleton.setCharAt(last, 'w');
+            } else {
+                skeleton.append(mapped);
+            }
+        }
+
+        return skeleton.toString();
+    }
+
+}
@@ -0,0 +1,54 @@
+package org.graylog.plugins.certificatetransparency.loginput.ct.watch;
+
+import javax.annotation.Nullable;
+
+/**
+ * A match of a domain name against an entry of the watchlist.
+ */
+public class WatchMatch {
+
+    /**
+     * How a name matched, from the strongest to the weakest kind of match.
+     */
+    public enum Type {
+        // The name contains the watched label as it is.
+        EXACT,
+        // The name only contains the watched label after replacing look-alike characters.
+        HOMOGLYPH,
+        // The watched label is part of a longer label, like "graylog-login".
+        SUBSTRING,
+        // A label is within the maximum edit distance of the watched label.
+        EDIT_DISTANCE,
+        // The name contains one of the watched keywords.
+        KEYWORD
+    }
+
+    private final String entry;
+    private final Type type;
+    private final int distance;
+
+    public WatchMatch(String entry, Type type, int distance) {
+        this.entry = entry;
+        this.type = type;
+        this.distance = distance;
+    }
+
+    public String getEntry() {
+        return entry;
+    }
+
+    public Type getType() {
+        return type;
+    }
+
+    public int getDistance() {
+        return distance;
+    }
+
+    public boolean isStrongerThan(@Nullable WatchMatch other) {
+        return other == null
+                || type.ordinal() < other.type.ordinal()
+                || (type == other.type && distance < other.distance);
+    }
+
+}
@@ -0,0 +1,156 @@
+package org.graylog.plugins.certificatetransparency.loginput.ct.watch;
+
+import com.google.common.collect.Maps;
+
+import javax.annotation.Nullable;
+import java.util.Collection;
+import java.util.Locale;
+import java.util.Map;
+
+/**
+ * Matches domain names against a list of watched domains and keywords in a single pass per name.
+ *
+ * Every label of a name is compared with the watched labels (the first label of every watched domain) for exact
+ * matches, homoglyph matches and matches within a maximum edit distance. Edit distances are looked up in a BK-tree
+ * and substrings and keywords are found with an Aho-Corasick automaton, so the cost per name grows much slower than
+ * the watchlist.
+ */
+public class WatchlistMatcher {
+
+    // Shorter watched labels are only matched as whole labels, substrings of them would match almost everything.
+    private static final int MIN_SUBSTRING_LENGTH = 4;
+
+    // Keyed by the watched label as it was given and by its skeleton.
+    private final Map<String, String> entriesByExactLabel;
+    private final Map<String, String> entriesByLabel;
+    private final BkTree labels;
+    private final AhoCorasick substrings;
+    private final int maxDistance;
+    private final boolean empty;
+
+    public WatchlistMatcher(Collection<String> domains, Collection<String> keywords, int maxDistance) {
+        this.entriesByExactLabel = Maps.newHashMap();
+        this.entriesByLabel = Maps.newHashMap();
+        this.labels = new BkTree();
+        this.substrings = new AhoCorasick();
+        this.maxDistance = maxDistance;
+
+        for (String domain : domains) {
+            String entry = normalize(domain);
+            if (entry.isEmpty()) {
+                continue;
+            }
+
+            int dot = entry.indexOf('.');
+            String exactLabel = Homoglyphs.decodePunycode(dot < 0 ? entry : entry.substring(0, dot));
+            String label = Homoglyphs.skeleton(exactLabel);
+
+            entriesByExactLabel.putIfAbsent(exactLabel, domain.trim());
+            entriesByLabel.putIfAbsent(label, domain.trim());
+            labels.add(label);
+            if (label.length() >= MIN_SUBSTRING_LENGTH) {
+                substrings.add(label, WatchMatch.Type.SUBSTRING);
+            }
+        }
+
+        for (String keyword : keywords) {
+            String normalized = Homoglyphs.skeleton(normalize(keyword));
+            if (!normalized.isEmpty()) {
+                substrings.add(normalized, WatchMatch.Type.KEYWORD);
+            }
+        }
+
+        substrings.build();
+        this.empty = entriesByLabel.isEmpty() && keywords.stream().allMatch(k -> normalize(k).isEmpty());
+    }
+
+    public boolean isEmpty() {
+        return empty;
+    }
+
+    /**
+     * Returns the strongest match of the name, or null if it does not match the watchlist.
+     */
+    @Nullable
+    public WatchMatch match(String domain) {
+        if (empty) {
+            return null;
+        }
+
+        String unicode = Homoglyphs.decodePunycode(normalize(domain));
+        String skeleton = Homoglyphs.skeleton(unicode);
+
+        WatchMatch best = null;
+
+        // Compare every label but the last one. It's the TLD, and nobody squats on those.
+        int labelStart = 0;
+        int skeletonStart = 0;
+        while (true) {
+            int labelEnd = unicode.indexOf('.', labelStart);
+            int skeletonEnd = skeleton.indexOf('.', skeletonStart);
+            if (labelEnd < 0 || skeletonEnd < 0) {
+                break;
+            }
+
+            WatchMatch match = matchLabel(
+                    unicode.substring(labelStart, labelEnd),
+                    skeleton.substring(skeletonStart, skeletonEnd)
+            );
+            if (match != null && match.isStrongerThan(best)) {
+                best = match;
+            }
+
+            labelStart = labelEnd + 1;
+            skeletonStart = skeletonEnd + 1;
+        }
+
+        AhoCorasick.Node found = substrings.find(skeleton);
+        if (found != null) {
+            String entry = found.type == WatchMatch.Type.SUBSTRING ? entriesByLabel.get(found.word) : found.word;
+            WatchMatch match = new WatchMatch(entry, found.type, 0);
+            if (match.isStrongerThan(best)) {
+                best = match;
+            }
+        }
+
+        return best;
+    }
+
+    @Nullable
+    private WatchMatch matchLabel(String label, String skeleton) {
+        String entry = entriesByExactLabel.get(label);
+        if (entry != null) {
+            return new WatchMatch(entry, WatchMatch.Type.EXACT, 0);
+        }
+
+        entry = entriesByLabel.get(skeleton);
+        if (entry != null) {
+            return new WatchMatch(entry, WatchMatch.Type.HOMOGLYPH, 0);
+        }
+
+        if (maxDistance > 0) {
+            BkTree.Result closest = labels.closest(skeleton, maxDistance);
+
+            // Short labels are close to too many other labels. Allow fewer edits for them.
+            if (closest != null && closest.distance * 2 < closest.word.length()) {
+                return new WatchMatch(entriesByLabel.get(closest.word), WatchMatch.Type.EDIT_DISTANCE, closest.distance);
+            }
+        }
+
+        return null;
+    }
+
+    private static String normalize(String name) {
+        String normalized = name.trim().toLowerCase(Locale.ENGLISH);
+
+        if (normalized.startsWith("*.")) {
+            normalized = normalized.substring(2);
+        }
+        if (normalized.endsWith(".")) {
+            normalized = normalized.substring(0, normalized.length() - 1);
+        }
+
+        return normalized;
+    }
+
+}
@@ -0,0 +1,140 @@
+package org.graylog.plugins.certificatetransparency.loginput.ct.x509;
+
+import java.security.cert.CertificateParsingException;
+
+/**
+ * Minimal reader for DER encoded ASN.1 structures. It only knows about tags, lengths and contents and never copies
+ * the underlying bytes. Every constructed value is read through a new reader that is limited to its contents.
+ */
+class DerReader {
+
+    static final int TAG_INTEGER = 0x02;
+    static final int TAG_BIT_STRING = 0x03;
+    static final int TAG_OCTET_STRING = 0x04;
+    static final int TAG_OID = 0x06;
+    static final int TAG_SEQUENCE = 0x30;
+    static final int TAG_SET = 0x31;
+
+    private final byte[] data;
+    private final int end;
+    private int position;
+
+    // Offsets of the last value that was read.
+    private int valueStart;
+    private int contentStart;
+
+    DerReader(byte[] data) {
+        this(data, 0, data.length);
+    }
+
+    DerReader(byte[] data, int offset, int length) {
+        this.data = data;
+        this.position = offset;
+        this.end = offset + length;
+    }
+
+    byte[] data() {
+        return data;
+    }
+
+    boolean hasMore() {
+        return position < end;
+    }
+
+    int peekTag() throws CertificateParsingException {
+        if (!hasMore()) {
+            throw new CertificateParsingException("Unexpected end of DER data.");
+        }
+        return data[position] & 0xFF;
+    }
+
+    /**
+     * Reads the next value, which must have the given tag, and returns a reader for its contents.
+     */
+    DerReader read(int expectedTag) throws CertificateParsingException {
+        int length = next(expectedTag);
+        return new DerReader(data, contentStart, length);
+    }
+
+    /**
+     * Skips the next value, which must have the given tag.
+     */
+    void skip(int expectedTag) throws CertificateParsingException {
+        next(expectedTag);
+    }
+
+    /**
+     * Skips the next value if it has the given tag.
+     */
+    boolean skipIf(int tag) throws CertificateParsingException {
+        if (hasMore() && peekTag() == tag) {
+            next(tag);
+            return true;
+        }
+        return false;
+    }
+
+    // Start offset (including tag and length) of the last value that was read or skipped.
+    int lastValueStart() {
+        return valueStart;
+    }
+
+    // Offset of the contents of the last value that was read or skipped.
+    int lastContentStart() {
+        return contentStart;
+    }
+
+    // End offset of the last value that was read or skipped.
+    int lastValueEnd() {
+        return position;
+    }
+
+    private int next(int expectedTag) throws CertificateParsingException {
+        int tag = peekTag();
+        if (tag != expectedTag) {
+            throw new CertificateParsingException("Expected DER tag <" + expectedTag + "> but got <" + tag + ">.");
+        }
+        if ((tag & 0x1F) == 0x1F) {
+            throw new CertificateParsingException("Multi-byte DER tags are not supported.");
+        }
+
+        valueStart = position;
+        position++;
+
+        int length = readLength();
+        if (length > end - position) {
+            throw new CertificateParsingException("DER value exceeds its container.");
+        }
+
+        contentStart = position;
+        position += length;
+        return length;
+    }
+
+    private int readLength() throws CertificateParsingException {
+        if (!hasMore()) {
+            throw new CertificateParsingException("Unexpected end of DER data.");
+        }
+
+        int first = data[position++] & 0xFF;
+        if (first < 0x80) {
+            return first;
+        }
+
+        int octets = first & 0x7F;
+        if (octets == 0 || octets > 3) {
+            // Indefinite lengths are not allowed in DER, and nothing we parse is larger than 16 MB.
+            throw new CertificateParsingException("Unsupported DER length encoding.");
+        }
+        if (octets > end - position) {
+            throw new CertificateParsingException("Unexpected end of DER data.");
+        }
+
+        int length = 0;
+        for (int i = 0; i < octets; i++) {
+            length = (length << 8) | (data[position++] & 0xFF);
+        }
+        return length;
+    }
+
+}
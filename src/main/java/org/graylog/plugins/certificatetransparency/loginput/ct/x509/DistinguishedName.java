@@ -0,0 +1,46 @@
+package org.graylog.plugins.certificatetransparency.loginput.ct.x509;
+
+import javax.annotation.Nullable;
+
+/**
+ * The parts of an X.500 distinguished name that are written into messages. If an attribute appears more than once,
+ * the last one wins.
+ */
+public class DistinguishedName {
+
+    private final String commonName;
+    private final String country;
+    private final String organization;
+    private final String organizationalUnit;
+
+    public DistinguishedName(@Nullable String commonName,
+                             @Nullable String country,
+                             @Nullable String organization,
+                             @Nullable String organizationalUnit) {
+        this.commonName = commonName;
+        this.country = country;
+        this.organization = organization;
+        this.organizationalUnit = organizationalUnit;
+    }
+
+    @Nullable
+    public String getCommonName() {
+        return commonName;
+    }
+
+    @Nullable
+    public String getCountry() {
+        return country;
+    }
+
+    @Nullable
+    public String getOrganization() {
+        return organization;
+    }
+
+    @Nullable
+    public String getOrganizationalUnit() {
+        return organizationalUnit;
+    }
+
+}
@@ -0,0 +1,59 @@
+package org.graylog.plugins.certificatetransparency.loginput.ct.x509;
+
+import com.codahale.metrics.Gauge;
+import com.codahale.metrics.MetricRegistry;
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
+import com.google.common.hash.HashCode;
+import com.google.common.hash.HashFunction;
+import com.google.common.hash.Hashing;
+
+import javax.inject.Inject;
+import javax.inject.Singleton;
+import java.util.Map;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+
+/**
+ * Bounded LRU cache of the message fields of issuer names, keyed by a hash of their DER encoding. Almost all
+ * certificates in the logs share a few hundred issuers, so this saves parsing the same issuer over and over again.
+ *
+ * There is one cache per node, shared by all inputs, so its metrics are in the metrics of the node.
+ */
+@Singleton
+public class IssuerCache {
+
+    private static final int MAXIMUM_SIZE = 10000;
+
+    private final HashFunction hashFunction;
+    private final Cache<HashCode, Map<String, Object>> cache;
+
+    @Inject
+    public IssuerCache(MetricRegistry metricRegistry) {
+        this(MAXIMUM_SIZE);
+        registerMetrics(metricRegistry);
+    }
+
+    public IssuerCache(long maximumSize) {
+        this.hashFunction = Hashing.sha256();
+        this.cache = CacheBuilder.newBuilder()
+                .maximumSize(maximumSize)
+                .recordStats()
+                .build();
+    }
+
+    /**
+     * Returns the cached fields of the certificate's issuer or creates them with the given loader.
+     */
+    public Map<String, Object> get(TbsCertificate certificate, Callable<Map<String, Object>> loader) throws ExecutionException {
+        return cache.get(certificate.hashIssuer(hashFunction), loader);
+    }
+
+    private void registerMetrics(MetricRegistry registry) {
+        registry.register(MetricRegistry.name(IssuerCache.class, "hits"), (Gauge<Long>) () -> cache.stats().hitCount());
+        registry.register(MetricRegistry.name(IssuerCache.class, "misses"), (Gauge<Long>) () -> cache.stats().missCount());
+        registry.register(MetricRegistry.name(IssuerCache.class, "evictions"), (Gauge<Long>) () -> cache.stats().evictionCount());
+        registry.register(MetricRegistry.name(IssuerCache.class, "size"), (Gauge<Long>) cache::size);
+    }
+
+}
@@ -0,0 +1,83 @@
+package org.graylog.plugins.certificatetransparency.loginput.ct.x509;
+
+import javax.naming.InvalidNameException;
+import javax.naming.ldap.LdapName;
+import javax.naming.ldap.Rdn;
+import javax.security.auth.x500.X500Principal;
+import java.io.ByteArrayInputStream;
+import java.security.cert.CertificateException;
+import java.security.cert.CertificateFactory;
+import java.security.cert.CertificateParsingException;
+import java.security.cert.X509Certificate;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * Parses certificates with the JCA. This is much slower than {@link TbsCertificateParser} but understands everything
+ * the JDK understands, which makes it the fallback for certificates the fast path can't handle.
+ */
+public class JcaCertificateParser {
+
+    // GeneralName type of dNSName entries.
+    private static final int DNS_NAME = 2;
+
+    public static TbsCertificate parseCertificate(byte[] certificate) throws CertificateException {
+        X509Certificate x509 = (X509Certificate) CertificateFactory.getInstance("X.509")
+                .generateCertificate(new ByteArrayInputStream(certificate));
+
+        return new TbsCertificate(
+                x509.getIssuerX500Principal().getEncoded(),
+                parseName(x509.getIssuerX500Principal()),
+                parseName(x509.getSubjectX500Principal()),
+                parseDnsNames(x509)
+        );
+    }
+
+    private static List<String> parseDnsNames(X509Certificate certificate) throws CertificateParsingException {
+        Collection<List<?>> alternativeNames = certificate.getSubjectAlternativeNames();
+        if (alternativeNames == null) {
+            return Collections.emptyList();
+        }
+
+        List<String> dnsNames = new ArrayList<>();
+        for (List<?> name : alternativeNames) {
+            if (Integer.valueOf(DNS_NAME).equals(name.get(0))) {
+                dnsNames.add((String) name.get(1));
+            }
+        }
+        return dnsNames;
+    }
+
+    private static DistinguishedName parseName(X500Principal principal) throws CertificateParsingException {
+        String commonName = null;
+        String country = null;
+        String organization = null;
+        String organizationalUnit = null;
+
+        try {
+            for (Rdn rdn : new LdapName(principal.toString()).getRdns()) {
+                switch (rdn.getType()) {
+                    case "CN":
+                        commonName = rdn.getValue().toString();
+                        break;
+                    case "C":
+                        country = rdn.getValue().toString();
+                        break;
+                    case "O":
+                        organization = rdn.getValue().toString();
+                        break;
+                    case "OU":
+                        organizationalUnit = rdn.getValue().toString();
+                        break;
+                }
+            }
+        } catch (InvalidNameException e) {
+            throw new CertificateParsingException("Invalid distinguished name [" + principal + "].", e);
+        }
+
+        return new DistinguishedName(commonName, country, organization, organizationalUnit);
+    }
+
+}
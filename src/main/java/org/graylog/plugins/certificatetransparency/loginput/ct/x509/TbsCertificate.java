@@ -0,0 +1,63 @@
+package org.graylog.plugins.certificatetransparency.loginput.ct.x509;
+
+import com.google.common.hash.HashCode;
+import com.google.common.hash.HashFunction;
+
+import java.security.cert.CertificateParsingException;
+import java.util.List;
+
+/**
+ * The fields of a TBSCertificate that are written into messages.
+ *
+ * The issuer name is only parsed when it is asked for. Most certificates share a few hundred issuers, so callers
+ * usually look it up by {@link #hashIssuer(HashFunction) its hash} first.
+ */
+public class TbsCertificate {
+
+    private final byte[] encoded;
+    private final int issuerOffset;
+    private final int issuerLength;
+    private final DistinguishedName subject;
+    private final List<String> dnsNames;
+
+    private DistinguishedName issuer;
+
+    TbsCertificate(byte[] encoded, int issuerOffset, int issuerLength, DistinguishedName subject, List<String> dnsNames) {
+        this.encoded = encoded;
+        this.issuerOffset = issuerOffset;
+        this.issuerLength = issuerLength;
+        this.subject = subject;
+        this.dnsNames = dnsNames;
+    }
+
+    TbsCertificate(byte[] encodedIssuer, DistinguishedName issuer, DistinguishedName subject, List<String> dnsNames) {
+        this(encodedIssuer, 0, encodedIssuer.length, subject, dnsNames);
+        this.issuer = issuer;
+    }
+
+    /**
+     * Hashes the DER encoding of the issuer name.
+     */
+    public HashCode hashIssuer(HashFunction hashFunction) {
+        return hashFunction.hashBytes(encoded, issuerOffset, issuerLength);
+    }
+
+    public DistinguishedName getIssuer() throws CertificateParsingException {
+        if (issuer == null) {
+            issuer = TbsCertificateParser.parseName(new DerReader(encoded, issuerOffset, issuerLength).read(DerReader.TAG_SEQUENCE));
+        }
+        return issuer;
+    }
+
+    public DistinguishedName getSubject() {
+        return subject;
+    }
+
+    /**
+     * The dNSName entries of the subjectAltName extension, in the order of the certificate.
+     */
+    public List<String> getDnsNames() {
+        return dnsNames;
+    }
+
+}
@@ -0,0 +1,205 @@
+package org.graylog.plugins.certificatetransparency.loginput.ct.x509;
+
+import java.nio.charset.Charset;
+import java.nio.charset.StandardCharsets;
+import java.security.cert.CertificateParsingException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * Reads the issuer and subject names and the DNS names of the subjectAltName extension straight from the DER
+ * encoding of a certificate, without building a full {@link java.security.cert.X509Certificate} or going through
+ * string representations of the names.
+ *
+ * Anything this parser does not understand is reported as a {@link CertificateParsingException}, so callers can fall
+ * back to the JCA.
+ */
+public class TbsCertificateParser {
+
+    private static final int TAG_EXPLICIT_VERSION = 0xA0;
+    private static final int TAG_ISSUER_UNIQUE_ID = 0x81;
+    private static final int TAG_ISSUER_UNIQUE_ID_CONSTRUCTED = 0xA1;
+    private static final int TAG_SUBJECT_UNIQUE_ID = 0x82;
+    private static final int TAG_SUBJECT_UNIQUE_ID_CONSTRUCTED = 0xA2;
+    private static final int TAG_EXPLICIT_EXTENSIONS = 0xA3;
+    private static final int TAG_BOOLEAN = 0x01;
+    private static final int TAG_DNS_NAME = 0x82;
+
+    private static final int TAG_UTF8_STRING = 0x0C;
+    private static final int TAG_NUMERIC_STRING = 0x12;
+    private static final int TAG_PRINTABLE_STRING = 0x13;
+    private static final int TAG_TELETEX_STRING = 0x14;
+    private static final int TAG_IA5_STRING = 0x16;
+    private static final int TAG_VISIBLE_STRING = 0x1A;
+    private static final int TAG_UNIVERSAL_STRING = 0x1C;
+    private static final int TAG_BMP_STRING = 0x1E;
+
+    // Last byte of the 2.5.4.x attribute type OIDs.
+    private static final int ATTRIBUTE_COMMON_NAME = 3;
+    private static final int ATTRIBUTE_COUNTRY = 6;
+    private static final int ATTRIBUTE_ORGANIZATION = 10;
+    private static final int ATTRIBUTE_ORGANIZATIONAL_UNIT = 11;
+
+    private static final Charset UTF_32BE = Charset.forName("UTF-32BE");
+
+    /**
+     * Parses a DER encoded X.509 certificate.
+     */
+    public static TbsCertificate parseCertificate(byte[] certificate) throws CertificateParsingException {
+        DerReader outer = new DerReader(certificate);
+        DerReader fields = outer.read(DerReader.TAG_SEQUENCE);
+        return parseTbs(fields.read(DerReader.TAG_SEQUENCE));
+    }
+
+    /**
+     * Parses a DER encoded TBSCertificate, like the one of a precertificate.
+     */
+    public static TbsCertificate parseTbsCertificate(byte[] tbsCertificate) throws CertificateParsingException {
+        return parseTbs(new DerReader(tbsCertificate).read(DerReader.TAG_SEQUENCE));
+    }
+
+    private static TbsCertificate parseTbs(DerReader tbs) throws CertificateParsingException {
+        tbs.skipIf(TAG_EXPLICIT_VERSION);
+        tbs.skip(DerReader.TAG_INTEGER); // serialNumber
+        tbs.skip(DerReader.TAG_SEQUENCE); // signature
+
+        // The issuer is parsed later and only if it is not cached already.
+        tbs.skip(DerReader.TAG_SEQUENCE);
+        int issuerOffset = tbs.lastValueStart();
+        int issuerLength = tbs.lastValueEnd() - issuerOffset;
+
+        tbs.skip(DerReader.TAG_SEQUENCE); // validity
+
+        DistinguishedName subject = parseName(tbs.read(DerReader.TAG_SEQUENCE));
+
+        tbs.skip(DerReader.TAG_SEQUENCE); // subjectPublicKeyInfo
+        tbs.skipIf(TAG_ISSUER_UNIQUE_ID);
+        tbs.skipIf(TAG_ISSUER_UNIQUE_ID_CONSTRUCTED);
+        tbs.skipIf(TAG_SUBJECT_UNIQUE_ID);
+        tbs.skipIf(TAG_SUBJECT_UNIQUE_ID_CONSTRUCTED);
+
+        List<String> dnsNames = Collections.emptyList();
+        if (tbs.hasMore() && tbs.peekTag() == TAG_EXPLICIT_EXTENSIONS) {
+            dnsNames = parseDnsNames(tbs.read(TAG_EXPLICIT_EXTENSIONS).read(DerReader.TAG_SEQUENCE));
+        }
+
+        return new TbsCertificate(tbs.data(), issuerOffset, issuerLength, subject, dnsNames);
+    }
+
+    private static List<String> parseDnsNames(DerReader extensions) throws CertificateParsingException {
+        while (extensions.hasMore()) {
+            DerReader extension = extensions.read(DerReader.TAG_SEQUENCE);
+
+            extension.skip(DerReader.TAG_OID);
+            if (!isSubjectAltName(extension.data(), extension.lastContentStart(), extension.lastValueEnd())) {
+                continue;
+            }
+
+            extension.skipIf(TAG_BOOLEAN); // critical
+            DerReader generalNames = extension.read(DerReader.TAG_OCTET_STRING).read(DerReader.TAG_SEQUENCE);
+
+            List<String> dnsNames = new ArrayList<>();
+            while (generalNames.hasMore()) {
+                int tag = generalNames.peekTag();
+                generalNames.skip(tag);
+
+                if (tag == TAG_DNS_NAME) {
+                    int start = generalNames.lastContentStart();
+                    dnsNames.add(new String(generalNames.data(), start, generalNames.lastValueEnd() - start, StandardCharsets.ISO_8859_1));
+                }
+            }
+            return dnsNames;
+        }
+
+        return Collections.emptyList();
+    }
+
+    // 2.5.29.17
+    private static boolean isSubjectAltName(byte[] data, int start, int end) {
+        return end - start == 3 && data[start] == 0x55 && data[start + 1] == 0x1D && data[start + 2] == 0x11;
+    }
+
+    static DistinguishedName parseName(DerReader name) throws CertificateParsingException {
+        String commonName = null;
+        String country = null;
+        String organization = null;
+        String organizationalUnit = null;
+
+        while (name.hasMore()) {
+            DerReader rdn = name.read(DerReader.TAG_SET);
+
+            while (rdn.hasMore()) {
+                DerReader attribute = rdn.read(DerReader.TAG_SEQUENCE);
+
+                attribute.skip(DerReader.TAG_OID);
+                int type = attributeType(attribute.data(), attribute.lastContentStart(), attribute.lastValueEnd());
+                if (type < 0) {
+                    continue;
+                }
+
+                String value = readString(attribute);
+                switch (type) {
+                    case ATTRIBUTE_COMMON_NAME:
+                        commonName = value;
+                        break;
+                    case ATTRIBUTE_COUNTRY:
+                        country = value;
+                        break;
+                    case ATTRIBUTE_ORGANIZATION:
+                        organization = value;
+                        break;
+                    case ATTRIBUTE_ORGANIZATIONAL_UNIT:
+                        organizationalUnit = value;
+                        break;
+                }
+            }
+        }
+
+        return new DistinguishedName(commonName, country, organization, organizationalUnit);
+    }
+
+    // Returns the last arc of a 2.5.4.x OID for the attributes we are interested in, or -1.
+    private static int attributeType(byte[] data, int start, int end) {
+        if (end - start != 3 || data[start] != 0x55 || data[start + 1] != 0x04) {
+            return -1;
+        }
+
+        switch (data[start + 2]) {
+            case ATTRIBUTE_COMMON_NAME:
+            case ATTRIBUTE_COUNTRY:
+            case ATTRIBUTE_ORGANIZATION:
+            case ATTRIBUTE_ORGANIZATIONAL_UNIT:
+                return data[start + 2];
+            default:
+                return -1;
+        }
+    }
+
+    private static String readString(DerReader attribute) throws CertificateParsingException {
+        int tag = attribute.peekTag();
+        attribute.skip(tag);
+
+        byte[] data = attribute.data();
+        int start = attribute.lastContentStart();
+        int length = attribute.lastValueEnd() - start;
+
+        switch (tag) {
+            case TAG_UTF8_STRING:
+                return new String(data, start, length, StandardCharsets.UTF_8);
+            case TAG_NUMERIC_STRING:
+            case TAG_PRINTABLE_STRING:
+            case TAG_IA5_STRING:
+            case TAG_VISIBLE_STRING:
+            case TAG_TELETEX_STRING:
+                return new String(data, start, length, StandardCharsets.ISO_8859_1);
+            case TAG_BMP_STRING:
+                return new String(data, start, length, StandardCharsets.UTF_16BE);
+            case TAG_UNIVERSAL_STRING:
+                return new String(data, start, length, UTF_32BE);
+            default:
+                throw new CertificateParsingException("Unsupported directory string type <" + tag + ">.");
+        }
+    }
+
+}
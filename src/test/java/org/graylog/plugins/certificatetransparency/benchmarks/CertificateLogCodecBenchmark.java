@@ -0,0 +1,93 @@
+package org.graylog.plugins.certificatetransparency.benchmarks;
+
+import com.codahale.metrics.MetricRegistry;
+import com.google.common.collect.ImmutableMap;
+import org.graylog.plugins.certificatetransparency.loginput.CertificateEntryDecoder;
+import org.graylog.plugins.certificatetransparency.loginput.CertificateLogCodec;
+import org.graylog.plugins.certificatetransparency.loginput.DecoderMetrics;
+import org.graylog.plugins.certificatetransparency.loginput.InputDecoderMetrics;
+import org.graylog.plugins.certificatetransparency.loginput.ct.logs.CertificateLogEntry;
+import org.graylog.plugins.certificatetransparency.loginput.ct.logs.DecodedLogEntry;
+import org.graylog.plugins.certificatetransparency.loginput.ct.x509.IssuerCache;
+import org.graylog2.plugin.Message;
+import org.graylog2.plugin.configuration.Configuration;
+import org.graylog2.plugin.journal.RawMessage;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.profile.GCProfiler;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+import java.io.IOException;
+import java.util.Collection;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Decodes a single entry with the codec, from the raw entry and from an entry the transport decoded already. The
+ * issuer cache is warm after the first invocation, like it is on a running input.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class CertificateLogCodecBenchmark {
+
+    @Param({"x509", "precert", "many-sans"})
+    public String fixture;
+
+    @Param({"list", "fanout"})
+    public String sanMode;
+
+    private CertificateLogCodec codec;
+    private byte[] payload;
+    private byte[] decodedPayload;
+
+    @Setup
+    public void setUp() throws IOException {
+        Configuration configuration = new Configuration(ImmutableMap.<String, Object>of(
+                "san_mode", sanMode,
+                "watch_domains", "example.org, graylog.org, torch.sh",
+                "watch_keywords", "paypal, login"
+        ));
+        MetricRegistry metricRegistry = new MetricRegistry();
+        IssuerCache issuerCache = new IssuerCache(metricRegistry);
+
+        CertificateLogEntry entry = Fixtures.entries(fixture).get(0);
+        codec = new CertificateLogCodec(configuration, issuerCache, new InputDecoderMetrics());
+        payload = entry.toBytes();
+        decodedPayload = new DecodedLogEntry(
+                new CertificateEntryDecoder(configuration, issuerCache).decode(entry, new DecoderMetrics(metricRegistry))
+        ).toBytes();
+    }
+
+    @Benchmark
+    public Collection<Message> decode() {
+        return codec.decodeMessages(new RawMessage(payload));
+    }
+
+    @Benchmark
+    public Collection<Message> decodePreDecoded() {
+        return codec.decodeMessages(new RawMessage(decodedPayload));
+    }
+
+    public static void main(String[] args) throws RunnerException {
+        new Runner(new OptionsBuilder()
+                .include(CertificateLogCodecBenchmark.class.getSimpleName())
+                .addProfiler(GCProfiler.class)
+                .build()
+        ).run();
+    }
+
+}
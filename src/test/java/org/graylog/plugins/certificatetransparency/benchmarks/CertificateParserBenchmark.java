@@ -0,0 +1,68 @@
+package org.graylog.plugins.certificatetransparency.benchmarks;
+
+import com.google.common.io.BaseEncoding;
+import com.google.common.io.Resources;
+import org.graylog.plugins.certificatetransparency.loginput.ct.x509.JcaCertificateParser;
+import org.graylog.plugins.certificatetransparency.loginput.ct.x509.TbsCertificate;
+import org.graylog.plugins.certificatetransparency.loginput.ct.x509.TbsCertificateParser;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.profile.GCProfiler;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.security.cert.CertificateException;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Compares reading issuer and subject names with {@link TbsCertificateParser} against the JCA based path.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class CertificateParserBenchmark {
+
+    private byte[] certificate;
+
+    @Setup
+    public void setUp() throws IOException {
+        String pem = Resources.toString(
+                Resources.getResource("org/graylog/plugins/certificatetransparency/loginput/ct/x509/leaf.pem"),
+                StandardCharsets.US_ASCII
+        );
+        certificate = BaseEncoding.base64().decode(pem.replaceAll("-----[A-Z ]+-----", "").replaceAll("\\s", ""));
+    }
+
+    @Benchmark
+    public TbsCertificate der() throws CertificateException {
+        return TbsCertificateParser.parseCertificate(certificate);
+    }
+
+    @Benchmark
+    public TbsCertificate jca() throws CertificateException {
+        return JcaCertificateParser.parseCertificate(certificate);
+    }
+
+    public static void main(String[] args) throws RunnerException {
+        new Runner(new OptionsBuilder()
+                .include(CertificateParserBenchmark.class.getSimpleName())
+                .addProfiler(GCProfiler.class)
+                .build()
+        ).run();
+    }
+
+}
@@ -0,0 +1,60 @@
+package org.graylog.plugins.certificatetransparency.benchmarks;
+
+import org.graylog.plugins.certificatetransparency.loginput.ct.util.DomainSplitter;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+import org.openjdk.jmh.profile.GCProfiler;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Splits single names into message fields, into a new map and straight into a consumer like the codec does.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class DomainSplitterBenchmark {
+
+    @Param({"www.example.org", "shop1.example1.co.uk", "*.cdn.example.com", "a.b.c.d.e.example.s3.amazonaws.com", "xn--mnchen-3ya.de"})
+    public String domain;
+
+    @Benchmark
+    public Map<String, Object> splitToMap() {
+        return DomainSplitter.split(domain, "subject");
+    }
+
+    @Benchmark
+    public void splitToConsumer(Blackhole blackhole) {
+        DomainSplitter.split(domain, "subject", (name, value) -> blackhole.consume(value));
+    }
+
+    @Benchmark
+    public String registeredDomain() {
+        return DomainSplitter.registeredDomain(domain);
+    }
+
+    public static void main(String[] args) throws RunnerException {
+        new Runner(new OptionsBuilder()
+                .include(DomainSplitterBenchmark.class.getSimpleName())
+                .addProfiler(GCProfiler.class)
+                .build()
+        ).run();
+    }
+
+}
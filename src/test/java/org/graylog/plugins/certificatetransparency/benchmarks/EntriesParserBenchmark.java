@@ -0,0 +1,68 @@
+package org.graylog.plugins.certificatetransparency.benchmarks;
+
+import com.fasterxml.jackson.core.JsonFactory;
+import org.graylog.plugins.certificatetransparency.loginput.ct.logs.CertificateLogEntry;
+import org.graylog.plugins.certificatetransparency.loginput.ct.logs.EntriesParser;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+import org.openjdk.jmh.profile.GCProfiler;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Reads a get-entries response of 64 entries the way the log reader does. Every operation is one response.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class EntriesParserBenchmark {
+
+    private EntriesParser parser;
+    private byte[] response;
+
+    @Setup
+    public void setUp() throws IOException {
+        parser = new EntriesParser(new JsonFactory());
+        response = Fixtures.response("batch");
+    }
+
+    @Benchmark
+    public int parse(Blackhole blackhole) throws IOException {
+        return parser.parse(new ByteArrayInputStream(response), Integer.MAX_VALUE, (offset, leafInput, extraData) -> {
+            blackhole.consume(leafInput);
+            blackhole.consume(extraData);
+        });
+    }
+
+    @Benchmark
+    public int parseToPayloads(Blackhole blackhole) throws IOException {
+        return parser.parse(new ByteArrayInputStream(response), Integer.MAX_VALUE, (offset, leafInput, extraData) ->
+                blackhole.consume(new CertificateLogEntry(Fixtures.LOG_URL, offset, leafInput, extraData).toBytes()));
+    }
+
+    public static void main(String[] args) throws RunnerException {
+        new Runner(new OptionsBuilder()
+                .include(EntriesParserBenchmark.class.getSimpleName())
+                .addProfiler(GCProfiler.class)
+                .build()
+        ).run();
+    }
+
+}
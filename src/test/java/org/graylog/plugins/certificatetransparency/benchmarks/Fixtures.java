@@ -0,0 +1,44 @@
+package org.graylog.plugins.certificatetransparency.benchmarks;
+
+import com.fasterxml.jackson.core.JsonFactory;
+import com.google.common.io.Resources;
+import org.graylog.plugins.certificatetransparency.loginput.ct.logs.CertificateLogEntry;
+import org.graylog.plugins.certificatetransparency.loginput.ct.logs.EntriesParser;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * get-entries responses the benchmarks work on, in {@code src/test/resources}:
+ *
+ * <ul>
+ *     <li>{@code x509}: a certificate with a handful of names</li>
+ *     <li>{@code precert}: a precertificate</li>
+ *     <li>{@code many-sans}: a certificate with 121 names</li>
+ *     <li>{@code batch}: 64 entries of the above, like a full response of most logs</li>
+ * </ul>
+ */
+final class Fixtures {
+
+    static final String LOG_URL = "ct.example.org/log/";
+
+    private Fixtures() {
+    }
+
+    static byte[] response(String fixture) throws IOException {
+        return Resources.toByteArray(Resources.getResource(Fixtures.class, "get-entries-" + fixture + ".json"));
+    }
+
+    static List<CertificateLogEntry> entries(String fixture) throws IOException {
+        List<CertificateLogEntry> entries = new ArrayList<>();
+        new EntriesParser(new JsonFactory()).parse(
+                new ByteArrayInputStream(response(fixture)),
+                Integer.MAX_VALUE,
+                (offset, leafInput, extraData) -> entries.add(new CertificateLogEntry(LOG_URL, offset, leafInput, extraData))
+        );
+        return entries;
+    }
+
+}
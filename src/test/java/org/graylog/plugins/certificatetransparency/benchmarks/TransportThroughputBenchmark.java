@@ -0,0 +1,205 @@
+package org.graylog.plugins.certificatetransparency.benchmarks;
+
+import com.codahale.metrics.Gauge;
+import com.codahale.metrics.MetricRegistry;
+import com.google.common.collect.ImmutableMap;
+import com.google.common.eventbus.EventBus;
+import okhttp3.OkHttpClient;
+import org.graylog.plugins.certificatetransparency.loginput.CertificateLogCodec;
+import org.graylog.plugins.certificatetransparency.loginput.CertificateLogTransport;
+import org.graylog.plugins.certificatetransparency.loginput.InputDecoderMetrics;
+import org.graylog.plugins.certificatetransparency.loginput.ct.testing.FakeCtLog;
+import org.graylog.plugins.certificatetransparency.loginput.ct.x509.IssuerCache;
+import org.graylog2.database.MongoConnection;
+import org.graylog2.plugin.LocalMetricRegistry;
+import org.graylog2.plugin.Message;
+import org.graylog2.plugin.ServerStatus;
+import org.graylog2.plugin.cluster.ClusterConfigService;
+import org.graylog2.plugin.configuration.Configuration;
+import org.graylog2.plugin.inputs.MessageInput;
+import org.graylog2.plugin.journal.RawMessage;
+import org.openjdk.jmh.annotations.AuxCounters;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.profile.GCProfiler;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.TimeUnit;
+
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.RETURNS_DEEP_STUBS;
+import static org.mockito.Mockito.doAnswer;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+/**
+ * Reads two growing fake logs through the whole transport and codec of a running input: log list, scheduler, log
+ * readers, hand-off queue and codec. Every operation is a message that came out of the codec, so the score is the
+ * number of messages per second the input sustains.
+ *
+ * Each log grows by {@code entriesPerSecond}. While the score keeps up with both logs the lag stays flat, below that
+ * it grows. How much it grew and the get-entries requests it took are reported as secondary results, see
+ * {@link LagGrowth}.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 5)
+@Measurement(iterations = 5, time = 5)
+@Fork(1)
+public class TransportThroughputBenchmark {
+
+    @Param({"5000", "50000"})
+    public int entriesPerSecond;
+
+    @Param({"0", "50"})
+    public int latencyMillis;
+
+    @Param({"0", "4"})
+    public int decoderThreads;
+
+    private final BlockingQueue<Message> messages = new ArrayBlockingQueue<>(10000);
+
+    private FakeCtLog fake;
+    private LocalMetricRegistry localRegistry;
+    private CertificateLogTransport transport;
+
+    @Setup
+    public void setUp() throws Exception {
+        fake = FakeCtLog.start()
+                .addLog("alpha", "Alpha Operator", 0, entriesPerSecond)
+                .addLog("beta", "Beta Operator", 0, entriesPerSecond)
+                .withLatency(latencyMillis);
+
+        // The fake logs repeat their entries, so duplicates can't be skipped.
+        Configuration configuration = new Configuration(ImmutableMap.<String, Object>builder()
+                .put("log_list_url", fake.logListUrl())
+                .put("poll_interval", 1)
+                .put("operator_rate", 1000)
+                .put("decoder_threads", decoderThreads)
+                .put("dedup_enabled", false)
+                .build());
+        MetricRegistry metricRegistry = new MetricRegistry();
+        IssuerCache issuerCache = new IssuerCache(metricRegistry);
+        InputDecoderMetrics decoderMetrics = new InputDecoderMetrics();
+        CertificateLogCodec codec = new CertificateLogCodec(configuration, issuerCache, decoderMetrics);
+
+        MessageInput input = mock(MessageInput.class);
+        when(input.getId()).thenReturn("benchmark");
+        doAnswer(invocation -> {
+            for (Message message : codec.decodeMessages(invocation.getArgument(0))) {
+                messages.put(message);
+            }
+            return null;
+        }).when(input).processRawMessage(any(RawMessage.class));
+
+        // Checkpoints are written nowhere, every run starts at the current size of the logs.
+        localRegistry = new LocalMetricRegistry();
+        transport = new CertificateLogTransport(
+                configuration,
+                mock(ClusterConfigService.class),
+                mock(MongoConnection.class, RETURNS_DEEP_STUBS),
+                new EventBus(),
+                FakeCtLog.objectMapper(),
+                mock(ServerStatus.class),
+                new OkHttpClient(),
+                null,
+                localRegistry,
+                issuerCache,
+                decoderMetrics
+        );
+        transport.launch(input);
+    }
+
+    @TearDown
+    public void tearDown() throws Exception {
+        transport.stop();
+        fake.close();
+    }
+
+    @Benchmark
+    public Message message(LagGrowth growth) throws InterruptedException {
+        Message message = messages.poll(10, TimeUnit.SECONDS);
+        if (message == null) {
+            throw new IllegalStateException("No message from the transport within 10 seconds.");
+        }
+
+        // The gauges go over all readers, so they are not read for every message.
+        if (growth.messages++ % LagGrowth.SAMPLE_MESSAGES == 0) {
+            growth.sample(gauge("lag_entries"), gauge("lag_seconds"), fake.requests("get_entries"));
+        }
+        return message;
+    }
+
+    private long gauge(String name) {
+        Gauge<?> gauge = localRegistry.getGauges().get(name);
+        return gauge == null ? 0 : ((Number) gauge.getValue()).longValue();
+    }
+
+    /**
+     * How much the lag grew within an iteration, and the get-entries requests sent meanwhile. Reported as growth
+     * rather than the lag itself, so the totals JMH sums over all iterations still mean something.
+     */
+    @State(Scope.Thread)
+    @AuxCounters(AuxCounters.Type.EVENTS)
+    public static class LagGrowth {
+
+        private static final int SAMPLE_MESSAGES = 1000;
+
+        public long lagEntries;
+        public long lagSeconds;
+        public long getEntries;
+
+        private long messages;
+        private boolean started;
+        private long startLagEntries;
+        private long startLagSeconds;
+        private long startGetEntries;
+
+        @Setup(Level.Iteration)
+        public void reset() {
+            lagEntries = 0;
+            lagSeconds = 0;
+            getEntries = 0;
+            messages = 0;
+            started = false;
+        }
+
+        private void sample(long currentLagEntries, long currentLagSeconds, long currentGetEntries) {
+            if (!started) {
+                started = true;
+                startLagEntries = currentLagEntries;
+                startLagSeconds = currentLagSeconds;
+                startGetEntries = currentGetEntries;
+            }
+            lagEntries = currentLagEntries - startLagEntries;
+            lagSeconds = currentLagSeconds - startLagSeconds;
+            getEntries = currentGetEntries - startGetEntries;
+        }
+
+    }
+
+    public static void main(String[] args) throws RunnerException {
+        new Runner(new OptionsBuilder()
+                .include(TransportThroughputBenchmark.class.getSimpleName())
+                .addProfiler(GCProfiler.class)
+                .build()
+        ).run();
+    }
+
+}
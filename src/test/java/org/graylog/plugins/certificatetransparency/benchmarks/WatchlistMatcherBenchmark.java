@@ -0,0 +1,74 @@
+package org.graylog.plugins.certificatetransparency.benchmarks;
+
+import com.google.common.collect.ImmutableList;
+import org.graylog.plugins.certificatetransparency.loginput.ct.watch.WatchMatch;
+import org.graylog.plugins.certificatetransparency.loginput.ct.watch.WatchlistMatcher;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.profile.GCProfiler;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Matches single names against a watchlist of 20 domains and a few keywords. Most names in the logs don't match
+ * anything, so the miss is the number that counts.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class WatchlistMatcherBenchmark {
+
+    @Param({
+            // No match.
+            "www.unrelated-shop.net",
+            // Edit distance.
+            "www.exampel.org",
+            // Homoglyph.
+            "xn--exmple-cua.org",
+            // Keyword.
+            "secure-paypal-login.com"
+    })
+    public String domain;
+
+    private WatchlistMatcher matcher;
+
+    @Setup
+    public void setUp() {
+        ImmutableList.Builder<String> domains = ImmutableList.builder();
+        domains.add("example.org", "graylog.org", "torch.sh");
+        for (int i = 0; i < 17; i++) {
+            domains.add("company" + i + ".com");
+        }
+
+        matcher = new WatchlistMatcher(domains.build(), ImmutableList.of("paypal", "appleid", "login"), 2);
+    }
+
+    @Benchmark
+    public WatchMatch match() {
+        return matcher.match(domain);
+    }
+
+    public static void main(String[] args) throws RunnerException {
+        new Runner(new OptionsBuilder()
+                .include(WatchlistMatcherBenchmark.class.getSimpleName())
+                .addProfiler(GCProfiler.class)
+                .build()
+        ).run();
+    }
+
+}
@@ -0,0 +1,94 @@
+package org.graylog.plugins.certificatetransparency.loginput;
+
+import com.codahale.metrics.MetricRegistry;
+import com.fasterxml.jackson.core.JsonFactory;
+import com.google.common.collect.ImmutableMap;
+import com.google.common.io.Resources;
+import org.graylog.plugins.certificatetransparency.loginput.ct.logs.CertificateLogEntry;
+import org.graylog.plugins.certificatetransparency.loginput.ct.logs.DecodedLogEntry;
+import org.graylog.plugins.certificatetransparency.loginput.ct.logs.EntriesParser;
+import org.graylog.plugins.certificatetransparency.loginput.ct.x509.IssuerCache;
+import org.graylog2.plugin.Message;
+import org.graylog2.plugin.configuration.Configuration;
+import org.graylog2.plugin.journal.RawMessage;
+import org.junit.Test;
+
+import java.io.ByteArrayInputStream;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotNull;
+
+public class CertificateLogCodecTest {
+
+    // A get-entries response with certificates, precertificates and one with many names.
+    private static final String BATCH = "/org/graylog/plugins/certificatetransparency/benchmarks/get-entries-batch.json";
+
+    @Test
+    public void decodedEntriesGiveSameMessagesAsRawEntries() throws Exception {
+        assertSameMessages("list");
+    }
+
+    @Test
+    public void decodedEntriesGiveSameMessagesAsRawEntriesInFanOut() throws Exception {
+        assertSameMessages("fanout");
+    }
+
+    private void assertSameMessages(String sanMode) throws Exception {
+        Configuration configuration = new Configuration(ImmutableMap.<String, Object>of(
+                "san_mode", sanMode,
+                "watch_domains", "example.org, graylog.org",
+                "watch_keywords", "login"
+        ));
+        IssuerCache issuerCache = new IssuerCache(new MetricRegistry());
+        CertificateLogCodec codec = new CertificateLogCodec(configuration, issuerCache, new InputDecoderMetrics());
+        CertificateEntryDecoder decoder = new CertificateEntryDecoder(configuration, issuerCache);
+        DecoderMetrics metrics = new DecoderMetrics(new MetricRegistry());
+
+        List<CertificateLogEntry> entries = new ArrayList<>();
+        new EntriesParser(new JsonFactory()).parse(
+                new ByteArrayInputStream(Resources.toByteArray(Resources.getResource(CertificateLogCodecTest.class, BATCH))),
+                Integer.MAX_VALUE,
+                (offset, leafInput, extraData) -> entries.add(new CertificateLogEntry("ct.example.org/log/", offset, leafInput, extraData))
+        );
+        assertFalse(entries.isEmpty());
+
+        for (CertificateLogEntry entry : entries) {
+            Collection<Message> fromCodec = codec.decodeMessages(new RawMessage(entry.toBytes()));
+            Collection<Message> fromTransport = codec.decodeMessages(new RawMessage(
+                    new DecodedLogEntry(decoder.decode(entry, metrics)).toBytes()
+            ));
+            assertNotNull(fromCodec);
+            assertNotNull(fromTransport);
+            assertEquals(fromCodec.size(), fromTransport.size());
+
+            Iterator<Message> transportMessages = fromTransport.iterator();
+            for (Message expected : fromCodec) {
+                Message actual = transportMessages.next();
+                assertEquals(expected.getMessage(), actual.getMessage());
+
+                Map<String, Object> expectedFields = fields(expected);
+                Map<String, Object> actualFields = fields(actual);
+                assertEquals(expectedFields, actualFields);
+                for (Map.Entry<String, Object> field : expectedFields.entrySet()) {
+                    assertEquals(field.getKey(), field.getValue().getClass(), actualFields.get(field.getKey()).getClass());
+                }
+            }
+        }
+    }
+
+    // Without the fields every message gets a new value of.
+    private static Map<String, Object> fields(Message message) {
+        Map<String, Object> fields = new HashMap<>(message.getFields());
+        fields.remove(Message.FIELD_ID);
+        fields.remove(Message.FIELD_TIMESTAMP);
+        return fields;
+    }
+
+}
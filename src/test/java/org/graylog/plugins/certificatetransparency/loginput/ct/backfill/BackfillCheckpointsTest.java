@@ -0,0 +1,88 @@
+package org.graylog.plugins.certificatetransparency.loginput.ct.backfill;
+
+import org.graylog.plugins.certificatetransparency.loginput.ct.logs.checkpoints.CheckpointStorage;
+import org.graylog.plugins.certificatetransparency.loginput.ct.logs.checkpoints.CheckpointStore;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+public class BackfillCheckpointsTest {
+
+    private static class MemoryStorage implements CheckpointStorage<List<BackfillRange>> {
+        private final Map<String, List<BackfillRange>> checkpoints = new HashMap<>();
+        private final List<String> writes = new ArrayList<>();
+
+        @Override
+        public Map<String, List<BackfillRange>> load(String inputId, Collection<String> logUrls) {
+            Map<String, List<BackfillRange>> loaded = new HashMap<>();
+            for (String logUrl : logUrls) {
+                if (checkpoints.containsKey(logUrl)) {
+                    loaded.put(logUrl, checkpoints.get(logUrl));
+                }
+            }
+            return loaded;
+        }
+
+        @Override
+        public Map<String, List<BackfillRange>> loadAll(String inputId) {
+            throw new UnsupportedOperationException();
+        }
+
+        @Override
+        public void write(String inputId, String logUrl, List<BackfillRange> checkpoint) {
+            checkpoints.put(logUrl, checkpoint);
+            writes.add(logUrl);
+        }
+    }
+
+    @Test
+    public void writesRangesOfLogInBatches() {
+        MemoryStorage storage = new MemoryStorage();
+        BackfillCheckpoints checkpoints = new BackfillCheckpoints(new CheckpointStore<>(storage, "input", 1000, Runnable::run));
+        List<BackfillRange> plan = BackfillRange.partition("input", "log", "index:0", 0, 250, 100);
+
+        checkpoints.acquire("log");
+        checkpoints.plan("log", plan);
+        checkpoints.update(plan.get(1), 150);
+        checkpoints.update(plan.get(1), 160);
+        checkpoints.update(plan.get(2), 210);
+        assertTrue(storage.writes.isEmpty());
+
+        checkpoints.flush();
+        assertEquals(1, storage.writes.size());
+        assertEquals(160, storage.checkpoints.get("log").get(1).position());
+        assertEquals(210, storage.checkpoints.get("log").get(2).position());
+
+        // Another node continues from there.
+        BackfillCheckpoints other = new BackfillCheckpoints(new CheckpointStore<>(storage, "input", 1000, Runnable::run));
+        other.acquire("log");
+        assertEquals(storage.checkpoints.get("log"), other.get("log"));
+    }
+
+    @Test
+    public void writesLastPositionsOfReleasedLog() {
+        MemoryStorage storage = new MemoryStorage();
+        BackfillCheckpoints checkpoints = new BackfillCheckpoints(new CheckpointStore<>(storage, "input", 1000, Runnable::run));
+        List<BackfillRange> plan = BackfillRange.partition("input", "log", "index:0", 0, 100, 100);
+
+        checkpoints.acquire("log");
+        checkpoints.plan("log", plan);
+        checkpoints.update(plan.get(0), 42);
+        checkpoints.release("log");
+        assertEquals(42, storage.checkpoints.get("log").get(0).position());
+
+        // Entries that were still queued don't move it anymore.
+        checkpoints.update(plan.get(0), 43);
+        checkpoints.flush();
+        assertEquals(42, storage.checkpoints.get("log").get(0).position());
+        assertTrue(checkpoints.get("log").isEmpty());
+    }
+
+}
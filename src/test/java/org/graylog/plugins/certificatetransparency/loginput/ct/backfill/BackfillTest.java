@@ -0,0 +1,44 @@
+package org.graylog.plugins.certificatetransparency.loginput.ct.backfill;
+
+import org.junit.Test;
+
+import java.util.List;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+public class BackfillTest {
+
+    @Test
+    public void findsFirstIndexAtTimestamp() throws Exception {
+        // One entry every ten milliseconds.
+        Backfill.IndexTimestamps timestamps = index -> 1000 + index * 10;
+
+        assertEquals(0, Backfill.firstIndexAt(1000, 0, timestamps));
+        assertEquals(50, Backfill.firstIndexAt(1000, 1500, timestamps));
+        assertEquals(51, Backfill.firstIndexAt(1000, 1505, timestamps));
+        assertEquals(1000, Backfill.firstIndexAt(1000, 999999, timestamps));
+    }
+
+    @Test
+    public void findsFirstIndexInEmptyLog() throws Exception {
+        assertEquals(0, Backfill.firstIndexAt(0, 1000, index -> {
+            throw new AssertionError("Empty log must not be asked for entries.");
+        }));
+    }
+
+    @Test
+    public void partitionsRange() {
+        List<BackfillRange> ranges = BackfillRange.partition("input", "log", "index:5", 5, 250, 100);
+
+        assertEquals(3, ranges.size());
+        assertEquals(5, ranges.get(0).start());
+        assertEquals(105, ranges.get(0).end());
+        assertEquals(5, ranges.get(0).position());
+        assertEquals(205, ranges.get(2).start());
+        assertEquals(250, ranges.get(2).end());
+        assertEquals(45, ranges.get(2).remaining());
+        assertTrue(BackfillRange.partition("input", "log", "index:5", 250, 250, 100).isEmpty());
+    }
+
+}
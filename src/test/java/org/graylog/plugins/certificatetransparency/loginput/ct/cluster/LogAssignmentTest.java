@@ -0,0 +1,87 @@
+package org.graylog.plugins.certificatetransparency.loginput.ct.cluster;
+
+import com.google.common.collect.ImmutableList;
+import com.google.common.collect.ImmutableMap;
+import com.google.common.collect.ImmutableSet;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Set;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+public class LogAssignmentTest {
+
+    private static final List<String> NODES = ImmutableList.of("node-a", "node-b", "node-c");
+
+    private static List<String> logs(int count) {
+        List<String> logs = new ArrayList<>();
+        for (int i = 0; i < count; i++) {
+            logs.add("ct.example.com/log" + i);
+        }
+        return logs;
+    }
+
+    @Test
+    public void everyLogHasOneOwnerOnEveryNode() {
+        for (String log : logs(100)) {
+            String owner = LogAssignment.owner(log, NODES);
+            assertEquals(owner, LogAssignment.owner(log, ImmutableList.of("node-c", "node-a", "node-b")));
+            assertTrue(NODES.contains(owner));
+        }
+    }
+
+    @Test
+    public void onlyMovesLogsOfNodeThatLeft() {
+        List<String> remaining = ImmutableList.of("node-a", "node-c");
+        for (String log : logs(200)) {
+            String before = LogAssignment.owner(log, NODES);
+            String after = LogAssignment.owner(log, remaining);
+            if (!before.equals("node-b")) {
+                assertEquals(before, after);
+            }
+        }
+    }
+
+    @Test
+    public void spreadsLogsOverNodes() {
+        List<String> logs = logs(300);
+        for (String node : NODES) {
+            long owned = logs.stream().filter(log -> node.equals(LogAssignment.owner(log, NODES))).count();
+            assertTrue(node + " owns " + owned, owned > 60 && owned < 140);
+        }
+    }
+
+    @Test
+    public void waitsForOtherNodeToHandOff() {
+        List<String> logs = logs(50);
+        String log = logs.stream().filter(l -> "node-a".equals(LogAssignment.owner(l, NODES))).findFirst().get();
+
+        Set<String> assigned = LogAssignment.assign(logs, "node-a", Collections.emptySet(), ImmutableMap.of(
+                "node-b", ImmutableList.of(log),
+                "node-c", ImmutableList.of()
+        ));
+        assertFalse(assigned.contains(log));
+
+        // Held by both after they started at the same time. Stays with the owner.
+        assigned = LogAssignment.assign(logs, "node-a", ImmutableSet.of(log), ImmutableMap.of(
+                "node-b", ImmutableList.of(log),
+                "node-c", ImmutableList.of()
+        ));
+        assertTrue(assigned.contains(log));
+
+        assigned = LogAssignment.assign(logs, "node-a", Collections.emptySet(), ImmutableMap.of(
+                "node-b", ImmutableList.of(),
+                "node-c", ImmutableList.of()
+        ));
+        assertTrue(assigned.contains(log));
+        for (String l : assigned) {
+            assertEquals("node-a", LogAssignment.owner(l, NODES));
+        }
+    }
+
+}
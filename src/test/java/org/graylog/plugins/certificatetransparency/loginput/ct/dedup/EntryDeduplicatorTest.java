@@ -0,0 +1,88 @@
+package org.graylog.plugins.certificatetransparency.loginput.ct.dedup;
+
+import com.codahale.metrics.MetricRegistry;
+import com.google.common.base.Ticker;
+import org.junit.Test;
+
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+public class EntryDeduplicatorTest {
+
+    private static final String LOG_A = "ct.example.org/a/";
+    private static final String LOG_B = "ct.example.org/b/";
+
+    @Test
+    public void sameLeafInOtherLogIsDuplicate() {
+        EntryDeduplicator deduplicator = deduplicator(1000, new ManualTicker());
+
+        assertTrue(deduplicator.firstSighting(LOG_A, leaf(1L, 42)));
+        // Same certificate, but logged at another time by another log.
+        assertFalse(deduplicator.firstSighting(LOG_B, leaf(2L, 42)));
+        assertTrue(deduplicator.firstSighting(LOG_B, leaf(2L, 43)));
+    }
+
+    @Test
+    public void forgetsAfterTwoWindows() {
+        ManualTicker ticker = new ManualTicker();
+        EntryDeduplicator deduplicator = deduplicator(1000, ticker);
+
+        assertTrue(deduplicator.firstSighting(LOG_A, leaf(1L, 42)));
+
+        ticker.advance(30, TimeUnit.MINUTES);
+        assertFalse(deduplicator.firstSighting(LOG_B, leaf(2L, 42)));
+
+        // Still remembered by the previous generation.
+        ticker.advance(40, TimeUnit.MINUTES);
+        assertFalse(deduplicator.firstSighting(LOG_B, leaf(3L, 42)));
+
+        ticker.advance(70, TimeUnit.MINUTES);
+        assertTrue(deduplicator.firstSighting(LOG_A, leaf(4L, 42)));
+    }
+
+    @Test
+    public void rotatesWhenFull() {
+        EntryDeduplicator deduplicator = deduplicator(10, new ManualTicker());
+
+        for (int i = 0; i < 10; i++) {
+            assertTrue(deduplicator.firstSighting(LOG_A, leaf(1L, i)));
+        }
+        // The first generation is still checked after the rotation.
+        assertFalse(deduplicator.firstSighting(LOG_A, leaf(1L, 0)));
+
+        for (int i = 10; i < 20; i++) {
+            assertTrue(deduplicator.firstSighting(LOG_A, leaf(1L, i)));
+        }
+        assertTrue(deduplicator.firstSighting(LOG_A, leaf(1L, 0)));
+    }
+
+    private static EntryDeduplicator deduplicator(long capacity, Ticker ticker) {
+        return new EntryDeduplicator(new MetricRegistry(), capacity, 0.0001, 60, TimeUnit.MINUTES, true, ticker);
+    }
+
+    private static byte[] leaf(long timestamp, int certificate) {
+        byte[] leaf = new byte[16];
+        for (int i = 0; i < 8; i++) {
+            leaf[2 + i] = (byte) (timestamp >>> (56 - 8 * i));
+        }
+        leaf[12] = (byte) (certificate >>> 8);
+        leaf[13] = (byte) certificate;
+        return leaf;
+    }
+
+    private static class ManualTicker extends Ticker {
+        private long nanos = 0;
+
+        void advance(long duration, TimeUnit unit) {
+            nanos += unit.toNanos(duration);
+        }
+
+        @Override
+        public long read() {
+            return nanos;
+        }
+    }
+
+}
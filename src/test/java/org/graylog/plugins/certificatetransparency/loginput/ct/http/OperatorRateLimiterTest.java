@@ -0,0 +1,106 @@
+package org.graylog.plugins.certificatetransparency.loginput.ct.http;
+
+import com.google.common.base.Ticker;
+import org.junit.Test;
+
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+public class OperatorRateLimiterTest {
+
+    private static class FakeTicker extends Ticker {
+        private long nanos = 0;
+
+        @Override
+        public long read() {
+            return nanos;
+        }
+
+        void advance(long millis) {
+            nanos += TimeUnit.MILLISECONDS.toNanos(millis);
+        }
+    }
+
+    @Test
+    public void halvesOnThrottlingAndRecovers() {
+        FakeTicker ticker = new FakeTicker();
+        OperatorRateLimiter limiter = new OperatorRateLimiter(20, 8, ticker);
+
+        limiter.throttled(0);
+        assertEquals(10.0, limiter.getRate(), 0.001);
+        assertEquals(4, limiter.getConcurrency());
+
+        for (int i = 0; i < 10; i++) {
+            limiter.success();
+        }
+        assertEquals(20.0, limiter.getRate(), 0.001);
+        // One more after a window of 4, another after a window of 5.
+        assertEquals(6, limiter.getConcurrency());
+
+        for (int i = 0; i < 100; i++) {
+            limiter.success();
+        }
+        assertEquals(20.0, limiter.getRate(), 0.001);
+        assertEquals(8, limiter.getConcurrency());
+    }
+
+    @Test
+    public void decreasesOncePerHoldoff() {
+        FakeTicker ticker = new FakeTicker();
+        OperatorRateLimiter limiter = new OperatorRateLimiter(20, 8, ticker);
+
+        limiter.throttled(0);
+        limiter.throttled(0);
+        limiter.throttled(0);
+        assertEquals(10.0, limiter.getRate(), 0.001);
+        assertEquals(4, limiter.getConcurrency());
+
+        ticker.advance(1000);
+        limiter.throttled(0);
+        assertEquals(5.0, limiter.getRate(), 0.001);
+        assertEquals(2, limiter.getConcurrency());
+    }
+
+    @Test
+    public void pausesForRetryAfter() {
+        FakeTicker ticker = new FakeTicker();
+        OperatorRateLimiter limiter = new OperatorRateLimiter(20, 8, ticker);
+        assertEquals(0, limiter.getPauseNanos());
+
+        limiter.throttled(5000);
+        assertEquals(TimeUnit.SECONDS.toNanos(5), limiter.getPauseNanos());
+
+        // A shorter Retry-After doesn't cut the pause short.
+        ticker.advance(2000);
+        limiter.throttled(1000);
+        assertEquals(TimeUnit.SECONDS.toNanos(3), limiter.getPauseNanos());
+
+        ticker.advance(3000);
+        assertEquals(0, limiter.getPauseNanos());
+    }
+
+    @Test
+    public void failsInsteadOfWaitingWhilePaused() throws Exception {
+        FakeTicker ticker = new FakeTicker();
+        OperatorRateLimiter limiter = new OperatorRateLimiter(20, 8, ticker);
+        assertTrue(limiter.tryAcquire());
+
+        limiter.throttled(5000);
+        ticker.advance(2000);
+        assertFalse(limiter.tryAcquire());
+        try {
+            limiter.acquire();
+            fail("Expected the operator to be paused.");
+        } catch (RateLimitedException e) {
+            assertEquals(3000, e.getRetryAfterMillis());
+        }
+
+        ticker.advance(3000);
+        limiter.acquire();
+    }
+
+}
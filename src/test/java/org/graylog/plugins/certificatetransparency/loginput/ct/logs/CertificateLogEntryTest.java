@@ -0,0 +1,69 @@
+package org.graylog.plugins.certificatetransparency.loginput.ct.logs;
+
+import org.junit.Test;
+
+import java.util.Arrays;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+
+public class CertificateLogEntryTest {
+
+    @Test
+    public void roundTrip() {
+        byte[] leafInput = new byte[]{0, 0, 1, 2, 3};
+        byte[] extraData = new byte[]{4, 5, 6};
+
+        CertificateLogEntry entry = CertificateLogEntry.fromBytes(
+                new CertificateLogEntry("ct.example.org/log/", 1234567890123L, leafInput, extraData).toBytes()
+        );
+
+        assertEquals("ct.example.org/log/", entry.getLogUrl());
+        assertEquals(1234567890123L, entry.getIndex());
+        assertArrayEquals(leafInput, entry.getLeafInput());
+        assertArrayEquals(extraData, entry.getExtraData());
+    }
+
+    @Test
+    public void roundTripEmptyData() {
+        CertificateLogEntry entry = CertificateLogEntry.fromBytes(
+                new CertificateLogEntry("ct.example.org/", 0, new byte[0], new byte[0]).toBytes()
+        );
+
+        assertEquals(0, entry.getLeafInput().length);
+        assertEquals(0, entry.getExtraData().length);
+    }
+
+    @Test
+    public void entryType() {
+        byte[] leafInput = new byte[]{0, 0, 0, 0, 0, 1, 94, 42, 0, 0, 0, 1, 0, 0, 0};
+        assertEquals(CertificateLogEntry.ENTRY_TYPE_PRECERT, CertificateLogEntry.entryType(leafInput));
+
+        leafInput[11] = 0;
+        assertEquals(CertificateLogEntry.ENTRY_TYPE_X509, CertificateLogEntry.entryType(leafInput));
+
+        assertEquals(-1, CertificateLogEntry.entryType(new byte[]{0, 0, 0}));
+    }
+
+    @Test
+    public void timestamp() {
+        byte[] leafInput = new byte[]{0, 0, 0, 0, 1, 94, 42, 59, -124, 16, 0, 1, 0, 0, 0};
+        assertEquals(1503947097104L, CertificateLogEntry.timestamp(leafInput));
+
+        assertEquals(-1, CertificateLogEntry.timestamp(new byte[]{0, 0, 0}));
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void truncatedPayload() {
+        byte[] payload = new CertificateLogEntry("ct.example.org/", 1, new byte[]{1, 2, 3}, new byte[]{4}).toBytes();
+        CertificateLogEntry.fromBytes(Arrays.copyOf(payload, payload.length - 2));
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void unknownVersion() {
+        byte[] payload = new CertificateLogEntry("ct.example.org/", 1, new byte[0], new byte[0]).toBytes();
+        payload[0] = 42;
+        CertificateLogEntry.fromBytes(payload);
+    }
+
+}
@@ -0,0 +1,71 @@
+package org.graylog.plugins.certificatetransparency.loginput.ct.logs;
+
+import com.google.common.collect.ImmutableList;
+import com.google.common.collect.ImmutableMap;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+public class DecodedLogEntryTest {
+
+    @Test
+    public void roundTrip() {
+        byte[] payload = new DecodedLogEntry(ImmutableList.of(
+                new DecodedMessage("[CT] Certificate for [www.example.org] issued", ImmutableMap.of(
+                        "ct_log", "ct.example.org/log/",
+                        "ct_log_index", 1234567890123L,
+                        "ct_subject_alt_names", ImmutableList.of("www.example.org", "example.org")
+                ))
+        )).toBytes();
+
+        List<DecodedMessage> messages = DecodedLogEntry.fromBytes(payload).getMessages();
+
+        assertEquals(1, messages.size());
+        assertEquals("[CT] Certificate for [www.example.org] issued", messages.get(0).getMessage());
+        assertEquals("ct.example.org/log/", messages.get(0).getFields().get("ct_log"));
+        assertEquals(1234567890123L, messages.get(0).getFields().get("ct_log_index"));
+        assertEquals(ImmutableList.of("www.example.org", "example.org"), messages.get(0).getFields().get("ct_subject_alt_names"));
+    }
+
+    @Test
+    public void keepsValueTypes() {
+        Map<String, Object> fields = new HashMap<>();
+        fields.put("string", "value");
+        fields.put("int", 3);
+        fields.put("long", 3L);
+        fields.put("double", 0.5);
+        fields.put("boolean", true);
+        fields.put("list", new ArrayList<>(ImmutableList.of("a", "b")));
+
+        Map<String, Object> decoded = DecodedLogEntry.fromBytes(
+                new DecodedLogEntry(ImmutableList.of(new DecodedMessage("text", fields))).toBytes()
+        ).getMessages().get(0).getFields();
+
+        assertEquals(fields, decoded);
+        for (Map.Entry<String, Object> field : fields.entrySet()) {
+            assertEquals(field.getKey(), field.getValue().getClass(), decoded.get(field.getKey()).getClass());
+        }
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void rejectsTruncatedPayload() {
+        byte[] payload = new DecodedLogEntry(ImmutableList.of(new DecodedMessage("text", ImmutableMap.of("a", "b")))).toBytes();
+        DecodedLogEntry.fromBytes(Arrays.copyOf(payload, payload.length - 1));
+    }
+
+    @Test
+    public void toldApartFromRawEntries() {
+        assertTrue(DecodedLogEntry.isDecoded(new DecodedLogEntry(ImmutableList.of()).toBytes()));
+        assertFalse(DecodedLogEntry.isDecoded(new CertificateLogEntry("ct.example.org/", 0, new byte[0], new byte[0]).toBytes()));
+        assertFalse(DecodedLogEntry.isDecoded(new byte[0]));
+    }
+
+}
@@ -0,0 +1,73 @@
+package org.graylog.plugins.certificatetransparency.loginput.ct.logs;
+
+import com.fasterxml.jackson.core.JsonFactory;
+import com.fasterxml.jackson.core.JsonParseException;
+import org.junit.Test;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+
+public class EntriesParserTest {
+
+    private final EntriesParser parser = new EntriesParser(new JsonFactory());
+
+    @Test
+    public void parseEntries() throws IOException {
+        List<byte[]> leafInputs = new ArrayList<>();
+        List<byte[]> extraData = new ArrayList<>();
+
+        int count = parser.parse(stream("{\"entries\":[" +
+                "{\"leaf_input\":\"AAEC\",\"extra_data\":\"AwQ=\"}," +
+                "{\"extra_data\":\"\",\"leaf_input\":\"BQ==\",\"unknown\":{\"a\":[1]}}" +
+                "]}"), 10, (offset, leaf, extra) -> {
+            assertEquals(leafInputs.size(), offset);
+            leafInputs.add(leaf);
+            extraData.add(extra);
+        });
+
+        assertEquals(2, count);
+        assertArrayEquals(new byte[]{0, 1, 2}, leafInputs.get(0));
+        assertArrayEquals(new byte[]{3, 4}, extraData.get(0));
+        assertArrayEquals(new byte[]{5}, leafInputs.get(1));
+        assertArrayEquals(new byte[0], extraData.get(1));
+    }
+
+    @Test
+    public void parseStopsAtMaxEntries() throws IOException {
+        List<Integer> offsets = new ArrayList<>();
+
+        int count = parser.parse(stream("{\"entries\":[" +
+                "{\"leaf_input\":\"AA==\",\"extra_data\":\"\"}," +
+                "{\"leaf_input\":\"AA==\",\"extra_data\":\"\"}," +
+                "{\"leaf_input\":\"AA==\",\"extra_data\":\"\"}" +
+                "]}"), 2, (offset, leaf, extra) -> offsets.add(offset));
+
+        assertEquals(2, count);
+        assertEquals(2, offsets.size());
+    }
+
+    @Test
+    public void parseSkipsUnknownFields() throws IOException {
+        int count = parser.parse(stream("{\"other\":{\"entries\":[]},\"entries\":[" +
+                "{\"leaf_input\":\"AA==\",\"extra_data\":\"\"}" +
+                "]}"), 10, (offset, leaf, extra) -> {});
+
+        assertEquals(1, count);
+    }
+
+    @Test(expected = JsonParseException.class)
+    public void parseEntryWithoutExtraData() throws IOException {
+        parser.parse(stream("{\"entries\":[{\"leaf_input\":\"AA==\"}]}"), 10, (offset, leaf, extra) -> {});
+    }
+
+    private static ByteArrayInputStream stream(String json) {
+        return new ByteArrayInputStream(json.getBytes(StandardCharsets.UTF_8));
+    }
+
+}
@@ -0,0 +1,157 @@
+package org.graylog.plugins.certificatetransparency.loginput.ct.logs;
+
+import com.codahale.metrics.MetricRegistry;
+import com.google.common.primitives.Longs;
+import org.graylog2.plugin.inputs.MessageInput;
+import org.graylog2.plugin.journal.RawMessage;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Collectors;
+import java.util.stream.LongStream;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.doAnswer;
+import static org.mockito.Mockito.mock;
+
+public class EntryEmitterTest {
+
+    private MessageInput input;
+    private MetricRegistry metricRegistry;
+    private EntryEmitter emitter;
+
+    // What the input received and where the checkpoint moved, in that order.
+    private final List<Long> received = new CopyOnWriteArrayList<>();
+    private final List<Long> checkpoints = new CopyOnWriteArrayList<>();
+
+    @Before
+    public void setUp() {
+        input = mock(MessageInput.class);
+        metricRegistry = new MetricRegistry();
+        doAnswer(invocation -> {
+            RawMessage rawMessage = invocation.getArgument(0);
+            received.add(Longs.fromByteArray(rawMessage.getPayload()));
+            return null;
+        }).when(input).processRawMessage(any(RawMessage.class));
+    }
+
+    @After
+    public void tearDown() {
+        if (emitter != null) {
+            emitter.stop();
+        }
+    }
+
+    private void awaitCheckpoint(long index) throws InterruptedException {
+        for (int i = 0; i < 100 && !checkpoints.contains(index); i++) {
+            Thread.sleep(50);
+        }
+        assertTrue(checkpoints.contains(index));
+    }
+
+    @Test
+    public void passesEntriesInOrder() throws Exception {
+        // Later entries are decoded faster, so they are ready before the ones queued first.
+        EntryEmitter.Decoder decoder = payload -> {
+            try {
+                Thread.sleep(Math.max(0, 20 - Longs.fromByteArray(payload)));
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+            return payload;
+        };
+        emitter = new EntryEmitter(input, 100, decoder, 4, metricRegistry);
+        emitter.start();
+
+        for (long index = 0; index < 20; index++) {
+            emitter.emit(checkpoints::add, index, Longs.toByteArray(index));
+        }
+        awaitCheckpoint(19);
+
+        List<Long> expected = LongStream.range(0, 20).boxed().collect(Collectors.toList());
+        assertEquals(expected, received);
+        assertEquals(expected, checkpoints);
+    }
+
+    @Test
+    public void blocksWhileQueueIsFull() throws Exception {
+        CountDownLatch passing = new CountDownLatch(1);
+        CountDownLatch proceed = new CountDownLatch(1);
+        doAnswer(invocation -> {
+            passing.countDown();
+            proceed.await();
+            return null;
+        }).when(input).processRawMessage(any(RawMessage.class));
+        emitter = new EntryEmitter(input, 1, metricRegistry);
+        emitter.start();
+
+        // The first entry is held up by the input and the second one fills the queue.
+        Thread reader = new Thread(() -> {
+            try {
+                for (long index = 0; index < 3; index++) {
+                    emitter.emit(checkpoints::add, index, Longs.toByteArray(index));
+                }
+            } catch (Exception e) {
+                throw new RuntimeException(e);
+            }
+        });
+        reader.start();
+        assertTrue(passing.await(5, TimeUnit.SECONDS));
+
+        reader.join(500);
+        assertTrue(reader.isAlive());
+        assertTrue(checkpoints.isEmpty());
+
+        proceed.countDown();
+        reader.join(5000);
+        assertFalse(reader.isAlive());
+        awaitCheckpoint(2);
+    }
+
+    @Test
+    public void skippedEntriesOnlyMoveCheckpoint() throws Exception {
+        emitter = new EntryEmitter(input, 100, metricRegistry);
+        emitter.start();
+
+        emitter.emit(checkpoints::add, 0, Longs.toByteArray(0));
+        emitter.emit(checkpoints::add, 1, null);
+        emitter.emit(checkpoints::add, 2, Longs.toByteArray(2));
+        awaitCheckpoint(2);
+
+        assertEquals(Longs.asList(0, 2), received);
+        assertEquals(Longs.asList(0, 1, 2), checkpoints);
+    }
+
+    @Test
+    public void checkpointsEntriesTheInputFailed() throws Exception {
+        doAnswer(invocation -> {
+            RawMessage rawMessage = invocation.getArgument(0);
+            long index = Longs.fromByteArray(rawMessage.getPayload());
+            if (index == 1) {
+                throw new IllegalStateException("Input failed.");
+            }
+            received.add(index);
+            return null;
+        }).when(input).processRawMessage(any(RawMessage.class));
+        emitter = new EntryEmitter(input, 100, metricRegistry);
+        emitter.start();
+
+        for (long index = 0; index < 3; index++) {
+            emitter.emit(checkpoints::add, index, Longs.toByteArray(index));
+        }
+        awaitCheckpoint(2);
+
+        assertEquals(Longs.asList(0, 2), received);
+        assertEquals(Longs.asList(0, 1, 2), checkpoints);
+        assertEquals(1, metricRegistry.counter("entries_failed.input_error").getCount());
+    }
+
+}
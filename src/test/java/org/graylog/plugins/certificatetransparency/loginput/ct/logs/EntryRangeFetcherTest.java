@@ -0,0 +1,92 @@
+package org.graylog.plugins.certificatetransparency.loginput.ct.logs;
+
+import com.codahale.metrics.MetricRegistry;
+import okhttp3.HttpUrl;
+import okhttp3.OkHttpClient;
+import org.graylog.plugins.certificatetransparency.loginput.ct.http.OperatorRateLimiter;
+import org.graylog.plugins.certificatetransparency.loginput.ct.http.RateLimitedException;
+import org.graylog.plugins.certificatetransparency.loginput.ct.testing.FakeCtLog;
+import org.junit.Test;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.fail;
+
+public class EntryRangeFetcherTest {
+
+    private final OkHttpClient httpClient = new OkHttpClient.Builder()
+            .readTimeout(1, TimeUnit.SECONDS)
+            .build();
+
+    private EntryRangeFetcher fetcher(FakeCtLog fake, OperatorRateLimiter limiter) {
+        return new EntryRangeFetcher(httpClient, FakeCtLog.objectMapper(), HttpUrl.parse(fake.logUrl("log")), 4,
+                new LogReadMetrics(new MetricRegistry()), limiter);
+    }
+
+    @Test
+    public void fetchesCappedBatchesInOrder() throws Exception {
+        try (FakeCtLog fake = FakeCtLog.start().addLog("log", "Operator", 1000, 0).withMaxBatchSize(100)) {
+            EntryRangeFetcher fetcher = fetcher(fake, new OperatorRateLimiter(1000, 4));
+
+            List<Long> indices = new ArrayList<>();
+            fetcher.fetch(10, 1000, () -> false, (index, leafInput, extraData) -> indices.add(index));
+
+            assertEquals(990, indices.size());
+            for (int i = 0; i < indices.size(); i++) {
+                assertEquals(10 + i, (long) indices.get(i));
+            }
+            assertEquals(100, fetcher.getBatchSize());
+        }
+    }
+
+    @Test
+    public void keepsLargestResponseAsLimit() throws Exception {
+        try (FakeCtLog fake = FakeCtLog.start().addLog("log", "Operator", 1000, 0).withMaxBatchSize(100).withChunkSize(100)) {
+            EntryRangeFetcher fetcher = fetcher(fake, new OperatorRateLimiter(1000, 4));
+
+            // The first response ends at the chunk boundary after 3 entries, which is not the limit of the log.
+            List<Long> indices = new ArrayList<>();
+            fetcher.fetch(97, 1000, () -> false, (index, leafInput, extraData) -> indices.add(index));
+
+            assertEquals(903, indices.size());
+            for (int i = 0; i < indices.size(); i++) {
+                assertEquals(97 + i, (long) indices.get(i));
+            }
+            assertEquals(100, fetcher.getBatchSize());
+        }
+    }
+
+    @Test
+    public void throttlesOperatorOnRateLimit() throws Exception {
+        try (FakeCtLog fake = FakeCtLog.start().addLog("log", "Operator", 1000, 0).withRateLimiting(1, 7)) {
+            OperatorRateLimiter limiter = new OperatorRateLimiter(1000, 4);
+
+            try {
+                fetcher(fake, limiter).fetch(0, 1000, () -> false, (index, leafInput, extraData) -> {});
+                fail("Expected the log to rate limit.");
+            } catch (RateLimitedException e) {
+                assertEquals(429, e.getStatusCode());
+                assertEquals(7000, e.getRetryAfterMillis());
+            }
+            assertEquals(2, limiter.getConcurrency());
+        }
+    }
+
+    @Test
+    public void failsOnTimeout() throws Exception {
+        try (FakeCtLog fake = FakeCtLog.start().addLog("log", "Operator", 1000, 0).withTimeouts(1)) {
+            try {
+                fetcher(fake, new OperatorRateLimiter(1000, 4)).fetch(0, 100, () -> false, (index, leafInput, extraData) -> {});
+                fail("Expected the request to time out.");
+            } catch (IOException e) {
+                assertFalse(e instanceof RateLimitedException);
+            }
+        }
+    }
+
+}
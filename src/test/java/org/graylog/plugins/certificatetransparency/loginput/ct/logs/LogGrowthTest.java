@@ -0,0 +1,72 @@
+package org.graylog.plugins.certificatetransparency.loginput.ct.logs;
+
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+
+public class LogGrowthTest {
+
+    private static final long MIN = 5000;
+    private static final long MAX = 600000;
+    private static final long FRESHNESS = 30000;
+
+    @Test
+    public void readsAtMinimumIntervalWithoutTreeHead() {
+        assertEquals(MIN, new LogGrowth(MIN, MAX, FRESHNESS).nextDelay(0));
+    }
+
+    @Test
+    public void busyLogsAreReadInSmallBatches() {
+        LogGrowth growth = new LogGrowth(1000, MAX, FRESHNESS);
+
+        // 200 entries per second.
+        long now = 1000000;
+        for (int i = 0; i < 20; i++) {
+            growth.record(i * 2000L, now, now);
+            now += 10000;
+        }
+
+        assertEquals(200, growth.getEntriesPerSecond(), 1);
+        // 1024 entries take about five seconds to come in.
+        assertEquals(5120, growth.nextDelay(now - 10000), 100);
+    }
+
+    @Test
+    public void slowLogsAreReadWithinFreshnessTarget() {
+        LogGrowth growth = new LogGrowth(MIN, MAX, FRESHNESS);
+
+        growth.record(100, 1000000, 1000000);
+        growth.record(101, 1010000, 1010000);
+
+        assertEquals(FRESHNESS, growth.nextDelay(1010000));
+    }
+
+    @Test
+    public void idleLogsBackOff() {
+        LogGrowth growth = new LogGrowth(MIN, MAX, FRESHNESS);
+
+        long now = 1000000;
+        growth.record(100, now, now);
+        for (int i = 1; i <= 10; i++) {
+            growth.record(100, now + i * 60000, now + i * 60000);
+        }
+
+        // Idle for ten minutes, read again in five.
+        assertEquals(300000, growth.nextDelay(now + 600000));
+        // Never longer than the maximum.
+        assertEquals(MAX, growth.nextDelay(now + 3600000));
+    }
+
+    @Test
+    public void waitsForNextTreeHead() {
+        LogGrowth growth = new LogGrowth(MIN, MAX, FRESHNESS);
+
+        // The log publishes a new tree head every two minutes.
+        growth.record(100, 1000000, 1000000);
+        growth.record(1000, 1120000, 1125000);
+        growth.record(1000, 1120000, 1135000);
+
+        assertEquals(105000, growth.nextDelay(1135000));
+    }
+
+}
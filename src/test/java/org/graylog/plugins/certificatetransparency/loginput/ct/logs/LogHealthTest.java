@@ -0,0 +1,66 @@
+package org.graylog.plugins.certificatetransparency.loginput.ct.logs;
+
+import org.junit.Test;
+
+import java.io.IOException;
+import java.net.SocketTimeoutException;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+public class LogHealthTest {
+
+    @Test
+    public void opensAfterRepeatedFailures() {
+        LogHealth health = new LogHealth(5000, 300000);
+
+        assertEquals(10000, health.failure(100, new IOException()));
+        assertEquals(LogHealth.State.CLOSED, health.getState());
+        assertEquals(20000, health.failure(100, new IOException()));
+        assertEquals(40000, health.failure(100, new IOException()));
+        assertEquals(LogHealth.State.OPEN, health.getState());
+        assertEquals(0, health.getScore(), 0.0);
+    }
+
+    @Test
+    public void timeoutsOpenFaster() {
+        LogHealth health = new LogHealth(5000, 300000);
+
+        health.failure(10000, new IOException(new SocketTimeoutException()));
+        health.failure(10000, new SocketTimeoutException());
+
+        assertEquals(LogHealth.State.OPEN, health.getState());
+    }
+
+    @Test
+    public void failedProbeOpensAgainAndSuccessCloses() {
+        LogHealth health = new LogHealth(5000, 30000);
+        for (int i = 0; i < 3; i++) {
+            health.failure(100, new IOException());
+        }
+
+        health.beforeRun();
+        assertEquals(LogHealth.State.HALF_OPEN, health.getState());
+        // Capped at the maximum backoff.
+        assertEquals(30000, health.failure(100, new IOException()));
+        assertEquals(LogHealth.State.OPEN, health.getState());
+
+        health.beforeRun();
+        health.success(100, 10);
+        assertEquals(LogHealth.State.CLOSED, health.getState());
+        assertTrue(health.getScore() > 0);
+    }
+
+    @Test
+    public void slowLogsScoreLower() {
+        LogHealth fast = new LogHealth(5000, 300000);
+        LogHealth slow = new LogHealth(5000, 300000);
+
+        fast.success(200, 10);
+        slow.success(8000, 10);
+
+        assertEquals(100, fast.getScore(), 0.001);
+        assertTrue(slow.getScore() < 20);
+    }
+
+}
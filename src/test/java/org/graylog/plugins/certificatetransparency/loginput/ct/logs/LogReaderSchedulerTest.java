@@ -0,0 +1,120 @@
+package org.graylog.plugins.certificatetransparency.loginput.ct.logs;
+
+import com.codahale.metrics.MetricRegistry;
+import com.google.common.collect.ImmutableList;
+import com.google.common.collect.ImmutableSet;
+import org.graylog.plugins.certificatetransparency.loginput.ct.logservers.LogServer;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.mockito.ArgumentCaptor;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.timeout;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+public class LogReaderSchedulerTest {
+
+    private static final LogServer ALPHA = LogServer.create("Alpha", "alpha.example.org/", ImmutableList.of("Operator"));
+    private static final LogServer BETA = LogServer.create("Beta", "beta.example.org/", ImmutableList.of("Operator"));
+
+    private ScheduledExecutorService executor;
+    private LogReaderScheduler scheduler;
+    private final Map<String, LogReader> readers = new HashMap<>();
+    private final AtomicBoolean drained = new AtomicBoolean(false);
+
+    @Before
+    public void setUp() {
+        executor = Executors.newScheduledThreadPool(2);
+        scheduler = new LogReaderScheduler(executor, new MetricRegistry(), 10, 100, 30, 100, TimeUnit.MILLISECONDS);
+    }
+
+    @After
+    public void tearDown() {
+        scheduler.stop();
+        executor.shutdownNow();
+    }
+
+    private LogReader createReader(LogServer logServer) {
+        LogReader reader = mock(LogReader.class);
+        when(reader.getLogServer()).thenReturn(logServer);
+        when(reader.getMetrics()).thenReturn(new LogReadMetrics(new MetricRegistry()));
+        when(reader.isDrained()).thenAnswer(invocation -> drained.get());
+        readers.put(logServer.url(), reader);
+        return reader;
+    }
+
+    @Test
+    public void startsReadersOfAddedLogs() throws Exception {
+        scheduler.reconcile(ImmutableList.of(ALPHA), this::createReader);
+        verify(readers.get(ALPHA.url()), timeout(5000).atLeastOnce()).read();
+
+        scheduler.reconcile(ImmutableList.of(ALPHA, BETA), this::createReader);
+        verify(readers.get(BETA.url()), timeout(5000).atLeastOnce()).read();
+
+        // A log that is read already keeps its reader.
+        assertEquals(2, readers.size());
+        assertEquals(ImmutableSet.of(ALPHA.url(), BETA.url()), scheduler.getHeldLogs());
+    }
+
+    @Test
+    public void handsOffRemovedLogs() throws Exception {
+        scheduler.reconcile(ImmutableList.of(ALPHA, BETA), this::createReader);
+        LogReader alpha = readers.get(ALPHA.url());
+
+        scheduler.reconcile(ImmutableList.of(BETA), this::createReader);
+        ArgumentCaptor<Runnable> released = ArgumentCaptor.forClass(Runnable.class);
+        verify(alpha, timeout(5000)).handOff(released.capture());
+
+        // Held until its last position was written, and not started again in the meantime.
+        assertEquals(ImmutableSet.of(ALPHA.url(), BETA.url()), scheduler.getHeldLogs());
+        scheduler.reconcile(ImmutableList.of(ALPHA, BETA), this::createReader);
+        assertEquals(alpha, readers.get(ALPHA.url()));
+
+        released.getValue().run();
+        assertEquals(ImmutableSet.of(BETA.url()), scheduler.getHeldLogs());
+    }
+
+    @Test
+    public void readsFrozenLogsUpToTheirEnd() throws Exception {
+        scheduler.reconcile(ImmutableList.of(ALPHA), this::createReader);
+        LogReader alpha = readers.get(ALPHA.url());
+        verify(alpha, timeout(5000).atLeastOnce()).read();
+
+        LogServer frozen = LogServer.create("Alpha", ALPHA.url(), ImmutableList.of("Operator"), 1000L);
+        scheduler.reconcile(ImmutableList.of(frozen), this::createReader);
+        verify(alpha).update(frozen);
+
+        // Once everything was read, the reader stops without handing off.
+        drained.set(true);
+        for (int i = 0; i < 50 && scheduler.hasReaders(); i++) {
+            Thread.sleep(50);
+        }
+        assertFalse(scheduler.hasReaders());
+        verify(alpha, never()).handOff(any());
+    }
+
+    @Test
+    public void doesNotStartDrainedLogs() {
+        LogServer frozen = LogServer.create("Alpha", ALPHA.url(), ImmutableList.of("Operator"), 1000L);
+        drained.set(true);
+        scheduler.reconcile(ImmutableList.of(frozen), this::createReader);
+
+        assertFalse(scheduler.hasReaders());
+        assertTrue(scheduler.getHeldLogs().isEmpty());
+    }
+
+}
@@ -0,0 +1,153 @@
+package org.graylog.plugins.certificatetransparency.loginput.ct.logs;
+
+import com.codahale.metrics.MetricRegistry;
+import com.google.common.collect.ImmutableList;
+import okhttp3.OkHttpClient;
+import org.graylog.plugins.certificatetransparency.loginput.ct.http.CtHttpClient;
+import org.graylog.plugins.certificatetransparency.loginput.ct.http.OperatorRateLimiter;
+import org.graylog.plugins.certificatetransparency.loginput.ct.http.RateLimitedException;
+import org.graylog.plugins.certificatetransparency.loginput.ct.logs.checkpoints.CheckpointStorage;
+import org.graylog.plugins.certificatetransparency.loginput.ct.logs.checkpoints.CheckpointStore;
+import org.graylog.plugins.certificatetransparency.loginput.ct.logs.checkpoints.LogCheckpoints;
+import org.graylog.plugins.certificatetransparency.loginput.ct.logservers.LogServer;
+import org.graylog.plugins.certificatetransparency.loginput.ct.testing.FakeCtLog;
+import org.graylog2.plugin.inputs.MessageInput;
+import org.graylog2.plugin.journal.RawMessage;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.timeout;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+
+public class LogReaderTest {
+
+    private FakeCtLog fake;
+    private CheckpointStorage<Long> storage;
+    private ExecutorService checkpointService;
+    private MessageInput input;
+    private EntryEmitter emitter;
+    private LogCheckpoints checkpoints;
+    private CtHttpClient httpClient;
+
+    @Before
+    public void setUp() throws Exception {
+        fake = FakeCtLog.start().withMaxBatchSize(64);
+        storage = mock(CheckpointStorage.class);
+        checkpointService = Executors.newSingleThreadExecutor();
+        input = mock(MessageInput.class);
+        emitter = new EntryEmitter(input, 100, new MetricRegistry());
+        emitter.start();
+        checkpoints = new LogCheckpoints(new CheckpointStore<>(storage, "input", 1000000, checkpointService));
+        httpClient = new CtHttpClient(new OkHttpClient(), 16, 4, 5, 5, TimeUnit.SECONDS, new MetricRegistry());
+    }
+
+    @After
+    public void tearDown() throws Exception {
+        emitter.stop();
+        checkpointService.shutdown();
+        httpClient.shutdown();
+        fake.close();
+    }
+
+    private LogReader reader(LogServer logServer) {
+        return reader(logServer, new OperatorRateLimiter(1000, 4));
+    }
+
+    private LogReader reader(LogServer logServer, OperatorRateLimiter rateLimiter) {
+        return new LogReader(logServer, emitter, () -> false, httpClient, rateLimiter,
+                FakeCtLog.objectMapper(), checkpoints, 4, 0, true, null, new MetricRegistry());
+    }
+
+    private LogServer logServer(String name) {
+        return LogServer.create(name, fake.logUrl(name), ImmutableList.of("Operator"));
+    }
+
+    @Test
+    public void startsAtTreeSizeOfNewLog() throws Exception {
+        fake.addLog("log", "Operator", 500, 0);
+        LogServer logServer = logServer("log");
+
+        assertEquals(0, reader(logServer).read());
+        assertEquals(500, (long) checkpoints.get(logServer));
+    }
+
+    @Test
+    public void readsEverythingSincePosition() throws Exception {
+        fake.addLog("log", "Operator", 500, 0);
+        LogServer logServer = logServer("log");
+        checkpoints.update(logServer, 100);
+
+        LogReader reader = reader(logServer);
+        assertEquals(400, reader.read());
+        assertEquals(0, reader.read());
+
+        verify(input, timeout(5000).times(400)).processRawMessage(any(RawMessage.class));
+    }
+
+    @Test
+    public void handsOffPositionOfEmittedEntries() throws Exception {
+        fake.addLog("log", "Operator", 500, 0);
+        LogServer logServer = logServer("log");
+        checkpoints.update(logServer, 300);
+
+        LogReader reader = reader(logServer);
+        reader.read();
+
+        CountDownLatch released = new CountDownLatch(1);
+        reader.handOff(released::countDown);
+        assertTrue(released.await(5, TimeUnit.SECONDS));
+        assertEquals(0, reader.read());
+
+        verify(input, times(200)).processRawMessage(any(RawMessage.class));
+        verify(storage).write("input", fake.logUrl("log"), 500L);
+        assertNull(checkpoints.get(logServer));
+    }
+
+    @Test(expected = RateLimitedException.class)
+    public void passesOnRateLimit() throws Exception {
+        fake.addLog("log", "Operator", 500, 0).withRateLimiting(1, 1);
+        reader(logServer("log")).read();
+    }
+
+    @Test
+    public void pausedOperatorDoesNotHoldUpOtherOperators() throws Exception {
+        fake.addLog("alpha", "Alpha Operator", 500, 0).addLog("beta", "Beta Operator", 500, 0);
+        LogServer alpha = LogServer.create("alpha", fake.logUrl("alpha"), ImmutableList.of("Alpha Operator"));
+        LogServer beta = LogServer.create("beta", fake.logUrl("beta"), ImmutableList.of("Beta Operator"));
+
+        // Alpha's operator asked for a long pause. Both logs share one reader thread.
+        OperatorRateLimiter alphaLimiter = new OperatorRateLimiter(1000, 4);
+        alphaLimiter.throttled(TimeUnit.MINUTES.toMillis(10));
+        OperatorRateLimiter betaLimiter = new OperatorRateLimiter(1000, 4);
+
+        ScheduledExecutorService readerThread = Executors.newSingleThreadScheduledExecutor();
+        LogReaderScheduler scheduler = new LogReaderScheduler(readerThread, new MetricRegistry(), 10, 100, 30, 100, TimeUnit.MILLISECONDS);
+        try {
+            scheduler.reconcile(ImmutableList.of(alpha, beta),
+                    logServer -> reader(logServer, logServer == alpha ? alphaLimiter : betaLimiter));
+
+            for (int i = 0; i < 100 && checkpoints.get(beta) == null; i++) {
+                Thread.sleep(50);
+            }
+            assertEquals(500, (long) checkpoints.get(beta));
+            assertNull(checkpoints.get(alpha));
+        } finally {
+            scheduler.stop();
+            readerThread.shutdownNow();
+        }
+    }
+
+}
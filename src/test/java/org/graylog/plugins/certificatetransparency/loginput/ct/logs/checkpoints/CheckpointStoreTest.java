@@ -0,0 +1,120 @@
+package org.graylog.plugins.certificatetransparency.loginput.ct.logs.checkpoints;
+
+import com.google.common.collect.ImmutableMap;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+public class CheckpointStoreTest {
+
+    private static class MemoryStorage implements CheckpointStorage<Long> {
+        private final Map<String, Long> checkpoints = new HashMap<>();
+        private final List<String> writes = new ArrayList<>();
+        private boolean failing = false;
+
+        @Override
+        public Map<String, Long> load(String inputId, Collection<String> logUrls) {
+            Map<String, Long> loaded = new HashMap<>();
+            for (String logUrl : logUrls) {
+                if (checkpoints.containsKey(inputId + " " + logUrl)) {
+                    loaded.put(logUrl, checkpoints.get(inputId + " " + logUrl));
+                }
+            }
+            return loaded;
+        }
+
+        @Override
+        public Map<String, Long> loadAll(String inputId) {
+            throw new UnsupportedOperationException();
+        }
+
+        @Override
+        public void write(String inputId, String logUrl, Long checkpoint) {
+            if (failing) {
+                throw new IllegalStateException("Storage is down.");
+            }
+            checkpoints.put(inputId + " " + logUrl, checkpoint);
+            writes.add(logUrl);
+        }
+    }
+
+    @Test
+    public void writesLatestCheckpointPerLogOnFlush() {
+        MemoryStorage storage = new MemoryStorage();
+        CheckpointStore<Long> store = new CheckpointStore<>(storage, "input", 1000, Runnable::run);
+
+        store.update("a", 1L);
+        store.update("a", 2L);
+        store.update("b", 7L);
+        assertTrue(storage.writes.isEmpty());
+
+        store.flush();
+        assertEquals(2, storage.writes.size());
+        assertEquals(ImmutableMap.of("a", 2L, "b", 7L), store.load(ImmutableMap.of("a", 0, "b", 0, "c", 0).keySet()));
+
+        // Nothing changed since.
+        store.flush();
+        assertEquals(2, storage.writes.size());
+    }
+
+    @Test
+    public void flushesEarlyOnExecutor() {
+        MemoryStorage storage = new MemoryStorage();
+        List<Runnable> queued = new ArrayList<>();
+        CheckpointStore<Long> store = new CheckpointStore<>(storage, "input", 2, queued::add);
+
+        store.update("a", 1L);
+        assertTrue(queued.isEmpty());
+        store.update("a", 2L);
+        store.update("a", 3L);
+
+        // Queued once, and not run by the thread that updates.
+        assertEquals(1, queued.size());
+        assertTrue(storage.writes.isEmpty());
+
+        queued.get(0).run();
+        assertEquals(ImmutableMap.of("a", 3L), store.load(ImmutableMap.of("a", 0).keySet()));
+    }
+
+    @Test
+    public void keepsCheckpointsThatCouldNotBeWritten() {
+        MemoryStorage storage = new MemoryStorage();
+        CheckpointStore<Long> store = new CheckpointStore<>(storage, "input", 1000, Runnable::run);
+
+        store.update("a", 5L);
+        storage.failing = true;
+        store.flush();
+        assertTrue(storage.writes.isEmpty());
+
+        storage.failing = false;
+        store.flush();
+        assertEquals(ImmutableMap.of("a", 5L), store.load(ImmutableMap.of("a", 0).keySet()));
+    }
+
+    @Test
+    public void releasesOnceLastCheckpointWasWritten() {
+        MemoryStorage storage = new MemoryStorage();
+        CheckpointStore<Long> store = new CheckpointStore<>(storage, "input", 1000, Runnable::run);
+        AtomicBoolean released = new AtomicBoolean(false);
+
+        store.update("a", 5L);
+        storage.failing = true;
+        store.release("a", () -> released.set(true));
+        assertFalse(released.get());
+
+        storage.failing = false;
+        store.flush();
+        assertTrue(released.get());
+        assertEquals(ImmutableMap.of("a", 5L), store.load(ImmutableMap.of("a", 0).keySet()));
+    }
+
+}
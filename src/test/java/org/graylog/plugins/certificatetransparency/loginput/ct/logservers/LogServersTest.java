@@ -0,0 +1,109 @@
+package org.graylog.plugins.certificatetransparency.loginput.ct.logservers;
+
+import com.google.common.collect.ImmutableList;
+import okhttp3.OkHttpClient;
+import org.graylog.plugins.certificatetransparency.loginput.ct.testing.FakeCtLog;
+import org.graylog2.plugin.cluster.ClusterConfigService;
+import org.junit.Test;
+
+import java.util.List;
+import java.util.concurrent.atomic.AtomicReference;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.doAnswer;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+public class LogServersTest {
+
+    @Test
+    public void fetchesLogList() throws Exception {
+        try (FakeCtLog fake = FakeCtLog.start()
+                .addLog("alpha", "Alpha Operator", 10, 0)
+                .addLog("beta", "Beta Operator", 10, 0)) {
+            List<LogServer> logServers = new LogServers(FakeCtLog.objectMapper(), new OkHttpClient(), fake.logListUrl()).fetch();
+
+            assertEquals(2, logServers.size());
+            LogServer alpha = logServers.stream().filter(l -> l.url().equals(fake.logUrl("alpha"))).findFirst().get();
+            assertEquals(ImmutableList.of("Alpha Operator"), alpha.operatedBy());
+            assertEquals(fake.logUrl("alpha"), alpha.httpUrl().toString());
+            assertFalse(alpha.isFrozen());
+            assertEquals(1, fake.requests("log_list"));
+        }
+    }
+
+    @Test
+    public void asksIfCachedLogListChanged() throws Exception {
+        ClusterConfigService clusterConfigService = clusterConfigService();
+
+        try (FakeCtLog fake = FakeCtLog.start().addLog("alpha", "Alpha Operator", 10, 0)) {
+            LogServers logServers = new LogServers(FakeCtLog.objectMapper(), new OkHttpClient(), fake.logListUrl(), clusterConfigService);
+            assertTrue(logServers.cached().isEmpty());
+
+            List<LogServer> fetched = logServers.fetch();
+            assertEquals(1, fetched.size());
+
+            // Another input, or this one after a restart, only asks whether the list changed.
+            LogServers restarted = new LogServers(FakeCtLog.objectMapper(), new OkHttpClient(), fake.logListUrl(), clusterConfigService);
+            assertEquals(fetched, restarted.cached());
+            assertEquals(fetched, restarted.fetch());
+
+            assertEquals(1, fake.requests("log_list"));
+            assertEquals(1, fake.requests("log_list_not_modified"));
+            verify(clusterConfigService, times(1)).write(any(CachedLogLists.class));
+        }
+    }
+
+    @Test
+    public void asksIfLogListChangedWithoutClusterConfig() throws Exception {
+        try (FakeCtLog fake = FakeCtLog.start().addLog("alpha", "Alpha Operator", 10, 0)) {
+            LogServers logServers = new LogServers(FakeCtLog.objectMapper(), new OkHttpClient(), fake.logListUrl());
+
+            List<LogServer> fetched = logServers.fetch();
+            assertEquals(1, fetched.size());
+            assertEquals(fetched, logServers.fetch());
+            assertEquals(fetched, logServers.cached());
+
+            assertEquals(1, fake.requests("log_list"));
+            assertEquals(1, fake.requests("log_list_not_modified"));
+        }
+    }
+
+    @Test
+    public void startsFromCachedLogListWhenOffline() throws Exception {
+        ClusterConfigService clusterConfigService = clusterConfigService();
+
+        String logListUrl;
+        List<LogServer> fetched;
+        try (FakeCtLog fake = FakeCtLog.start().addLog("alpha", "Alpha Operator", 10, 0)) {
+            logListUrl = fake.logListUrl();
+            fetched = new LogServers(FakeCtLog.objectMapper(), new OkHttpClient(), logListUrl, clusterConfigService).fetch();
+        }
+
+        assertEquals(fetched, new LogServers(FakeCtLog.objectMapper(), new OkHttpClient(), logListUrl, clusterConfigService).cached());
+    }
+
+    @Test
+    public void addsSchemeToLogUrl() {
+        LogServer logServer = LogServer.create("Pilot", "ct.googleapis.com/pilot/", ImmutableList.of("Google"));
+        assertEquals("https://ct.googleapis.com/pilot/", logServer.httpUrl().toString());
+    }
+
+    // Keeps what was written, like the cluster configuration does.
+    private static ClusterConfigService clusterConfigService() {
+        AtomicReference<CachedLogLists> stored = new AtomicReference<>();
+        ClusterConfigService clusterConfigService = mock(ClusterConfigService.class);
+        when(clusterConfigService.get(CachedLogLists.class)).thenAnswer(invocation -> stored.get());
+        doAnswer(invocation -> {
+            stored.set(invocation.getArgument(0));
+            return null;
+        }).when(clusterConfigService).write(any(CachedLogLists.class));
+        return clusterConfigService;
+    }
+
+}
@@ -0,0 +1,314 @@
+package org.graylog.plugins.certificatetransparency.loginput.ct.testing;
+
+import com.fasterxml.jackson.core.JsonFactory;
+import com.fasterxml.jackson.databind.DeserializationFeature;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.PropertyNamingStrategy;
+import com.google.common.io.Resources;
+import okhttp3.HttpUrl;
+import okhttp3.mockwebserver.Dispatcher;
+import okhttp3.mockwebserver.MockResponse;
+import okhttp3.mockwebserver.MockWebServer;
+import okhttp3.mockwebserver.RecordedRequest;
+import okhttp3.mockwebserver.SocketPolicy;
+import org.graylog.plugins.certificatetransparency.loginput.ct.logs.EntriesParser;
+
+import java.io.ByteArrayInputStream;
+import java.io.Closeable;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Base64;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * A Certificate Transparency log list and any number of logs on a local {@link MockWebServer}, for tests and
+ * benchmarks that would otherwise need the real logs.
+ *
+ * The logs serve the recorded entries of {@code get-entries-batch.json} over and over, with the timestamp of every
+ * entry set to when it was logged. A log grows at a fixed rate from its initial size. Entries repeat, so duplicate
+ * detection should be off when reading them.
+ *
+ * Faults can be injected: latency for every request, a cap on the entries per get-entries response like real logs
+ * have, responses cut at chunk boundaries, and every n-th request to a log answered with 429 or not at all.
+ */
+public class FakeCtLog extends Dispatcher implements Closeable {
+
+    private static final String RECORDED_ENTRIES = "/org/graylog/plugins/certificatetransparency/benchmarks/get-entries-batch.json";
+
+    // version (1 byte) and leaf_type (1 byte) come before the timestamp of a MerkleTreeLeaf.
+    private static final int TIMESTAMP_OFFSET = 2;
+
+    private final MockWebServer server;
+    private final List<byte[]> leafInputs = new ArrayList<>();
+    private final List<byte[]> extraData = new ArrayList<>();
+    private final Map<String, Log> logs = new ConcurrentHashMap<>();
+    private final Map<String, AtomicLong> requests = new ConcurrentHashMap<>();
+    private final AtomicLong logRequests = new AtomicLong();
+
+    private volatile long latencyMillis = 0;
+    private volatile int maxBatchSize = 256;
+    private volatile int chunkSize = 0;
+    private volatile int rateLimitEvery = 0;
+    private volatile long retryAfterSeconds = 1;
+    private volatile int timeoutEvery = 0;
+
+    private FakeCtLog() throws IOException {
+        new EntriesParser(new JsonFactory()).parse(
+                new ByteArrayInputStream(Resources.toByteArray(Resources.getResource(FakeCtLog.class, RECORDED_ENTRIES))),
+                Integer.MAX_VALUE,
+                (offset, leafInput, extra) -> {
+                    leafInputs.add(leafInput);
+                    extraData.add(extra);
+                }
+        );
+
+        this.server = new MockWebServer();
+        this.server.setDispatcher(this);
+    }
+
+    public static FakeCtLog start() throws IOException {
+        FakeCtLog log = new FakeCtLog();
+        log.server.start();
+        return log;
+    }
+
+    /**
+     * An object mapper that reads the log list like the one of Graylog does.
+     */
+    public static ObjectMapper objectMapper() {
+        return new ObjectMapper()
+                .setPropertyNamingStrategy(PropertyNamingStrategy.SNAKE_CASE)
+                .configure(DeserializationFeature.FAIL_ON_UNKNOWN_PROPERTIES, false);
+    }
+
+    /**
+     * Adds a log that starts with {@code treeSize} entries and grows by {@code entriesPerSecond}.
+     */
+    public FakeCtLog addLog(String name, String operator, long treeSize, double entriesPerSecond) {
+        logs.put(name, new Log(name, operator, treeSize, entriesPerSecond, System.currentTimeMillis()));
+        return this;
+    }
+
+    public FakeCtLog withLatency(long millis) {
+        this.latencyMillis = millis;
+        return this;
+    }
+
+    public FakeCtLog withMaxBatchSize(int entries) {
+        this.maxBatchSize = entries;
+        return this;
+    }
+
+    /**
+     * Ends get-entries responses at the end of the chunk of {@code entries} the first entry is in, like logs that store
+     * their entries in tiles do. 0 turns it off.
+     */
+    public FakeCtLog withChunkSize(int entries) {
+        this.chunkSize = entries;
+        return this;
+    }
+
+    /**
+     * Answers every n-th request to a log with 429 and a Retry-After header. 0 turns it off.
+     */
+    public FakeCtLog withRateLimiting(int every, long retryAfterSeconds) {
+        this.rateLimitEvery = every;
+        this.retryAfterSeconds = retryAfterSeconds;
+        return this;
+    }
+
+    /**
+     * Doesn't answer every n-th request to a log, so the client runs into its read timeout. 0 turns it off.
+     */
+    public FakeCtLog withTimeouts(int every) {
+        this.timeoutEvery = every;
+        return this;
+    }
+
+    public String logListUrl() {
+        return server.url("/log_list.json").toString();
+    }
+
+    /**
+     * The URL of the log as it appears in the log list.
+     */
+    public String logUrl(String name) {
+        return server.url("/" + name + "/").toString();
+    }
+
+    public long treeSize(String name) {
+        return logs.get(name).treeSize(System.currentTimeMillis());
+    }
+
+    /**
+     * Number of requests of an operation: {@code log_list}, {@code log_list_not_modified}, {@code get_sth} or
+     * {@code get_entries}.
+     */
+    public long requests(String operation) {
+        AtomicLong count = requests.get(operation);
+        return count == null ? 0 : count.get();
+    }
+
+    @Override
+    public void close() throws IOException {
+        server.shutdown();
+    }
+
+    @Override
+    public MockResponse dispatch(RecordedRequest request) throws InterruptedException {
+        if (latencyMillis > 0) {
+            Thread.sleep(latencyMillis);
+        }
+
+        HttpUrl url = HttpUrl.parse("http://localhost" + request.getPath());
+        if (url == null) {
+            return new MockResponse().setResponseCode(400);
+        }
+
+        List<String> segments = url.pathSegments();
+        if (segments.size() == 1 && "log_list.json".equals(segments.get(0))) {
+            // The list carries an ETag, so clients can ask whether it changed.
+            String logList = logList();
+            String etag = "\"" + Integer.toHexString(logList.hashCode()) + "\"";
+            if (etag.equals(request.getHeader("If-None-Match"))) {
+                count("log_list_not_modified");
+                return new MockResponse().setResponseCode(304).setHeader("ETag", etag);
+            }
+            count("log_list");
+            return json(logList).setHeader("ETag", etag);
+        }
+
+        Log log = logs.get(segments.get(0));
+        String path = String.join("/", segments.subList(1, segments.size()));
+        if (log == null || !path.startsWith("ct/v1/")) {
+            return new MockResponse().setResponseCode(404);
+        }
+
+        long n = logRequests.incrementAndGet();
+        if (rateLimitEvery > 0 && n % rateLimitEvery == 0) {
+            return new MockResponse()
+                    .setResponseCode(429)
+                    .setHeader("Retry-After", Long.toString(retryAfterSeconds));
+        }
+        if (timeoutEvery > 0 && n % timeoutEvery == 0) {
+            return new MockResponse().setSocketPolicy(SocketPolicy.NO_RESPONSE);
+        }
+
+        long now = System.currentTimeMillis();
+        switch (path) {
+            case "ct/v1/get-sth":
+                count("get_sth");
+                return json("{\"tree_size\":" + log.treeSize(now) + ",\"timestamp\":" + now
+                        + ",\"sha256_root_hash\":\"\",\"tree_head_signature\":\"\"}");
+            case "ct/v1/get-entries":
+                count("get_entries");
+                return entries(log, url, now);
+            default:
+                return new MockResponse().setResponseCode(404);
+        }
+    }
+
+    private MockResponse entries(Log log, HttpUrl url, long now) {
+        long start;
+        long end;
+        try {
+            start = Long.parseLong(url.queryParameter("start"));
+            end = Long.parseLong(url.queryParameter("end"));
+        } catch (NumberFormatException e) {
+            return new MockResponse().setResponseCode(400);
+        }
+
+        // Like real logs, entries that don't exist yet are an error and long ranges are cut short.
+        long treeSize = log.treeSize(now);
+        if (start < 0 || start > end || start >= treeSize) {
+            return new MockResponse().setResponseCode(400);
+        }
+        end = Math.min(Math.min(end, treeSize - 1), start + maxBatchSize - 1);
+        if (chunkSize > 0) {
+            end = Math.min(end, (start / chunkSize + 1) * chunkSize - 1);
+        }
+
+        Base64.Encoder base64 = Base64.getEncoder();
+        StringBuilder json = new StringBuilder("{\"entries\":[");
+        for (long index = start; index <= end; index++) {
+            int recorded = (int) (index % leafInputs.size());
+            byte[] leafInput = leafInputs.get(recorded).clone();
+            long timestamp = log.timestamp(index);
+            for (int i = 7; i >= 0; i--) {
+                leafInput[TIMESTAMP_OFFSET + i] = (byte) timestamp;
+                timestamp >>>= 8;
+            }
+
+            if (index > start) {
+                json.append(',');
+            }
+            json.append("{\"leaf_input\":\"").append(base64.encodeToString(leafInput))
+                    .append("\",\"extra_data\":\"").append(base64.encodeToString(extraData.get(recorded)))
+                    .append("\"}");
+        }
+        return json(json.append("]}").toString());
+    }
+
+    private String logList() {
+        StringBuilder operators = new StringBuilder();
+        StringBuilder logList = new StringBuilder();
+        int id = 0;
+        for (Log log : logs.values()) {
+            if (id > 0) {
+                operators.append(',');
+                logList.append(',');
+            }
+            // An operator per log. Logs of the same operator refer to the same name.
+            operators.append("{\"name\":\"").append(log.operator).append("\",\"id\":").append(id).append('}');
+            logList.append("{\"description\":\"Fake log ").append(log.name)
+                    .append("\",\"url\":\"").append(logUrl(log.name))
+                    .append("\",\"operated_by\":[").append(id).append("]}");
+            id++;
+        }
+        return "{\"operators\":[" + operators + "],\"logs\":[" + logList + "]}";
+    }
+
+    private void count(String operation) {
+        requests.computeIfAbsent(operation, o -> new AtomicLong()).incrementAndGet();
+    }
+
+    private static MockResponse json(String body) {
+        return new MockResponse()
+                .setHeader("Content-Type", "application/json")
+                .setBody(body);
+    }
+
+    private static class Log {
+
+        private final String name;
+        private final String operator;
+        private final long initialSize;
+        private final double entriesPerSecond;
+        private final long created;
+
+        Log(String name, String operator, long initialSize, double entriesPerSecond, long created) {
+            this.name = name;
+            this.operator = operator;
+            this.initialSize = initialSize;
+            this.entriesPerSecond = entriesPerSecond;
+            this.created = created;
+        }
+
+        long treeSize(long now) {
+            return initialSize + (long) ((now - created) * entriesPerSecond / 1000);
+        }
+
+        // Entries that were there from the start are a millisecond apart, the others come in at the log's rate.
+        long timestamp(long index) {
+            if (index < initialSize || entriesPerSecond <= 0) {
+                return created - (initialSize - index);
+            }
+            return created + (long) ((index - initialSize) * 1000 / entriesPerSecond);
+        }
+
+    }
+
+}
@@ -5,13 +5,16 @@ import org.junit.Test;
 import java.util.Map;
 
 import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
 
 public class DomainSplitterTest {
 
     @Test
     public void splitDomain1() {
-        Map<String, String> result = DomainSplitter.split("foo.example.org", "subject");
-        assertEquals(4, result.size());
+        Map<String, Object> result = DomainSplitter.split("foo.example.org", "subject");
+        assertEquals(5, result.size());
         assertEquals("foo.example.org", result.get("ct_subject_common_name"));
         assertEquals("example.org", result.get("ct_subject_common_name_l12"));
         assertEquals("example", result.get("ct_subject_common_name_l2"));
@@ -20,8 +23,8 @@ public class DomainSplitterTest {
 
     @Test
     public void splitDomain2() {
-        Map<String, String> result = DomainSplitter.split("example.com", "subject");
-        assertEquals(4, result.size());
+        Map<String, Object> result = DomainSplitter.split("example.com", "subject");
+        assertEquals(5, result.size());
         assertEquals("example.com", result.get("ct_subject_common_name"));
         assertEquals("example.com", result.get("ct_subject_common_name_l12"));
         assertEquals("example", result.get("ct_subject_common_name_l2"));
@@ -30,8 +33,8 @@ public class DomainSplitterTest {
 
     @Test
     public void splitDomain3() {
-        Map<String, String> result = DomainSplitter.split("foo.bar.example.net", "subject");
-        assertEquals(4, result.size());
+        Map<String, Object> result = DomainSplitter.split("foo.bar.example.net", "subject");
+        assertEquals(5, result.size());
         assertEquals("foo.bar.example.net", result.get("ct_subject_common_name"));
         assertEquals("example.net", result.get("ct_subject_common_name_l12"));
         assertEquals("example", result.get("ct_subject_common_name_l2"));
@@ -40,8 +43,8 @@ public class DomainSplitterTest {
 
     @Test
     public void testPrefix() {
-        Map<String, String> result = DomainSplitter.split("foo.example.org", "something");
-        assertEquals(4, result.size());
+        Map<String, Object> result = DomainSplitter.split("foo.example.org", "something");
+        assertEquals(5, result.size());
         assertEquals("foo.example.org", result.get("ct_something_common_name"));
         assertEquals("example.org", result.get("ct_something_common_name_l12"));
         assertEquals("example", result.get("ct_something_common_name_l2"));
@@ -53,4 +56,65 @@ public class DomainSplitterTest {
         DomainSplitter.split("notadomain", "subject");
     }
 
-}
\ No newline at end of file
+    @Test
+    public void validDomains() {
+        assertTrue(DomainSplitter.isValid("example.com"));
+        assertTrue(DomainSplitter.isValid("*.example.com"));
+        assertTrue(DomainSplitter.isValid("example.com."));
+        assertFalse(DomainSplitter.isValid("notadomain"));
+        assertFalse(DomainSplitter.isValid("*.com"));
+        assertFalse(DomainSplitter.isValid(".com"));
+        assertFalse(DomainSplitter.isValid("example.."));
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void splitWildcardPublicSuffix() {
+        DomainSplitter.split("*.com", "subject");
+    }
+
+    @Test
+    public void registeredDomain() {
+        assertEquals("example.org", DomainSplitter.registeredDomain("foo.bar.example.org"));
+        assertEquals("example.org", DomainSplitter.registeredDomain("example.org"));
+    }
+
+    @Test
+    public void splitAtPublicSuffix() {
+        Map<String, Object> result = DomainSplitter.split("www.shop.example.co.uk", "subject");
+        assertEquals(5, result.size());
+        assertEquals("example.co.uk", result.get("ct_subject_common_name_l12"));
+        assertEquals("example", result.get("ct_subject_common_name_l2"));
+        assertEquals("co.uk", result.get("ct_subject_common_name_l1"));
+        assertEquals(2, result.get("ct_subject_common_name_subdomain_depth"));
+    }
+
+    @Test
+    public void splitWildcard() {
+        DomainName name = DomainSplitter.parse("*.cdn.example.co.uk");
+        assertTrue(name.isWildcard());
+        assertEquals("example.co.uk", name.getRegistrableDomain());
+        assertEquals(1, name.getSubdomainDepth());
+    }
+
+    @Test
+    public void splitWithWildcardAndExceptionRules() {
+        assertEquals("foo.bar.ck", DomainSplitter.registeredDomain("www.foo.bar.ck"));
+        assertEquals("www.ck", DomainSplitter.registeredDomain("www.ck"));
+        assertEquals("ck", DomainSplitter.parse("www.ck").getPublicSuffix());
+    }
+
+    @Test
+    public void splitInternationalizedSuffix() {
+        // example.公司.cn in its ASCII form.
+        assertEquals("xn--55qx5d.cn", DomainSplitter.parse("www.example.xn--55qx5d.cn").getPublicSuffix());
+    }
+
+    @Test
+    public void splitPublicSuffix() {
+        Map<String, Object> result = DomainSplitter.split("co.uk", "subject");
+        assertEquals(3, result.size());
+        assertEquals("co.uk", result.get("ct_subject_common_name_l1"));
+        assertNull(result.get("ct_subject_common_name_l12"));
+    }
+
+}
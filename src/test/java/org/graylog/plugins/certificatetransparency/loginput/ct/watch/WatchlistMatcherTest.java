@@ -0,0 +1,99 @@
+package org.graylog.plugins.certificatetransparency.loginput.ct.watch;
+
+import com.google.common.collect.ImmutableList;
+import org.junit.Test;
+
+import java.util.Collections;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+public class WatchlistMatcherTest {
+
+    private final WatchlistMatcher matcher = new WatchlistMatcher(
+            ImmutableList.of("graylog.org", "paypal.com", "ibm.com"),
+            ImmutableList.of("login"),
+            2
+    );
+
+    @Test
+    public void exactMatch() {
+        assertMatch("www.graylog.org", "graylog.org", WatchMatch.Type.EXACT, 0);
+    }
+
+    @Test
+    public void exactMatchOfLabelWithLookAlikes() {
+        WatchlistMatcher lookAlikes = new WatchlistMatcher(ImmutableList.of("1password.com", "turn.io"), Collections.emptyList(), 2);
+
+        WatchMatch match = lookAlikes.match("my.1password.com");
+        assertEquals("1password.com", match.getEntry());
+        assertEquals(WatchMatch.Type.EXACT, match.getType());
+
+        assertEquals(WatchMatch.Type.EXACT, lookAlikes.match("turn.io").getType());
+        assertEquals(WatchMatch.Type.HOMOGLYPH, lookAlikes.match("tum.io").getType());
+    }
+
+    @Test
+    public void editDistanceMatch() {
+        assertMatch("graylag.org", "graylog.org", WatchMatch.Type.EDIT_DISTANCE, 1);
+        assertMatch("greylag.com", "graylog.org", WatchMatch.Type.EDIT_DISTANCE, 2);
+    }
+
+    @Test
+    public void shortLabelsAllowFewerEdits() {
+        assertMatch("ibn.com", "ibm.com", WatchMatch.Type.EDIT_DISTANCE, 1);
+        assertNull(matcher.match("abc.com"));
+    }
+
+    @Test
+    public void homoglyphMatch() {
+        assertMatch("gray1og.com", "graylog.org", WatchMatch.Type.HOMOGLYPH, 0);
+        // Cyrillic a
+        assertMatch("p\u0430ypal.com", "paypal.com", WatchMatch.Type.HOMOGLYPH, 0);
+        assertMatch("*.paypa1.co", "paypal.com", WatchMatch.Type.HOMOGLYPH, 0);
+    }
+
+    @Test
+    public void punycodeMatch() {
+        assertMatch("xn--pypal-4ve.com", "paypal.com", WatchMatch.Type.HOMOGLYPH, 0);
+    }
+
+    @Test
+    public void substringMatch() {
+        assertMatch("graylog-secure.net", "graylog.org", WatchMatch.Type.SUBSTRING, 0);
+    }
+
+    @Test
+    public void keywordMatch() {
+        assertMatch("secure-login.example.com", "login", WatchMatch.Type.KEYWORD, 0);
+    }
+
+    @Test
+    public void noMatch() {
+        assertNull(matcher.match("foo.example.com"));
+    }
+
+    @Test
+    public void emptyWatchlist() {
+        WatchlistMatcher empty = new WatchlistMatcher(Collections.emptyList(), Collections.emptyList(), 2);
+        assertTrue(empty.isEmpty());
+        assertNull(empty.match("graylog.org"));
+    }
+
+    @Test
+    public void boundedLevenshtein() {
+        assertEquals(3, BoundedLevenshtein.distance("kitten", "sitting", 5));
+        assertEquals(3, BoundedLevenshtein.distance("kitten", "sitting", 2));
+        assertEquals(0, BoundedLevenshtein.distance("graylog", "graylog", 0));
+        assertEquals(2, BoundedLevenshtein.distance("a", "abcdef", 1));
+    }
+
+    private void assertMatch(String domain, String entry, WatchMatch.Type type, int distance) {
+        WatchMatch match = matcher.match(domain);
+        assertEquals(entry, match.getEntry());
+        assertEquals(type, match.getType());
+        assertEquals(distance, match.getDistance());
+    }
+
+}
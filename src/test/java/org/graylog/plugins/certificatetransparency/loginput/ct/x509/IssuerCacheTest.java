@@ -0,0 +1,47 @@
+package org.graylog.plugins.certificatetransparency.loginput.ct.x509;
+
+import com.google.common.collect.ImmutableMap;
+import org.junit.Test;
+
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertSame;
+
+public class IssuerCacheTest {
+
+    @Test
+    public void sameIssuerIsLoadedOnce() throws Exception {
+        IssuerCache cache = new IssuerCache(10);
+        AtomicInteger loads = new AtomicInteger();
+
+        byte[] der = TbsCertificateParserTest.loadPem("leaf.pem");
+
+        Map<String, Object> first = cache.get(TbsCertificateParser.parseCertificate(der), () -> {
+            loads.incrementAndGet();
+            return ImmutableMap.of("ct_issuer_common_name", "Example Issuing CA R1");
+        });
+        Map<String, Object> second = cache.get(TbsCertificateParser.parseCertificate(der), () -> {
+            loads.incrementAndGet();
+            return ImmutableMap.of();
+        });
+
+        assertEquals(1, loads.get());
+        assertSame(first, second);
+    }
+
+    @Test
+    public void fastPathAndJcaShareEntries() throws Exception {
+        IssuerCache cache = new IssuerCache(10);
+        byte[] der = TbsCertificateParserTest.loadPem("leaf.pem");
+
+        Map<String, Object> fast = cache.get(TbsCertificateParser.parseCertificate(der), ImmutableMap::of);
+        Map<String, Object> jca = cache.get(JcaCertificateParser.parseCertificate(der), () -> {
+            throw new AssertionError("Issuer should have been cached.");
+        });
+
+        assertSame(fast, jca);
+    }
+
+}
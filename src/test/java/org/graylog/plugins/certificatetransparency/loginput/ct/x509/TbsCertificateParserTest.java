@@ -0,0 +1,78 @@
+package org.graylog.plugins.certificatetransparency.loginput.ct.x509;
+
+import com.google.common.io.BaseEncoding;
+import com.google.common.io.Resources;
+import org.junit.Test;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.security.cert.CertificateParsingException;
+import java.util.Arrays;
+
+import static org.junit.Assert.assertEquals;
+
+public class TbsCertificateParserTest {
+
+    @Test
+    public void parseLeafCertificate() throws Exception {
+        TbsCertificate certificate = TbsCertificateParser.parseCertificate(loadPem("leaf.pem"));
+
+        assertEquals("Example Issuing CA R1", certificate.getIssuer().getCommonName());
+        assertEquals("US", certificate.getIssuer().getCountry());
+        assertEquals("Example Trust Services", certificate.getIssuer().getOrganization());
+        assertEquals("Example Issuing Unit", certificate.getIssuer().getOrganizationalUnit());
+
+        assertEquals("www.example.org", certificate.getSubject().getCommonName());
+        assertEquals("DE", certificate.getSubject().getCountry());
+        assertEquals("Example GmbH", certificate.getSubject().getOrganization());
+        assertEquals("Web Operations", certificate.getSubject().getOrganizationalUnit());
+
+        assertEquals(
+                Arrays.asList("www.example.org", "example.org", "mail.example.org", "*.cdn.example.co.uk"),
+                certificate.getDnsNames()
+        );
+    }
+
+    @Test
+    public void certificateWithoutSubjectAltNames() throws Exception {
+        assertEquals(0, TbsCertificateParser.parseCertificate(loadPem("issuer.pem")).getDnsNames().size());
+    }
+
+    @Test
+    public void matchesJca() throws Exception {
+        for (String name : new String[]{"leaf.pem", "issuer.pem"}) {
+            byte[] der = loadPem(name);
+
+            TbsCertificate fast = TbsCertificateParser.parseCertificate(der);
+            TbsCertificate jca = JcaCertificateParser.parseCertificate(der);
+
+            assertSameName(jca.getIssuer(), fast.getIssuer());
+            assertSameName(jca.getSubject(), fast.getSubject());
+            assertEquals(jca.getDnsNames(), fast.getDnsNames());
+        }
+    }
+
+    @Test(expected = CertificateParsingException.class)
+    public void truncatedCertificate() throws Exception {
+        byte[] der = loadPem("leaf.pem");
+        TbsCertificateParser.parseCertificate(Arrays.copyOf(der, der.length / 3));
+    }
+
+    @Test(expected = CertificateParsingException.class)
+    public void notACertificate() throws Exception {
+        TbsCertificateParser.parseCertificate(new byte[]{0x04, 0x02, 0x01, 0x02});
+    }
+
+    private static void assertSameName(DistinguishedName expected, DistinguishedName actual) {
+        assertEquals(expected.getCommonName(), actual.getCommonName());
+        assertEquals(expected.getCountry(), actual.getCountry());
+        assertEquals(expected.getOrganization(), actual.getOrganization());
+        assertEquals(expected.getOrganizationalUnit(), actual.getOrganizationalUnit());
+    }
+
+    static byte[] loadPem(String name) throws IOException {
+        String pem = Resources.toString(Resources.getResource(TbsCertificateParserTest.class, name), StandardCharsets.US_ASCII);
+        return BaseEncoding.base64().decode(pem.replaceAll("-----[A-Z ]+-----", "").replaceAll("\\s", ""));
+    }
+
+}